@@ -0,0 +1,78 @@
+package com.skazhenik.migration.benchmark;
+
+import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.FileContent;
+import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import com.skazhenik.migration.transfer.ChannelTransferEngine;
+import com.skazhenik.migration.transfer.TransferEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy throughput of {@link OldStorageService#download(FileContent, Path)} from the {@link StorageSimulator}
+ * without faults to a local file. Bytes per second are the score multiplied by {@code size}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DownloadBenchmark {
+    @Param({"65536", "4194304", "33554432"})
+    private int size;
+
+    @Param({"buffered", "channel"})
+    private String engine;
+
+    private StorageSimulator storage;
+    private String name;
+    private OldStorageService service;
+    private Path tempDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Dataset dataset = new Dataset(1, size, size, SizeDistribution.UNIFORM, size);
+        storage = new StorageSimulator(0, dataset, FaultProfile.NONE);
+        name = dataset.getName(0);
+        final TransferEngine transferEngine = engine.equals("channel")
+                ? new ChannelTransferEngine() : new BufferedTransferEngine();
+        service = new OldStorageService(storage.getBaseURL(), new ConnectionPool(), transferEngine, null, null);
+        tempDir = Files.createTempDirectory("download-benchmark");
+    }
+
+    @Benchmark
+    public long download() throws ServiceException, IOException {
+        try (FileContent content = service.open(name)) {
+            return service.download(content, tempDir.resolve(name));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(tempDir.resolve(name));
+        Files.deleteIfExists(tempDir);
+        storage.close();
+    }
+}
@@ -0,0 +1,62 @@
+package com.skazhenik.migration.benchmark;
+
+import com.skazhenik.migration.loader.BoundedExecutor;
+import com.skazhenik.migration.loader.ExecutionMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of running {@code tasks} tasks with {@link ExecutionMode#PLATFORM} and {@link ExecutionMode#VIRTUAL}
+ * executors when every task waits {@code latency} milliseconds for a slow storage. The wait is emulated
+ * by sleeping, so the benchmark measures the execution layer only. {@link ExecutionMode#VIRTUAL} needs
+ * the application built with the {@code java21} profile and Java 21 runtime, otherwise it fails.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ExecutionModeBenchmark {
+    @Param({"PLATFORM", "VIRTUAL"})
+    private ExecutionMode mode;
+
+    @Param({"10", "1000"})
+    private int concurrency;
+
+    @Param({"2000"})
+    private int tasks;
+
+    @Param({"10"})
+    private long latency;
+
+    @Benchmark
+    public void execute() throws InterruptedException, ExecutionException {
+        try (BoundedExecutor executor = new BoundedExecutor(mode, concurrency)) {
+            final List<Future<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                futures.add(executor.submit(() -> {
+                    Thread.sleep(latency);
+                    return null;
+                }));
+            }
+            for (final Future<Object> future : futures) {
+                future.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.skazhenik.migration.benchmark;
+
+import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.FileListIterator;
+import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of receiving and parsing the list of the old storage with {@code count} names. The {@link StorageSimulator}
+ * generates the names while it streams the list. {@link #store()} keeps
+ * all names the way {@link OldStorageService#getFilesList()} does, {@link #stream()} only walks through them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ListBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int count;
+
+    private StorageSimulator storage;
+    private OldStorageService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        storage = new StorageSimulator(0, new Dataset(count, 0, 0, SizeDistribution.UNIFORM, 0), FaultProfile.NONE);
+        service = new OldStorageService(storage.getBaseURL(), new ConnectionPool(), new BufferedTransferEngine(),
+                null, null);
+    }
+
+    @Benchmark
+    public int store() throws ServiceException {
+        return service.getFilesList().size();
+    }
+
+    @Benchmark
+    public int stream() throws ServiceException, IOException {
+        int names = 0;
+        try (FileListIterator iterator = service.listFiles()) {
+            while (iterator.hasNext()) {
+                iterator.next();
+                names++;
+            }
+        }
+        return names;
+    }
+
+    @TearDown
+    public void tearDown() {
+        storage.close();
+    }
+}
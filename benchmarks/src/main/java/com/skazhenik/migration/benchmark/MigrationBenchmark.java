@@ -0,0 +1,99 @@
+package com.skazhenik.migration.benchmark;
+
+import com.skazhenik.migration.loader.ExecutionMode;
+import com.skazhenik.migration.loader.ParallelMigrationManager;
+import com.skazhenik.migration.loader.TransferMode;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.NewStorageService;
+import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.spool.SpoolManager;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of {@link ParallelMigrationManager#load(List, SpoolManager)} of {@code files} files of {@code size} bytes
+ * from the old storage of the {@link StorageSimulator} without faults to the new one with {@code threads} threads.
+ * The storages are reset before every invocation. Files per second are {@code files} divided by the score.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MigrationBenchmark {
+    @Param({"1", "4", "16", "64"})
+    private int threads;
+
+    @Param({"1000"})
+    private int files;
+
+    @Param({"16384"})
+    private int size;
+
+    @Param({"STREAM", "SPOOL"})
+    private TransferMode transferMode;
+
+    private StorageSimulator storage;
+    private ParallelMigrationManager manager;
+    private Path tempDir;
+    private List<String> names;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Dataset dataset = new Dataset(files, size, size, SizeDistribution.UNIFORM, size);
+        storage = new StorageSimulator(0, dataset, FaultProfile.NONE);
+        names = new ArrayList<>();
+        for (int i = 0; i < files; i++) {
+            names.add(dataset.getName(i));
+        }
+        // a streaming task holds a download and an upload connection
+        final ConnectionPool connectionPool = new ConnectionPool(2 * threads);
+        tempDir = Files.createTempDirectory("migration-benchmark");
+        manager = new ParallelMigrationManager(threads, tempDir,
+                new OldStorageService(storage.getBaseURL(), connectionPool, new BufferedTransferEngine(), null, null),
+                new NewStorageService(storage.getBaseURL(), connectionPool, new BufferedTransferEngine(), null, null),
+                transferMode, ExecutionMode.PLATFORM);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetStorage() {
+        storage.reset();
+    }
+
+    @Benchmark
+    public void load() throws ExecutionException {
+        manager.load(names, new SpoolManager(threads, Long.MAX_VALUE));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        manager.close();
+        storage.close();
+        Files.deleteIfExists(tempDir);
+    }
+}
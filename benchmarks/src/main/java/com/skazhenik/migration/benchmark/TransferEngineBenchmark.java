@@ -0,0 +1,121 @@
+package com.skazhenik.migration.benchmark;
+
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import com.skazhenik.migration.transfer.ChannelTransferEngine;
+import com.skazhenik.migration.transfer.TransferEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy throughput of {@link TransferEngine} implementations from a synthetic stream, which does not touch
+ * the disk or the network, to a local file, against the byte by byte loop used before. Run it with
+ * {@code -t} to copy in several threads at once. Bytes per second are the score multiplied by {@code size}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferEngineBenchmark {
+    @Param({"8388608"})
+    private int size;
+
+    @Param({"bytes", "buffered", "channel"})
+    private String engine;
+
+    private final byte[] pattern = new byte[64 * 1024];
+    private TransferEngine transferEngine;
+    private Path tempDir;
+    private Path file;
+
+    /**
+     * Stream of pseudo random bytes of the given length.
+     */
+    private static class SyntheticInputStream extends InputStream {
+        private final byte[] pattern;
+        private long remaining;
+
+        SyntheticInputStream(final byte[] pattern, final long length) {
+            this.pattern = pattern;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining <= 0) {
+                return -1;
+            }
+            return pattern[(int) (remaining-- % pattern.length)] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int count = (int) Math.min(Math.min(len, remaining), pattern.length);
+            System.arraycopy(pattern, 0, b, off, count);
+            remaining -= count;
+            return count;
+        }
+    }
+
+    private static final TransferEngine BYTE_LOOP = (source, target, length) -> {
+        long copied = 0;
+        try (OutputStream writer = Files.newOutputStream(target)) {
+            int data;
+            while ((data = source.read()) != -1) {
+                writer.write(data);
+                copied++;
+            }
+        }
+        return copied;
+    };
+
+    @Setup
+    public void setUp() throws IOException {
+        new Random(size).nextBytes(pattern);
+        switch (engine) {
+            case "bytes":
+                transferEngine = BYTE_LOOP;
+                break;
+            case "channel":
+                transferEngine = new ChannelTransferEngine();
+                break;
+            default:
+                transferEngine = new BufferedTransferEngine();
+        }
+        tempDir = Files.createTempDirectory("transfer-benchmark");
+        file = tempDir.resolve("file.bin");
+    }
+
+    @Benchmark
+    public long transfer() throws IOException {
+        return transferEngine.transfer(new SyntheticInputStream(pattern, size), file, size);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(tempDir);
+    }
+}
@@ -0,0 +1,67 @@
+package com.skazhenik.migration.benchmark;
+
+import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.NewStorageService;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link NewStorageService#upload(String, java.io.InputStream, long)}, which encodes the content
+ * as a multipart body on the fly. The {@link StorageSimulator} without faults reads and drops the body, so the score is bounded
+ * by the encoding and the loopback connection. Bytes per second are the score multiplied by {@code size}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UploadBenchmark {
+    @Param({"1024", "65536", "4194304", "33554432"})
+    private int size;
+
+    private StorageSimulator storage;
+    private NewStorageService service;
+    private byte[] content;
+
+    @Setup
+    public void setUp() throws IOException {
+        storage = new StorageSimulator(0, new Dataset(0, 0, 0, SizeDistribution.UNIFORM, 0), FaultProfile.NONE);
+        storage.setKeepUploads(false);
+        content = new byte[size];
+        new Random(size).nextBytes(content);
+        service = new NewStorageService(storage.getBaseURL(), new ConnectionPool(), new BufferedTransferEngine(),
+                null, null);
+    }
+
+    @Benchmark
+    public void upload() throws ServiceException {
+        service.upload("file.bin", new ByteArrayInputStream(content), content.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        storage.close();
+    }
+}
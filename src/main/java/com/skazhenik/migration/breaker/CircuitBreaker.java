@@ -0,0 +1,236 @@
+package com.skazhenik.migration.breaker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stops requests to a failing endpoint. The breaker opens after {@code failureThreshold} consecutive failures,
+ * and while it is open the requests wait instead of being sent. After {@code openMillis} it becomes half-open
+ * and lets {@code probes} requests through: a successful probe closes it, a failed one opens it again.
+ * <p>
+ * Waiting is done on a {@link ReentrantLock}, which does not pin virtual threads to their carriers.
+ */
+public class CircuitBreaker {
+    /**
+     * State of the breaker.
+     */
+    public enum State {
+        /**
+         * Requests are sent, consecutive failures are counted.
+         */
+        CLOSED,
+        /**
+         * Requests wait until the breaker becomes half-open.
+         */
+        OPEN,
+        /**
+         * Only probe requests are sent, the others wait for the result of the probes.
+         */
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final int probes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long openedAt;
+    private int probesInFlight = 0;
+    private long transitions = 0;
+    private long opens = 0;
+
+    /**
+     * @param name             name of the endpoint and operation for statistics
+     * @param failureThreshold number of consecutive failures opening the breaker
+     * @param openMillis       time the breaker stays open before probing the endpoint
+     * @param probes           number of probe requests sent at once in half-open state
+     */
+    public CircuitBreaker(final String name, final int failureThreshold, final long openMillis, final int probes) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.probes = probes;
+    }
+
+    /**
+     * Waits until a request may be sent.
+     *
+     * @return {@link Permit} of the request
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public Permit acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                final Permit permit = tryPermit();
+                if (permit != null) {
+                    return permit;
+                }
+                if (state == State.OPEN) {
+                    stateChanged.awaitNanos(openedAt + openNanos - System.nanoTime());
+                } else {
+                    stateChanged.await();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@link Permit} of the request or {@code null} if the request may not be sent now
+     */
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            return tryPermit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit tryPermit() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.CLOSED) {
+            return new Permit(false);
+        }
+        if (state == State.HALF_OPEN && probesInFlight < probes) {
+            probesInFlight++;
+            return new Permit(true);
+        }
+        return null;
+    }
+
+    private void transition(final State to) {
+        System.err.println("Circuit breaker " + name + ": " + state + " -> " + to
+                + (to == State.OPEN && state == State.CLOSED ? " after " + failures + " failures" : ""));
+        state = to;
+        transitions++;
+        failures = 0;
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+            opens++;
+        }
+        stateChanged.signalAll();
+    }
+
+    /**
+     * Outcomes of requests started in another state than the current one are not counted.
+     *
+     * @param probe   {@link Boolean#TRUE} if the request was a probe
+     * @param success {@link Boolean#TRUE} if the request succeeded, {@code null} if its outcome does not count
+     */
+    private void release(final boolean probe, final Boolean success) {
+        lock.lock();
+        try {
+            if (probe) {
+                probesInFlight--;
+                if (success == null) {
+                    stateChanged.signalAll();
+                } else if (state == State.HALF_OPEN) {
+                    transition(success ? State.CLOSED : State.OPEN);
+                }
+            } else if (state == State.CLOSED && success != null) {
+                failures = success ? 0 : failures + 1;
+                if (failures >= failureThreshold) {
+                    transition(State.OPEN);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of state changes
+     */
+    public long getTransitions() {
+        lock.lock();
+        try {
+            return transitions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of times the breaker was opened
+     */
+    public long getOpens() {
+        lock.lock();
+        try {
+            return opens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("%s breaker: state=%s opens=%d transitions=%d", name, state, opens, transitions);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Permit of one request. Exactly one of the methods must be called when the request is over.
+     */
+    public class Permit {
+        private final boolean probe;
+        private boolean released = false;
+
+        private Permit(final boolean probe) {
+            this.probe = probe;
+        }
+
+        private void release(final Boolean success) {
+            if (!released) {
+                released = true;
+                CircuitBreaker.this.release(probe, success);
+            }
+        }
+
+        /**
+         * The request succeeded.
+         */
+        public void onSuccess() {
+            release(true);
+        }
+
+        /**
+         * The request failed because the endpoint is unavailable.
+         */
+        public void onFailure() {
+            release(false);
+        }
+
+        /**
+         * The request failed for a reason unrelated to the availability of the endpoint.
+         */
+        public void onIgnore() {
+            release(null);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.skazhenik.migration.breaker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link CircuitBreaker}s with the same settings created on demand, one per endpoint and operation.
+ * Can be shared by storage services.
+ */
+public class CircuitBreakers {
+    public static final int DEFAULT_FAILURE_THRESHOLD = 10;
+    public static final long DEFAULT_OPEN_MILLIS = 5_000;
+    public static final int DEFAULT_PROBES = 1;
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final int probes;
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * @param failureThreshold number of consecutive failures opening a breaker
+     * @param openMillis       time a breaker stays open before probing the endpoint
+     * @param probes           number of probe requests sent at once in half-open state
+     * @see CircuitBreaker
+     */
+    public CircuitBreakers(final int failureThreshold, final long openMillis, final int probes) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.probes = probes;
+    }
+
+    /**
+     * Creates breakers with {@link #DEFAULT_FAILURE_THRESHOLD}, {@link #DEFAULT_OPEN_MILLIS}
+     * and {@link #DEFAULT_PROBES}.
+     */
+    public CircuitBreakers() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS, DEFAULT_PROBES);
+    }
+
+    /**
+     * @param endpoint  name of the endpoint
+     * @param operation name of the operation
+     * @return {@link CircuitBreaker} of the operation on the endpoint
+     */
+    public CircuitBreaker get(final String endpoint, final String operation) {
+        return breakers.computeIfAbsent(endpoint + " " + operation,
+                name -> new CircuitBreaker(name, failureThreshold, openMillis, probes));
+    }
+
+    /**
+     * @return all breakers created so far
+     */
+    public List<CircuitBreaker> getBreakers() {
+        return new ArrayList<>(breakers.values());
+    }
+}
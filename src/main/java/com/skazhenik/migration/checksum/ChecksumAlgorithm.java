@@ -0,0 +1,103 @@
+package com.skazhenik.migration.checksum;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Algorithm of the checksum computed while the content of a file is read.
+ */
+public enum ChecksumAlgorithm {
+    /**
+     * Only the length of the content is counted.
+     */
+    NONE {
+        @Override
+        Hasher newHasher() {
+            return new Hasher() {
+                @Override
+                public void update(final byte[] b, final int off, final int len) {
+                }
+
+                @Override
+                public byte[] digest() {
+                    return new byte[0];
+                }
+            };
+        }
+    },
+    /**
+     * CRC32C, computed by the intrinsics of the CPU, detects damaged and truncated content.
+     */
+    CRC32C {
+        @Override
+        Hasher newHasher() {
+            return new ChecksumHasher(new CRC32C());
+        }
+    },
+    /**
+     * SHA-256, several times slower than {@link #CRC32C}, detects any substitution of the content.
+     */
+    SHA_256 {
+        @Override
+        Hasher newHasher() {
+            try {
+                return new DigestHasher(MessageDigest.getInstance("SHA-256"));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not supported", e);
+            }
+        }
+    };
+
+    /**
+     * Incremental computation of the checksum of one content.
+     */
+    interface Hasher {
+        void update(byte[] b, int off, int len);
+
+        byte[] digest();
+    }
+
+    /**
+     * @return new {@link Hasher} of the algorithm
+     */
+    abstract Hasher newHasher();
+
+    private static class ChecksumHasher implements Hasher {
+        private final Checksum checksum;
+
+        ChecksumHasher(final Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(final byte[] b, final int off, final int len) {
+            checksum.update(b, off, len);
+        }
+
+        @Override
+        public byte[] digest() {
+            final int value = (int) checksum.getValue();
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+    }
+
+    private static class DigestHasher implements Hasher {
+        private final MessageDigest digest;
+
+        DigestHasher(final MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(final byte[] b, final int off, final int len) {
+            digest.update(b, off, len);
+        }
+
+        @Override
+        public byte[] digest() {
+            return digest.digest();
+        }
+    }
+}
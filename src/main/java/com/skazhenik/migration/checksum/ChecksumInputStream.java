@@ -0,0 +1,84 @@
+package com.skazhenik.migration.checksum;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} computing the checksum of the bytes passing through it, so the content is hashed
+ * while it is copied and never read a second time. Skipped bytes are read and hashed as well.
+ */
+public class ChecksumInputStream extends FilterInputStream {
+    private static final int SKIP_BUFFER_SIZE = 8192;
+
+    private final ChecksumAlgorithm algorithm;
+    private final ChecksumAlgorithm.Hasher hasher;
+    private long length = 0;
+
+    /**
+     * @param in        {@link InputStream} with the content
+     * @param algorithm {@link ChecksumAlgorithm} of the checksum
+     */
+    public ChecksumInputStream(final InputStream in, final ChecksumAlgorithm algorithm) {
+        super(in);
+        this.algorithm = algorithm;
+        this.hasher = algorithm.newHasher();
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = in.read();
+        if (b != -1) {
+            hasher.update(new byte[]{(byte) b}, 0, 1);
+            length++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int count = in.read(b, off, len);
+        if (count > 0) {
+            hasher.update(b, off, count);
+            length += count;
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final byte[] buffer = new byte[(int) Math.min(SKIP_BUFFER_SIZE, Math.max(n, 0))];
+        long skipped = 0;
+        while (skipped < n) {
+            final int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (count == -1) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(final int readLimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Finishes the computation, the stream must not be read afterwards.
+     *
+     * @return {@link FileChecksum} of the bytes read
+     */
+    public FileChecksum getChecksum() {
+        return new FileChecksum(algorithm, hasher.digest(), length);
+    }
+}
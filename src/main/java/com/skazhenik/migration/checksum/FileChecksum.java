@@ -0,0 +1,59 @@
+package com.skazhenik.migration.checksum;
+
+import java.util.Arrays;
+
+/**
+ * Checksum and length of the content of a file. Two checksums are equal if they are computed by
+ * the same {@link ChecksumAlgorithm} over the same number of bytes and have the same value.
+ */
+public final class FileChecksum {
+    private final ChecksumAlgorithm algorithm;
+    private final byte[] value;
+    private final long length;
+
+    FileChecksum(final ChecksumAlgorithm algorithm, final byte[] value, final long length) {
+        this.algorithm = algorithm;
+        this.value = value;
+        this.length = length;
+    }
+
+    /**
+     * @return {@link ChecksumAlgorithm} of the checksum
+     */
+    public ChecksumAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return number of bytes of the content
+     */
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FileChecksum)) {
+            return false;
+        }
+        final FileChecksum checksum = (FileChecksum) o;
+        return algorithm == checksum.algorithm && length == checksum.length && Arrays.equals(value, checksum.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(value) + Long.hashCode(length);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder hex = new StringBuilder();
+        for (final byte b : value) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return String.format("%s:%s length=%d", algorithm, hex, length);
+    }
+}
@@ -0,0 +1,65 @@
+package com.skazhenik.migration.checksum;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Verification of the transferred files. The checksum of every file is computed while it is downloaded,
+ * and a share of the uploaded files is read back from the new storage and hashed the same way.
+ * A file is deleted from the old storage only if the checksums match.
+ * <p>
+ * Reading every file back doubles the traffic of the new storage, while a sample of a few percent
+ * still catches a storage which corrupts files systematically: at the default rate one file in fifty is read back.
+ */
+public class IntegrityCheck {
+    /**
+     * Share of the uploaded files read back by default.
+     */
+    public static final double DEFAULT_READ_BACK_RATE = 0.02;
+
+    /**
+     * Only lengths are counted and nothing is read back.
+     */
+    public static final IntegrityCheck NONE = new IntegrityCheck(ChecksumAlgorithm.NONE, 0);
+
+    private final ChecksumAlgorithm algorithm;
+    private final double readBackRate;
+
+    /**
+     * @param algorithm    {@link ChecksumAlgorithm} of the checksums
+     * @param readBackRate share of the uploaded files read back from the new storage, from 0 to 1
+     * @throws IllegalArgumentException if {@code readBackRate} is out of range
+     */
+    public IntegrityCheck(final ChecksumAlgorithm algorithm, final double readBackRate) {
+        if (!(readBackRate >= 0 && readBackRate <= 1)) {
+            throw new IllegalArgumentException("Read back rate must be from 0 to 1: " + readBackRate);
+        }
+        this.algorithm = algorithm;
+        this.readBackRate = readBackRate;
+    }
+
+    /**
+     * @return {@link ChecksumAlgorithm} of the checksums
+     */
+    public ChecksumAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return share of the uploaded files read back from the new storage
+     */
+    public double getReadBackRate() {
+        return readBackRate;
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if the file just uploaded must be read back
+     */
+    public boolean shouldReadBack() {
+        return readBackRate >= 1 || readBackRate > 0 && ThreadLocalRandom.current().nextDouble() < readBackRate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("integrity: algorithm=%s readBack=%.2f", algorithm, readBackRate);
+    }
+}
@@ -1,18 +1,51 @@
 package com.skazhenik.migration.client;
 
+import com.skazhenik.migration.breaker.CircuitBreakers;
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.checksum.IntegrityCheck;
 import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.journal.MappedJournal;
+import com.skazhenik.migration.limit.AimdLimiter;
+import com.skazhenik.migration.loader.ExecutionMode;
+import com.skazhenik.migration.loader.MigrationManager;
+import com.skazhenik.migration.loader.MigrationPlan;
+import com.skazhenik.migration.loader.MigrationPlanner;
+import com.skazhenik.migration.loader.MigrationProgress;
+import com.skazhenik.migration.loader.MigrationScheduler;
 import com.skazhenik.migration.loader.ParallelMigrationManager;
+import com.skazhenik.migration.loader.ProgressReporter;
+import com.skazhenik.migration.loader.Scheduling;
+import com.skazhenik.migration.loader.SizeSchedule;
+import com.skazhenik.migration.loader.StagedMigrationManager;
+import com.skazhenik.migration.loader.TransferMode;
+import com.skazhenik.migration.metrics.MetricsReporter;
+import com.skazhenik.migration.metrics.StorageMetrics;
+import com.skazhenik.migration.retry.BackoffRetryPolicy;
+import com.skazhenik.migration.retry.RetryPolicy;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.FileNameStore;
 import com.skazhenik.migration.service.NewStorageService;
 import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.spool.BufferPool;
+import com.skazhenik.migration.spool.SpoolManager;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import com.skazhenik.migration.util.RetryingFileListIterator;
 
+import javax.management.JMException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import static com.skazhenik.migration.util.FileUtils.createTempDir;
 import static com.skazhenik.migration.util.FileUtils.deleteTempDir;
-import static com.skazhenik.migration.util.MigrationUtils.getFilesList;
+import static com.skazhenik.migration.util.MigrationUtils.listFiles;
 
 /**
  * @author Skazhenik Taras
@@ -21,31 +54,238 @@ import static com.skazhenik.migration.util.MigrationUtils.getFilesList;
  */
 public class MigrationClient {
     private static final Path temporaryDirLocation = Path.of("..");
-    private static final int MAX_THREAD_COUNT = 10;
-    // fixes the stored number of files, does not allow to expand the local storage indefinitely
+    // progress of every file survives a crash, a restarted migration skips uploads finished before
+    private static final Path journalLocation = temporaryDirLocation.resolve("migration.journal");
+    // upper bound of concurrent tasks, the number of requests to each storage is adjusted by its limiter
+    private static final int MAX_THREAD_COUNT = 64;
+    private static final int INITIAL_CONCURRENCY = 10;
+    private static final int MIN_CONCURRENCY = 1;
+    // fixes the stored number of files and bytes, does not allow to expand the local storage indefinitely
     private static final int MAX_LOAD_FACTOR = 50;
-    private final OldStorageService oldStorageService = new OldStorageService();
-    private final NewStorageService newStorageService = new NewStorageService();
+    private static final long MAX_SPOOL_SIZE = 1024L * 1024 * 1024;
+    // files up to this size are spooled in off-heap memory limited by MAX_MEMORY_SPOOL_SIZE
+    private static final int MEMORY_SPOOL_THRESHOLD = 256 * 1024;
+    private static final long MAX_MEMORY_SPOOL_SIZE = 64L * 1024 * 1024;
+    private static final TransferMode TRANSFER_MODE = TransferMode.STREAM;
+    // in ASYNC mode a few threads keep up to MAX_IN_FLIGHT transfers started
+    private static final int MAX_IN_FLIGHT = 200;
+    private static final int EVENT_LOOP_THREAD_COUNT = 2;
+    // VIRTUAL requires the java21 build profile, up to MAX_VIRTUAL_TASK_COUNT files are then in flight, each
+    // waiting for its requests on a virtual thread, and the limiters bound the requests instead of the threads
+    private static final ExecutionMode EXECUTION_MODE = ExecutionMode.PLATFORM;
+    private static final int MAX_VIRTUAL_TASK_COUNT = 10_000;
+    // separate download, upload and delete stages instead of full cycle per thread
+    private static final boolean STAGED_PIPELINE = false;
+    private static final int DOWNLOAD_THREAD_COUNT = 10;
+    private static final int UPLOAD_THREAD_COUNT = 10;
+    private static final int DELETE_THREAD_COUNT = 4;
+    private static final int STAGE_QUEUE_CAPACITY = 100;
+    // compare both storages before the migration and transfer only missing and different files,
+    // otherwise transfers start while the old storage is listed
+    private static final boolean DIFFERENTIAL = true;
+    private static final int COMPARE_THREAD_COUNT = 16;
+    // CONTENT reads both copies of every file present in both storages, SIZE only their response headers
+    private static final MigrationPlanner.Comparison COMPARISON = MigrationPlanner.Comparison.SIZE;
+    // checksum of every file is computed while it is downloaded, a file read back from the new storage
+    // is deleted from the old one only if the checksums match, 1.0 reads back every file,
+    // the non-blocking migration does not verify files
+    private static final IntegrityCheck INTEGRITY_CHECK = new IntegrityCheck(ChecksumAlgorithm.CRC32C,
+            IntegrityCheck.DEFAULT_READ_BACK_RATE);
+    // order of the transfers, except LISTING the lengths of all files are learned before the migration,
+    // those of the files compared by the planner are not requested again,
+    // the predicted makespan assumes the given overhead and bandwidth of every transfer
+    private static final Scheduling SCHEDULING = Scheduling.INTERLEAVED;
+    private static final int SCHEDULE_THREAD_COUNT = 16;
+    private static final long TRANSFER_OVERHEAD_MILLIS = 20;
+    private static final double TRANSFER_BYTES_PER_MILLI = 10_000;
+    // request metrics of both storages are available over JMX and printed periodically
+    private static final long METRICS_INTERVAL_MILLIS = MetricsReporter.DEFAULT_INTERVAL_MILLIS;
+    // progress with the estimated time of arrival is printed periodically,
+    // and appended as JSON lines to progressLocation if PROGRESS_JSON is set
+    private static final long PROGRESS_INTERVAL_MILLIS = ProgressReporter.DEFAULT_INTERVAL_MILLIS;
+    private static final boolean PROGRESS_JSON = true;
+    private static final Path progressLocation = temporaryDirLocation.resolve("migration-progress.jsonl");
+    private final ConnectionPool connectionPool = new ConnectionPool(getConnectionCount());
+    private final AimdLimiter oldStorageLimiter =
+            new AimdLimiter("oldStorage", INITIAL_CONCURRENCY, MIN_CONCURRENCY, MAX_THREAD_COUNT);
+    private final AimdLimiter newStorageLimiter =
+            new AimdLimiter("newStorage", INITIAL_CONCURRENCY, MIN_CONCURRENCY, MAX_THREAD_COUNT);
+    private final CircuitBreakers circuitBreakers = new CircuitBreakers();
+    private final RetryPolicy retryPolicy = new BackoffRetryPolicy();
+    private final OldStorageService oldStorageService = new OldStorageService(connectionPool,
+            new BufferedTransferEngine(), oldStorageLimiter, circuitBreakers);
+    private final NewStorageService newStorageService = new NewStorageService(connectionPool,
+            new BufferedTransferEngine(), newStorageLimiter, circuitBreakers);
+
+    /**
+     * Both storages are on the same host, so they share the per-route limit of the connection pool.
+     * A task of {@link ParallelMigrationManager} streaming a file holds a download and an upload connection.
+     *
+     * @return number of connections the configured migration uses at once
+     */
+    private static int getConnectionCount() {
+        if (STAGED_PIPELINE) {
+            return DOWNLOAD_THREAD_COUNT + UPLOAD_THREAD_COUNT + DELETE_THREAD_COUNT;
+        }
+        return 2 * MAX_THREAD_COUNT;
+    }
+
+    /**
+     * The limiters of the storages never allow more requests than the connections of the route, so tasks
+     * on virtual threads only wait for them and can not take all connections with half-done transfers.
+     *
+     * @return number of tasks {@link ParallelMigrationManager} runs at once
+     */
+    private static int getTaskCount() {
+        return EXECUTION_MODE == ExecutionMode.VIRTUAL ? MAX_VIRTUAL_TASK_COUNT : MAX_THREAD_COUNT;
+    }
+
+    /**
+     * @return number of files the configured migration transfers at once
+     */
+    private static int getWorkerCount() {
+        if (STAGED_PIPELINE) {
+            return DOWNLOAD_THREAD_COUNT;
+        }
+        return TRANSFER_MODE == TransferMode.ASYNC ? MAX_IN_FLIGHT : MAX_THREAD_COUNT;
+    }
+
+    /**
+     * Registers the {@link StorageMetrics} of both storages in the platform MBean server
+     * and starts reporting them every {@link #METRICS_INTERVAL_MILLIS}.
+     *
+     * @return {@link MetricsReporter} which must be closed when the migration is over
+     */
+    private MetricsReporter reportMetrics() {
+        final Map<String, StorageMetrics> metrics = new LinkedHashMap<>();
+        metrics.put("oldStorage", oldStorageService.getMetrics());
+        metrics.put("newStorage", newStorageService.getMetrics());
+        metrics.forEach((name, storage) -> {
+            try {
+                storage.register(name);
+            } catch (JMException e) {
+                System.err.println("Unable to register metrics of " + name + ": " + e.getMessage());
+            }
+        });
+        return new MetricsReporter(metrics, System.out, METRICS_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens the file of the JSON progress lines, the lines of restarted migrations are appended.
+     *
+     * @return {@link PrintStream} of the JSON lines or {@code null} if {@link #PROGRESS_JSON} is not set
+     * @throws IOException if the file can not be opened
+     */
+    private static PrintStream openProgressJson() throws IOException {
+        if (!PROGRESS_JSON) {
+            return null;
+        }
+        return new PrintStream(new FileOutputStream(progressLocation.toFile(), true), true);
+    }
+
+    /**
+     * Creates a {@link MigrationManager} according to the client settings.
+     *
+     * @param tempDir directory for storing temporary data
+     * @return {@link StagedMigrationManager} if {@link #STAGED_PIPELINE} is set,
+     * {@link ParallelMigrationManager} otherwise
+     */
+    private MigrationManager createMigrationManager(final Path tempDir) {
+        if (STAGED_PIPELINE) {
+            return new StagedMigrationManager(DOWNLOAD_THREAD_COUNT, UPLOAD_THREAD_COUNT, DELETE_THREAD_COUNT,
+                    STAGE_QUEUE_CAPACITY, tempDir, oldStorageService, newStorageService, INTEGRITY_CHECK, retryPolicy);
+        }
+        if (TRANSFER_MODE == TransferMode.ASYNC) {
+            return new ParallelMigrationManager(MAX_IN_FLIGHT, EVENT_LOOP_THREAD_COUNT, tempDir,
+                    oldStorageService, newStorageService, retryPolicy);
+        }
+        return new ParallelMigrationManager(getTaskCount(), tempDir, oldStorageService, newStorageService,
+                TRANSFER_MODE, EXECUTION_MODE, INTEGRITY_CHECK, retryPolicy);
+    }
 
     /**
      * Provides a complete migration cycle.
-     * Download a list of old storage files. Creates a {@link ParallelMigrationManager} which transfers
-     * files between storages using a locally fixed buffer for files in a temporary directory.
-     * Deletes all files in the old storage if the migration is successful.
+     * Requests a list of old storage files. Creates a {@link MigrationManager} which transfers
+     * files between storages streaming them directly or using a locally fixed buffer for files
+     * in a temporary directory. Transfers start as the names are read, without waiting for the whole list.
+     * Deletes every file in the old storage as soon as it is successfully uploaded to the new one.
+     * The progress is recorded in a journal, so after a restart files uploaded before are only deleted.
+     * If {@link #DIFFERENTIAL} is set, files already present in the new storage are compared first,
+     * and the identical ones are only deleted as well. Unless {@link #SCHEDULING} is
+     * {@link Scheduling#LISTING}, the whole list is read and ordered by the lengths of the files first.
+     * The progress of the transfers is reported every {@link #PROGRESS_INTERVAL_MILLIS}, the estimated time
+     * of arrival is known if the files were compared or scheduled.
      *
      * @param tempDir directory for storing temporary data
      * @throws MigrationException if an error occurs during migration
      */
     private void migrate(final Path tempDir) throws MigrationException {
-        List<String> oldFiles = getFilesList(oldStorageService);
-        try (ParallelMigrationManager parallelMigrationManager = new ParallelMigrationManager(MAX_THREAD_COUNT,
-                tempDir, oldStorageService, newStorageService)) {
-            System.out.println("Transfer files...");
-            parallelMigrationManager.load(oldFiles, MAX_LOAD_FACTOR);
-            System.out.println("Delete old files...");
-            parallelMigrationManager.delete(oldStorageService, oldFiles);
-        } catch (ExecutionException e) {
+        try (MetricsReporter metricsReporter = reportMetrics();
+             MappedJournal journal = new MappedJournal(journalLocation);
+             RetryingFileListIterator oldFiles = listFiles(oldStorageService, retryPolicy);
+             MigrationManager migrationManager = createMigrationManager(tempDir);
+             PrintStream progressJson = openProgressJson()) {
+            if (journal.getReplayedCount() > 0) {
+                System.out.println("Resume migration, files uploaded before restart: " + journal.getReplayedCount());
+            }
+            Iterator<String> files = oldFiles;
+            List<String> listed = null;
+            long[] lengths = null;
+            if (DIFFERENTIAL) {
+                System.out.println("Compare storages...");
+                try (MigrationPlanner planner = new MigrationPlanner(COMPARE_THREAD_COUNT, COMPARISON,
+                        oldStorageService, newStorageService, retryPolicy)) {
+                    final MigrationPlan plan = planner.plan(oldFiles, journal);
+                    System.out.println(plan);
+                    files = plan.getFiles().iterator();
+                    listed = plan.getFiles();
+                    lengths = plan.getLengths();
+                }
+            }
+            SizeSchedule schedule = null;
+            if (SCHEDULING != Scheduling.LISTING) {
+                System.out.println("Schedule files...");
+                try (MigrationScheduler scheduler = new MigrationScheduler(SCHEDULE_THREAD_COUNT, SCHEDULING,
+                        getWorkerCount(), TRANSFER_OVERHEAD_MILLIS, TRANSFER_BYTES_PER_MILLI, oldStorageService,
+                        retryPolicy)) {
+                    schedule = listed != null ? scheduler.schedule(listed, lengths, journal)
+                            : scheduler.schedule(FileNameStore.of(oldFiles), journal);
+                    files = schedule.iterator();
+                }
+            }
+            final MigrationProgress progress = migrationManager.getProgress();
+            if (progress != null && schedule != null) {
+                progress.expect(schedule.getFileCount(), schedule.getBytes());
+            } else if (progress != null && listed != null) {
+                progress.expect(listed.size(), -1);
+            }
+            System.out.println("Transfer files and delete old ones...");
+            System.out.println(STAGED_PIPELINE || TRANSFER_MODE != TransferMode.ASYNC ? INTEGRITY_CHECK
+                    : "integrity: off, the non-blocking migration does not verify files");
+            try (ProgressReporter progressReporter = progress == null ? null
+                    : new ProgressReporter(progress, PROGRESS_INTERVAL_MILLIS, System.out, progressJson)) {
+                migrationManager.migrate(files, new SpoolManager(MAX_LOAD_FACTOR, MAX_SPOOL_SIZE,
+                        SpoolManager.DEFAULT_ESTIMATE, new BufferPool(MEMORY_SPOOL_THRESHOLD, MAX_MEMORY_SPOOL_SIZE)),
+                        journal);
+            }
+            if (progress != null) {
+                System.out.println(progress);
+            }
+            if (schedule != null) {
+                schedule.complete();
+                System.out.println(schedule);
+            }
+            migrationManager.getStats().forEach(System.out::println);
+            System.out.println(connectionPool.getStats());
+            System.out.println(oldStorageLimiter);
+            System.out.println(newStorageLimiter);
+            circuitBreakers.getBreakers().forEach(System.out::println);
+            System.out.println("oldStorage metrics: " + oldStorageService.getMetrics());
+            System.out.println("newStorage metrics: " + newStorageService.getMetrics());
+        } catch (ExecutionException | IOException e) {
             throw new MigrationException(e);
+        } catch (UncheckedIOException e) {
+            throw new MigrationException("Unable to read the files names", e.getCause());
         }
     }
 
@@ -73,6 +313,7 @@ public class MigrationClient {
             } catch (IOException e) {
                 System.err.println("Unable to delete temporary directory: " + tempDir);
             }
+            connectionPool.close();
         }
     }
 
@@ -0,0 +1,81 @@
+package com.skazhenik.migration.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event of one request to a storage, from waiting for its permits and connection
+ * until the connection is released, so a download spans reading of the whole content.
+ */
+@Name(RequestEvent.NAME)
+@Label("Storage Request")
+@Category({"Migration", "Storage"})
+@Description("Request to a storage endpoint")
+@StackTrace(false)
+public final class RequestEvent extends Event {
+    public static final String NAME = "com.skazhenik.migration.Request";
+
+    @Label("Storage")
+    private String storage;
+    @Label("Operation")
+    private String operation;
+    @Label("File Name")
+    private String fileName;
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+    @Label("Status Code")
+    @Description("Response code, 0 if the request failed without a response")
+    private int statusCode;
+    @Label("Hedge")
+    @Description("Request duplicates a slow one")
+    private boolean hedge;
+    @Label("Aborted")
+    @Description("Request was aborted because its hedge won")
+    private boolean aborted;
+    @Label("Wait")
+    @Description("Time waiting for the circuit breaker, the concurrency limit and a connection")
+    @Timespan
+    private long waitNanos;
+
+    /**
+     * Ends the event and commits it if the recording takes it. Nothing is recorded while the event is disabled.
+     *
+     * @param storage    URI of the storage
+     * @param operation  name of the operation
+     * @param fileName   name of the file, {@code null} for the list of files
+     * @param bytes      number of bytes of the request or response body
+     * @param statusCode response code, 0 if the request failed without a response
+     * @param hedge      {@link Boolean#TRUE} if the request duplicates a slow one
+     * @param aborted    {@link Boolean#TRUE} if the request was aborted
+     * @param waitNanos  time waiting for the permits and the connection
+     */
+    public void commit(final String storage,
+                       final String operation,
+                       final String fileName,
+                       final long bytes,
+                       final int statusCode,
+                       final boolean hedge,
+                       final boolean aborted,
+                       final long waitNanos) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.storage = storage;
+        this.operation = operation;
+        this.fileName = fileName;
+        this.bytes = bytes;
+        this.statusCode = statusCode;
+        this.hedge = hedge;
+        this.aborted = aborted;
+        this.waitNanos = waitNanos;
+        commit();
+    }
+}
@@ -0,0 +1,71 @@
+package com.skazhenik.migration.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a failed attempt of an operation, lasting as long as the back-off before
+ * the next attempt. An attempt the retry policy does not repeat is recorded as exhausted without duration.
+ */
+@Name(RetryEvent.NAME)
+@Label("Retry")
+@Category({"Migration", "Storage"})
+@Description("Back-off after a failed attempt of an operation")
+@StackTrace(false)
+public final class RetryEvent extends Event {
+    public static final String NAME = "com.skazhenik.migration.Retry";
+
+    @Label("Service")
+    private String service;
+    @Label("Operation")
+    private String operation;
+    @Label("File Name")
+    private String fileName;
+    @Label("Attempt")
+    @Description("Number of the failed attempt starting from 1")
+    private int attempt;
+    @Label("Status Code")
+    @Description("Response code of the failed attempt, 0 if there was no response")
+    private int statusCode;
+    @Label("Error")
+    private String error;
+    @Label("Exhausted")
+    @Description("Retry policy does not allow another attempt")
+    private boolean exhausted;
+
+    /**
+     * Ends the event and commits it if the recording takes it. Nothing is recorded while the event is disabled.
+     *
+     * @param service    name of the service
+     * @param operation  name of the operation
+     * @param fileName   name of the file, {@code null} for the list of files
+     * @param attempt    number of the failed attempt starting from 1
+     * @param statusCode response code of the failed attempt, 0 if there was no response
+     * @param error      message of the exception of the failed attempt
+     * @param exhausted  {@link Boolean#TRUE} if there is no next attempt
+     */
+    public void commit(final String service,
+                       final String operation,
+                       final String fileName,
+                       final int attempt,
+                       final int statusCode,
+                       final String error,
+                       final boolean exhausted) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.service = service;
+        this.operation = operation;
+        this.fileName = fileName;
+        this.attempt = attempt;
+        this.statusCode = statusCode;
+        this.error = error;
+        this.exhausted = exhausted;
+        commit();
+    }
+}
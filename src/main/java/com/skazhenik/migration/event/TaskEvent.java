@@ -0,0 +1,54 @@
+package com.skazhenik.migration.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of the migration of one file, from the start of its task till the file is deleted
+ * from the old storage or the task fails. The requests and retries of the task are recorded as
+ * {@link RequestEvent} and {@link RetryEvent} in the same thread unless the task is non-blocking.
+ */
+@Name(TaskEvent.NAME)
+@Label("Migration Task")
+@Category("Migration")
+@Description("Migration of one file")
+@StackTrace(false)
+public final class TaskEvent extends Event {
+    public static final String NAME = "com.skazhenik.migration.Task";
+
+    @Label("File Name")
+    private String fileName;
+    @Label("Bytes")
+    @Description("Number of uploaded bytes, 0 if the file was uploaded before")
+    @DataAmount
+    private long bytes;
+    @Label("Transfer Mode")
+    private String transferMode;
+    @Label("Failed")
+    private boolean failed;
+
+    /**
+     * Ends the event and commits it if the recording takes it. Nothing is recorded while the event is disabled.
+     *
+     * @param fileName     name of the file
+     * @param bytes        number of uploaded bytes
+     * @param transferMode name of the transfer mode
+     * @param failed       {@link Boolean#TRUE} if the task failed
+     */
+    public void commit(final String fileName, final long bytes, final String transferMode, final boolean failed) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.fileName = fileName;
+        this.bytes = bytes;
+        this.transferMode = transferMode;
+        this.failed = failed;
+        commit();
+    }
+}
@@ -0,0 +1,21 @@
+package com.skazhenik.migration.exception;
+
+/**
+ * Thrown instead of waiting before the next attempt of an operation run with a {@code DeferredRetryPolicy}.
+ * The caller submits the operation again after {@link #getDelay()}.
+ */
+public class RetryDeferredException extends MigrationException {
+    private final long delay;
+
+    public RetryDeferredException(final String message, final Throwable cause, final long delay) {
+        super(message, cause);
+        this.delay = delay;
+    }
+
+    /**
+     * @return delay in milliseconds before the next attempt
+     */
+    public long getDelay() {
+        return delay;
+    }
+}
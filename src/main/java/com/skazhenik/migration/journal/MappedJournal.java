@@ -0,0 +1,230 @@
+package com.skazhenik.migration.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only {@link MigrationJournal} in a memory-mapped file. A record is copied to the mapping and
+ * survives a crash of the JVM at once, the mapping is forced to the disk periodically and on close,
+ * so a failure of the machine loses at most the records of the last period.
+ * <p>
+ * The file consists of regions of {@link #REGION_SIZE} bytes mapped one after another. A record is
+ * the state, the length of the UTF-8 name, the CRC32 of the state and the name, and the name.
+ * A record never crosses a region, the unused end of a region is marked as skipped.
+ * Replay stops at the first zero byte, a torn record or a checksum mismatch.
+ * <p>
+ * On open the journal is replayed and compacted: only files uploaded but not deleted are kept,
+ * so the journal of a huge migration does not grow across restarts and its replay takes seconds.
+ */
+public class MappedJournal implements MigrationJournal, Closeable {
+    public static final int REGION_SIZE = 16 * 1024 * 1024;
+    public static final long DEFAULT_FORCE_MILLIS = 1000;
+    private static final byte SKIP = -1;
+    private static final int HEADER_SIZE = Byte.BYTES + Short.BYTES + Integer.BYTES;
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+
+    private final FileChannel channel;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<String> uploaded = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService forcer;
+    private final int replayed;
+    private MappedByteBuffer region;
+    private long regionStart = 0;
+    private boolean dirty = false;
+
+    /**
+     * Opens the journal at {@code path}, creating it if it does not exist.
+     *
+     * @param path        journal file
+     * @param forceMillis period of forcing the records to the disk
+     * @throws IOException if the journal can not be read or written
+     */
+    public MappedJournal(final Path path, final long forceMillis) throws IOException {
+        final Set<String> pending = replay(path);
+        final Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+        channel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+            for (final String fileName : pending) {
+                record(fileName, State.UPLOADED);
+            }
+            region.force();
+            Files.move(compacted, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | UncheckedIOException e) {
+            channel.close();
+            throw e;
+        }
+        replayed = pending.size();
+        forcer = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "journal-force");
+            thread.setDaemon(true);
+            return thread;
+        });
+        forcer.scheduleWithFixedDelay(this::force, forceMillis, forceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the journal forcing it to the disk every {@link #DEFAULT_FORCE_MILLIS}.
+     *
+     * @param path journal file
+     * @throws IOException if the journal can not be read or written
+     */
+    public MappedJournal(final Path path) throws IOException {
+        this(path, DEFAULT_FORCE_MILLIS);
+    }
+
+    /**
+     * Reads the records of the journal at {@code path}.
+     *
+     * @param path journal file
+     * @return names of the files uploaded and not deleted
+     * @throws IOException if the journal exists but can not be read
+     */
+    private static Set<String> replay(final Path path) throws IOException {
+        final Set<String> pending = new HashSet<>();
+        if (!Files.exists(path)) {
+            return pending;
+        }
+        final State[] states = State.values();
+        final CRC32 crc = new CRC32();
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            for (long start = 0; start < file.size(); start += REGION_SIZE) {
+                final MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(REGION_SIZE, file.size() - start));
+                while (buffer.remaining() >= HEADER_SIZE) {
+                    final byte code = buffer.get();
+                    if (code == SKIP) {
+                        break;
+                    }
+                    final int length = Short.toUnsignedInt(buffer.getShort());
+                    final int checksum = buffer.getInt();
+                    if (code <= 0 || code > states.length || length > buffer.remaining()) {
+                        return pending;
+                    }
+                    final byte[] name = new byte[length];
+                    buffer.get(name);
+                    crc.reset();
+                    crc.update(code);
+                    crc.update(name);
+                    if ((int) crc.getValue() != checksum) {
+                        return pending;
+                    }
+                    final String fileName = new String(name, StandardCharsets.UTF_8);
+                    if (states[code - 1] == State.UPLOADED) {
+                        pending.add(fileName);
+                    } else if (states[code - 1] == State.DELETED) {
+                        pending.remove(fileName);
+                    }
+                }
+            }
+        }
+        return pending;
+    }
+
+    @Override
+    public void record(final String fileName, final State state) {
+        final byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("File name is too long for the journal: " + fileName);
+        }
+        final byte code = (byte) (state.ordinal() + 1);
+        final CRC32 crc = new CRC32();
+        crc.update(code);
+        crc.update(name);
+        lock.lock();
+        try {
+            if (region.remaining() < HEADER_SIZE + name.length) {
+                nextRegion();
+            }
+            region.put(code).putShort((short) name.length).putInt((int) crc.getValue()).put(name);
+            dirty = true;
+        } finally {
+            lock.unlock();
+        }
+        if (state == State.UPLOADED) {
+            uploaded.add(fileName);
+        } else if (state == State.DELETED) {
+            uploaded.remove(fileName);
+        }
+    }
+
+    /**
+     * Marks the rest of the current region as skipped, forces it and maps the next one.
+     */
+    private void nextRegion() {
+        if (region.hasRemaining()) {
+            region.put(SKIP);
+        }
+        region.force();
+        regionStart += REGION_SIZE;
+        try {
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to extend the journal", e);
+        }
+    }
+
+    /**
+     * Forces the records written since the last call to the disk.
+     */
+    private void force() {
+        final MappedByteBuffer buffer;
+        lock.lock();
+        try {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            buffer = region;
+        } finally {
+            lock.unlock();
+        }
+        buffer.force();
+    }
+
+    @Override
+    public boolean isUploaded(final String fileName) {
+        return uploaded.contains(fileName);
+    }
+
+    /**
+     * @return number of files uploaded but not deleted before the journal was opened
+     */
+    public int getReplayedCount() {
+        return replayed;
+    }
+
+    /**
+     * Forces all records to the disk and closes the journal.
+     *
+     * @throws IOException if the journal can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        forcer.shutdownNow();
+        lock.lock();
+        try {
+            region.force();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
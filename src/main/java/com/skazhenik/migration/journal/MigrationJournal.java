@@ -0,0 +1,57 @@
+package com.skazhenik.migration.journal;
+
+/**
+ * Records the progress of every file, so a restarted migration can skip the work finished before.
+ * A file whose upload was recorded is not transferred again, it is only deleted from the old storage.
+ * A deleted file is no longer in the old storage, so it is not migrated again anyway.
+ */
+public interface MigrationJournal {
+    /**
+     * Journal which records nothing.
+     */
+    MigrationJournal NONE = new MigrationJournal() {
+        @Override
+        public void record(final String fileName, final State state) {
+        }
+
+        @Override
+        public boolean isUploaded(final String fileName) {
+            return false;
+        }
+    };
+
+    /**
+     * Step of the migration a file has finished.
+     */
+    enum State {
+        /**
+         * The file was spooled locally. Spooled files do not outlive the migration,
+         * so the state is only informational for a restart.
+         */
+        DOWNLOADED,
+        /**
+         * The file was uploaded to the new storage.
+         */
+        UPLOADED,
+        /**
+         * The file was deleted from the old storage.
+         */
+        DELETED
+    }
+
+    /**
+     * Records that the file has finished a step. The record may be lost if the machine fails shortly after,
+     * then the step is repeated after restart.
+     *
+     * @param fileName file name
+     * @param state    {@link State} the file has reached
+     * @throws java.io.UncheckedIOException if the record can not be written
+     */
+    void record(String fileName, State state);
+
+    /**
+     * @param fileName file name
+     * @return {@link Boolean#TRUE} if the file was uploaded and not yet deleted from the old storage
+     */
+    boolean isUploaded(String fileName);
+}
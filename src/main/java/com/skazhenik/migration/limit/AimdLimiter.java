@@ -0,0 +1,216 @@
+package com.skazhenik.migration.limit;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive {@link ConcurrencyLimiter} with additive increase and multiplicative decrease.
+ * The limit grows by one per limit of successful requests while it is actually used, and is multiplied by
+ * {@code backoffRatio} when a request is dropped or when the short-term average latency exceeds the
+ * long-term one by {@code tolerance} times, which is the sign of requests queuing up at the endpoint.
+ * After a decrease the next one is possible only after a limit of requests, so a burst of failures
+ * started at the old limit is counted once.
+ * <p>
+ * Waiting is done on a {@link ReentrantLock}, which does not pin virtual threads to their carriers.
+ */
+public class AimdLimiter implements ConcurrencyLimiter {
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final double DEFAULT_TOLERANCE = 2;
+    private static final double SHORT_SMOOTHING = 0.1;
+    private static final double LONG_SMOOTHING = 0.01;
+
+    private enum Outcome {
+        SUCCESS, DROPPED, IGNORED
+    }
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double tolerance;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private double limit;
+    private int inFlight = 0;
+    private double shortRtt = 0;
+    private double longRtt = 0;
+    private int sinceDecrease;
+    private long decreases = 0;
+
+    /**
+     * @param name         name of the endpoint for statistics
+     * @param initialLimit limit before the first adjustment
+     * @param minLimit     lower bound of the limit
+     * @param maxLimit     upper bound of the limit
+     * @param backoffRatio factor of the limit decrease
+     * @param tolerance    ratio of short-term and long-term latency considered as overload
+     */
+    public AimdLimiter(final String name,
+                       final int initialLimit,
+                       final int minLimit,
+                       final int maxLimit,
+                       final double backoffRatio,
+                       final double tolerance) {
+        this.name = name;
+        this.limit = initialLimit;
+        this.sinceDecrease = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Creates a limiter with {@link #DEFAULT_BACKOFF_RATIO} and {@link #DEFAULT_TOLERANCE}.
+     *
+     * @param name         name of the endpoint for statistics
+     * @param initialLimit limit before the first adjustment
+     * @param minLimit     lower bound of the limit
+     * @param maxLimit     upper bound of the limit
+     */
+    public AimdLimiter(final String name, final int initialLimit, final int minLimit, final int maxLimit) {
+        this(name, initialLimit, minLimit, maxLimit, DEFAULT_BACKOFF_RATIO, DEFAULT_TOLERANCE);
+    }
+
+    @Override
+    public Permit acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) limit) {
+                permitReleased.await();
+            }
+            inFlight++;
+            return new AimdPermit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                return null;
+            }
+            inFlight++;
+            return new AimdPermit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease() {
+        if (sinceDecrease >= (int) limit) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+            sinceDecrease = 0;
+            decreases++;
+        }
+    }
+
+    /**
+     * @param inFlightBefore number of requests in flight including the released one
+     * @param rttNanos       latency of a successful request
+     */
+    private void onSuccess(final int inFlightBefore, final long rttNanos) {
+        shortRtt = shortRtt == 0 ? rttNanos : shortRtt + SHORT_SMOOTHING * (rttNanos - shortRtt);
+        longRtt = longRtt == 0 ? rttNanos : longRtt + LONG_SMOOTHING * (rttNanos - longRtt);
+        if (shortRtt > tolerance * longRtt) {
+            decrease();
+        } else if (inFlightBefore * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Returns a permit and adjusts the limit.
+     *
+     * @param outcome  {@link Outcome} of the request
+     * @param rttNanos latency of a successful request
+     */
+    private void release(final Outcome outcome, final long rttNanos) {
+        lock.lock();
+        try {
+            final int inFlightBefore = inFlight--;
+            sinceDecrease++;
+            if (outcome == Outcome.SUCCESS) {
+                onSuccess(inFlightBefore, rttNanos);
+            } else if (outcome == Outcome.DROPPED) {
+                decrease();
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of times the limit was decreased
+     */
+    public long getDecreases() {
+        lock.lock();
+        try {
+            return decreases;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("%s limiter: limit=%d inFlight=%d decreases=%d rtt=%.1fms",
+                    name, (int) limit, inFlight, decreases, longRtt / 1e6);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class AimdPermit implements Permit {
+        private boolean released = false;
+
+        private void release(final Outcome outcome, final long rttNanos) {
+            if (released) {
+                return;
+            }
+            released = true;
+            AimdLimiter.this.release(outcome, rttNanos);
+        }
+
+        @Override
+        public void onSuccess(final long rttNanos) {
+            release(Outcome.SUCCESS, rttNanos);
+        }
+
+        @Override
+        public void onDropped() {
+            release(Outcome.DROPPED, 0);
+        }
+
+        @Override
+        public void onIgnore() {
+            release(Outcome.IGNORED, 0);
+        }
+    }
+}
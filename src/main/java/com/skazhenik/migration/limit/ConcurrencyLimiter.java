@@ -0,0 +1,53 @@
+package com.skazhenik.migration.limit;
+
+/**
+ * Limits the number of requests to one storage endpoint executing at once.
+ * Every request takes a {@link Permit} and returns it with the outcome, which lets
+ * an adaptive limiter find the concurrency the endpoint can handle.
+ */
+public interface ConcurrencyLimiter {
+    /**
+     * Waits until the number of requests in flight is below the limit.
+     *
+     * @return {@link Permit} of the request
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    Permit acquire() throws InterruptedException;
+
+    /**
+     * @return {@link Permit} of the request or {@code null} if the limit is reached
+     */
+    Permit tryAcquire();
+
+    /**
+     * @return current limit of requests in flight
+     */
+    int getLimit();
+
+    /**
+     * @return number of requests in flight
+     */
+    int getInFlight();
+
+    /**
+     * Permit of one request. Exactly one of the methods must be called when the request is over.
+     */
+    interface Permit {
+        /**
+         * The request succeeded.
+         *
+         * @param rttNanos time from sending the request to receiving the response in nanoseconds
+         */
+        void onSuccess(long rttNanos);
+
+        /**
+         * The request failed because the endpoint is overloaded: server error, timeout or broken connection.
+         */
+        void onDropped();
+
+        /**
+         * The request failed for a reason unrelated to the load of the endpoint.
+         */
+        void onIgnore();
+    }
+}
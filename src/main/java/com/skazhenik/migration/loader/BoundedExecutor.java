@@ -0,0 +1,90 @@
+package com.skazhenik.migration.loader;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs tasks with at most the given number of them executing at once.
+ * In {@link ExecutionMode#PLATFORM} mode the limit is the size of a fixed thread pool and extra tasks wait
+ * in its queue. In {@link ExecutionMode#VIRTUAL} mode every task gets its own virtual thread and
+ * submission waits for a semaphore permit, so no more than the limit of threads exist at once.
+ */
+public class BoundedExecutor implements Executor, AutoCloseable {
+    private final ExecutorService executorService;
+    private final Semaphore permits;
+
+    /**
+     * Creates an executor of the given mode.
+     *
+     * @param mode        {@link ExecutionMode} of the executor
+     * @param concurrency maximum number of simultaneously executing tasks
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public BoundedExecutor(final ExecutionMode mode, final int concurrency) {
+        if (mode == ExecutionMode.VIRTUAL) {
+            executorService = VirtualThreads.newExecutor();
+            permits = new Semaphore(concurrency);
+        } else {
+            executorService = Executors.newFixedThreadPool(concurrency);
+            permits = null;
+        }
+    }
+
+    /**
+     * Submits {@code task} for execution, waiting for a free permit in {@link ExecutionMode#VIRTUAL} mode.
+     *
+     * @param task task to execute
+     * @param <T>  task result type
+     * @return {@link Future} of the task
+     */
+    public <T> Future<T> submit(final Callable<T> task) {
+        if (permits == null) {
+            return executorService.submit(task);
+        }
+        permits.acquireUninterruptibly();
+        try {
+            return executorService.submit(() -> {
+                try {
+                    return task.call();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Executes {@code command} the same way as {@link #submit(Callable)}.
+     *
+     * @param command task to execute
+     */
+    @Override
+    public void execute(final Runnable command) {
+        submit(() -> {
+            command.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if the executor was shut down
+     */
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+    /**
+     * Stops accepting tasks, already submitted tasks are completed.
+     */
+    @Override
+    public void close() {
+        executorService.shutdown();
+    }
+}
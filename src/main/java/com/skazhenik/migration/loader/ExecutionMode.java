@@ -0,0 +1,19 @@
+package com.skazhenik.migration.loader;
+
+/**
+ * Defines which threads run migration tasks.
+ *
+ * @see BoundedExecutor
+ */
+public enum ExecutionMode {
+    /**
+     * Tasks run on a fixed pool of platform threads, the pool size limits concurrency.
+     */
+    PLATFORM,
+    /**
+     * Every task runs on its own virtual thread, concurrency is limited by a semaphore and may be as high as
+     * the number of files in flight, since a task waiting for a connection holds no platform thread.
+     * Requires the application built with the {@code java21} profile and Java 21 runtime.
+     */
+    VIRTUAL
+}
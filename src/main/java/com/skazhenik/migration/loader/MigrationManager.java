@@ -0,0 +1,74 @@
+package com.skazhenik.migration.loader;
+
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.spool.SpoolManager;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Moves files from the old storage to the new one and deletes them from the old storage.
+ */
+public interface MigrationManager extends AutoCloseable {
+    /**
+     * Migrates all {@code files}. Every file is deleted from the old storage
+     * right after it was uploaded to the new one. Files are migrated as they are taken from {@code files},
+     * so migration can start before the whole list is received. If the iterator throws
+     * {@link java.io.UncheckedIOException}, the files taken so far are migrated and the exception is reported.
+     * <p>
+     * Every finished step is recorded in {@code journal}, and a file uploaded by a previous migration
+     * is only deleted from the old storage.
+     *
+     * @param files        {@link Iterator} of files names
+     * @param spoolManager {@link SpoolManager} limiting the size of the directory with local files
+     * @param journal      {@link MigrationJournal} of the migration
+     * @throws ExecutionException if migration of one of the files ended with an exception
+     *                            or the files names could not be read
+     */
+    void migrate(Iterator<String> files, SpoolManager spoolManager, MigrationJournal journal)
+            throws ExecutionException;
+
+    /**
+     * Migrates all {@code files} without a journal.
+     *
+     * @param files        {@link Iterator} of files names
+     * @param spoolManager {@link SpoolManager} limiting the size of the directory with local files
+     * @throws ExecutionException if migration of one of the files ended with an exception
+     *                            or the files names could not be read
+     * @see #migrate(Iterator, SpoolManager, MigrationJournal)
+     */
+    default void migrate(final Iterator<String> files, final SpoolManager spoolManager)
+            throws ExecutionException {
+        migrate(files, spoolManager, MigrationJournal.NONE);
+    }
+
+    /**
+     * Migrates all {@code files}.
+     *
+     * @param files        {@link List} of files names
+     * @param spoolManager {@link SpoolManager} limiting the size of the directory with local files
+     * @throws ExecutionException if migration of one of the files ended with an exception
+     * @see #migrate(Iterator, SpoolManager)
+     */
+    default void migrate(final List<String> files, final SpoolManager spoolManager) throws ExecutionException {
+        migrate(files.iterator(), spoolManager);
+    }
+
+    /**
+     * @return statistics of the migration stages, empty if the manager does not split work into stages
+     */
+    default List<StageStats> getStats() {
+        return List.of();
+    }
+
+    /**
+     * @return {@link MigrationProgress} of the migration or {@code null} if the manager does not count it
+     */
+    default MigrationProgress getProgress() {
+        return null;
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,80 @@
+package com.skazhenik.migration.loader;
+
+import com.skazhenik.migration.service.FileNameStore;
+
+/**
+ * Result of comparing the old storage with the new one by {@link MigrationPlanner}.
+ */
+public class MigrationPlan {
+    private final FileNameStore files;
+    private final long[] lengths;
+    private final int resumed;
+    private final int missing;
+    private final int identical;
+    private final int different;
+
+    MigrationPlan(final FileNameStore files,
+                  final long[] lengths,
+                  final int resumed,
+                  final int missing,
+                  final int identical,
+                  final int different) {
+        this.files = files;
+        this.lengths = lengths;
+        this.resumed = resumed;
+        this.missing = missing;
+        this.identical = identical;
+        this.different = different;
+    }
+
+    /**
+     * @return names of all files of the old storage, those uploaded according to the journal are only deleted
+     */
+    public FileNameStore getFiles() {
+        return files;
+    }
+
+    /**
+     * The old copies of the files present in both storages were opened by the comparison, so their lengths
+     * need not be requested again by {@link MigrationScheduler}.
+     *
+     * @return lengths of the {@link #getFiles()}, negative if not learned by the comparison
+     */
+    public long[] getLengths() {
+        return lengths;
+    }
+
+    /**
+     * @return number of files uploaded according to the journal before the comparison
+     */
+    public int getResumed() {
+        return resumed;
+    }
+
+    /**
+     * @return number of files missing in the new storage
+     */
+    public int getMissing() {
+        return missing;
+    }
+
+    /**
+     * @return number of files whose copy in the new storage is the same, they are not transferred
+     */
+    public int getIdentical() {
+        return identical;
+    }
+
+    /**
+     * @return number of files whose copy in the new storage differs, the copy is deleted and the file transferred
+     */
+    public int getDifferent() {
+        return different;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("plan: files=%d resumed=%d missing=%d identical=%d different=%d",
+                files.size(), resumed, missing, identical, different);
+    }
+}
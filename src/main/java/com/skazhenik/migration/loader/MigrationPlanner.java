@@ -0,0 +1,195 @@
+package com.skazhenik.migration.loader;
+
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.retry.RetryPolicy;
+import com.skazhenik.migration.service.FileNameStore;
+import com.skazhenik.migration.service.NewStorageService;
+import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.util.RetryingFileListIterator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+import static com.skazhenik.migration.util.MigrationUtils.*;
+
+/**
+ * Compares the old storage with the new one before the migration, so only the files which need it are
+ * transferred. The list of the new storage is kept in a {@link FileNameStore} and the list of the old storage
+ * is joined with it by hash lookups as it is read. A file missing in the new storage is transferred. The copies
+ * of a file present in both storages are compared in parallel: an identical file is recorded in the journal as
+ * uploaded, so the migration only deletes it from the old storage, and a different copy is deleted from
+ * the new storage, so the transfer does not run into a conflict. A listed file missing in the old storage when
+ * its copy is read was deleted after its upload, so it is considered identical as well.
+ */
+public class MigrationPlanner implements AutoCloseable {
+    /**
+     * How the copies of a file present in both storages are compared.
+     */
+    public enum Comparison {
+        /**
+         * Copies of the same length are considered identical. Only the response headers are read.
+         */
+        SIZE,
+        /**
+         * Copies of the same length are read and compared byte by byte. Reads both storages in full,
+         * so it is worth it only when copies of the same length may differ.
+         */
+        CONTENT
+    }
+
+    private final OldStorageService oldStorageService;
+    private final NewStorageService newStorageService;
+    private final Comparison comparison;
+    private final int threads;
+    private final RetryPolicy retryPolicy;
+    private final BoundedExecutor executor;
+
+    /**
+     * @param threads           number of files compared at once
+     * @param comparison        {@link Comparison} of the copies present in both storages
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @param retryPolicy       {@link RetryPolicy} deciding whether and when a failed request is repeated
+     */
+    public MigrationPlanner(final int threads,
+                            final Comparison comparison,
+                            final OldStorageService oldStorageService,
+                            final NewStorageService newStorageService,
+                            final RetryPolicy retryPolicy) {
+        this.oldStorageService = oldStorageService;
+        this.newStorageService = newStorageService;
+        this.comparison = comparison;
+        this.threads = threads;
+        this.retryPolicy = retryPolicy;
+        this.executor = new BoundedExecutor(ExecutionMode.PLATFORM, threads);
+    }
+
+    /**
+     * Lists the new storage, joins it with {@code oldFiles} and compares the files present in both storages.
+     *
+     * @param oldFiles {@link Iterator} of files names of the old storage
+     * @param journal  {@link MigrationJournal} where identical files are recorded as uploaded
+     * @return {@link MigrationPlan} with all files of the old storage
+     * @throws ExecutionException if a storage can not be listed, a file can not be compared
+     *                            or the thread was interrupted
+     */
+    public MigrationPlan plan(final Iterator<String> oldFiles, final MigrationJournal journal)
+            throws ExecutionException {
+        final FileNameStore newFiles;
+        try (RetryingFileListIterator iterator = listFiles(newStorageService, retryPolicy)) {
+            newFiles = FileNameStore.of(iterator);
+        } catch (MigrationException | IOException | UncheckedIOException e) {
+            throw new ExecutionException("Unable to list the new storage", e);
+        }
+        // a permit for every file compared at once, all permits are free when the comparison is over
+        final Semaphore comparing = new Semaphore(threads);
+        final Queue<MigrationException> exceptions = new ConcurrentLinkedQueue<>();
+        final AtomicInteger identical = new AtomicInteger();
+        final AtomicInteger different = new AtomicInteger();
+        // index of the file in the plan and the length of its old copy learned by the comparison
+        final Queue<long[]> learned = new ConcurrentLinkedQueue<>();
+        final int[] listed = new int[1];
+        final int[] resumed = new int[1];
+        final int[] missing = new int[1];
+        FileNameStore files = null;
+        try {
+            files = FileNameStore.of(new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return oldFiles.hasNext();
+                }
+
+                @Override
+                public String next() {
+                    final String name = oldFiles.next();
+                    final int index = listed[0]++;
+                    if (journal.isUploaded(name)) {
+                        resumed[0]++;
+                    } else if (!newFiles.contains(name)) {
+                        missing[0]++;
+                    } else {
+                        comparing.acquireUninterruptibly();
+                        try {
+                            executor.submit(() -> {
+                                try {
+                                    compare(name, journal, identical, different,
+                                            length -> learned.add(new long[]{index, length}));
+                                } catch (MigrationException | RuntimeException e) {
+                                    exceptions.add(new MigrationException("Unable to compare file: " + name, e));
+                                } finally {
+                                    comparing.release();
+                                }
+                                return null;
+                            });
+                        } catch (RejectedExecutionException e) {
+                            comparing.release();
+                            throw e;
+                        }
+                    }
+                    return name;
+                }
+            });
+        } catch (UncheckedIOException e) {
+            exceptions.add(new MigrationException("Unable to read the files names", e.getCause()));
+        }
+        try {
+            comparing.acquire(threads);
+            comparing.release(threads);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exceptions.add(new MigrationException("Comparison was interrupted", e));
+        }
+        if (!exceptions.isEmpty()) {
+            final List<MigrationException> causes = new ArrayList<>(exceptions);
+            final ExecutionException e = new ExecutionException(causes.get(0));
+            causes.subList(1, causes.size()).forEach(e::addSuppressed);
+            throw e;
+        }
+        final long[] lengths = new long[files.size()];
+        Arrays.fill(lengths, -1);
+        learned.forEach(length -> lengths[(int) length[0]] = length[1]);
+        return new MigrationPlan(files, lengths, resumed[0], missing[0], identical.get(), different.get());
+    }
+
+    /**
+     * Compares the copies of a file and prepares it for the migration.
+     *
+     * @param name      file name
+     * @param journal   {@link MigrationJournal} where an identical file is recorded as uploaded
+     * @param identical number of identical files
+     * @param different number of different files
+     * @param length    called with the length of the old copy
+     * @throws MigrationException if the file can not be compared or its copy deleted
+     */
+    private void compare(final String name,
+                         final MigrationJournal journal,
+                         final AtomicInteger identical,
+                         final AtomicInteger different,
+                         final LongConsumer length) throws MigrationException {
+        if (isSameFile(oldStorageService, newStorageService, name, comparison == Comparison.CONTENT, length,
+                retryPolicy)) {
+            journal.record(name, MigrationJournal.State.UPLOADED);
+            identical.incrementAndGet();
+        } else {
+            deleteFile(newStorageService, name, retryPolicy);
+            different.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
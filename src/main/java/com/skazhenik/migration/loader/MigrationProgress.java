@@ -0,0 +1,137 @@
+package com.skazhenik.migration.loader;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of a migration counted by its tasks. Every counter is a {@link LongAdder}, so tasks finishing
+ * at once do not contend for one memory location and counting never makes a worker wait for another.
+ * A file is submitted when it is taken from the list, started when a worker takes it, and completed or failed
+ * when its task is over. Bytes are counted when the content of a file is uploaded.
+ *
+ * @see ProgressReporter
+ */
+public class MigrationProgress {
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private volatile long expectedFiles = -1;
+    private volatile long expectedBytes = -1;
+    private volatile long startNanos = 0;
+
+    /**
+     * Sets the size of the whole migration when it is known before the files are taken,
+     * otherwise the remaining files are those submitted and not finished yet.
+     *
+     * @param files number of files to migrate
+     * @param bytes number of bytes to transfer or negative number if it is unknown
+     */
+    public void expect(final long files, final long bytes) {
+        expectedFiles = files;
+        expectedBytes = bytes;
+    }
+
+    void submitted() {
+        if (startNanos == 0) {
+            startNanos = System.nanoTime();
+        }
+        submitted.increment();
+    }
+
+    void started() {
+        started.increment();
+    }
+
+    void transferred(final long length) {
+        bytes.add(length);
+    }
+
+    void completed() {
+        completed.increment();
+    }
+
+    void failed() {
+        failed.increment();
+    }
+
+    /**
+     * @return number of files taken from the list
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * @return number of files waiting for a worker
+     */
+    public long getQueued() {
+        return Math.max(0, submitted.sum() - started.sum());
+    }
+
+    /**
+     * @return number of files being migrated
+     */
+    public long getInFlight() {
+        return Math.max(0, started.sum() - completed.sum() - failed.sum());
+    }
+
+    /**
+     * @return number of files migrated
+     */
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * @return number of files whose migration failed
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return number of uploaded bytes
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return number of files to migrate or negative number if it is unknown
+     */
+    public long getExpectedFiles() {
+        return expectedFiles;
+    }
+
+    /**
+     * @return number of bytes to transfer or negative number if it is unknown
+     */
+    public long getExpectedBytes() {
+        return expectedBytes;
+    }
+
+    /**
+     * @return number of files not finished yet, only the submitted ones if the size of the migration is unknown
+     */
+    public long getRemaining() {
+        final long finished = completed.sum() + failed.sum();
+        return Math.max(0, (expectedFiles >= 0 ? expectedFiles : submitted.sum()) - finished);
+    }
+
+    /**
+     * @return time since the first file was submitted in milliseconds, 0 before it
+     */
+    public long getElapsedMillis() {
+        final long start = startNanos;
+        return start == 0 ? 0 : (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("progress: files=%d/%s bytes=%d/%s inFlight=%d queued=%d failed=%d elapsed=%ds",
+                getCompleted(), expectedFiles >= 0 ? expectedFiles : "?", getBytes(),
+                expectedBytes >= 0 ? expectedBytes : "?", getInFlight(), getQueued(), getFailed(),
+                getElapsedMillis() / 1000);
+    }
+}
@@ -0,0 +1,138 @@
+package com.skazhenik.migration.loader;
+
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.retry.RetryPolicy;
+import com.skazhenik.migration.service.OldStorageService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static com.skazhenik.migration.util.MigrationUtils.getFileLength;
+
+/**
+ * Orders the files of the migration by their lengths, so a few huge files do not start late and
+ * keep the migration running after all other files are done. The lengths are learned in parallel
+ * from the responses of the old storage before the migration: every file is opened and closed without
+ * reading the content. Files uploaded according to the journal are only deleted and are not opened.
+ *
+ * @see Scheduling
+ */
+public class MigrationScheduler implements AutoCloseable {
+    private final OldStorageService oldStorageService;
+    private final Scheduling scheduling;
+    private final int threads;
+    private final int workers;
+    private final long overheadMillis;
+    private final double bytesPerMilli;
+    private final RetryPolicy retryPolicy;
+    private final BoundedExecutor executor;
+
+    /**
+     * @param threads           number of files opened at once
+     * @param scheduling        {@link Scheduling} of the files
+     * @param workers           number of files the migration transfers at once
+     * @param overheadMillis    expected time of transferring an empty file
+     * @param bytesPerMilli     expected bandwidth of one transfer
+     * @param oldStorageService service for old storage
+     * @param retryPolicy       {@link RetryPolicy} deciding whether and when a failed request is repeated
+     */
+    public MigrationScheduler(final int threads,
+                              final Scheduling scheduling,
+                              final int workers,
+                              final long overheadMillis,
+                              final double bytesPerMilli,
+                              final OldStorageService oldStorageService,
+                              final RetryPolicy retryPolicy) {
+        this.oldStorageService = oldStorageService;
+        this.scheduling = scheduling;
+        this.threads = threads;
+        this.workers = workers;
+        this.overheadMillis = overheadMillis;
+        this.bytesPerMilli = bytesPerMilli;
+        this.retryPolicy = retryPolicy;
+        this.executor = new BoundedExecutor(ExecutionMode.PLATFORM, threads);
+    }
+
+    /**
+     * Learns the lengths of the {@code files} and orders them.
+     *
+     * @param files   names of the files of the old storage
+     * @param journal {@link MigrationJournal} of the migration
+     * @return {@link SizeSchedule} of the {@code files}
+     * @throws ExecutionException if the length of a file can not be learned
+     */
+    public SizeSchedule schedule(final List<String> files, final MigrationJournal journal)
+            throws ExecutionException {
+        final long[] known = new long[files.size()];
+        if (scheduling != Scheduling.LISTING) {
+            Arrays.fill(known, -1);
+        }
+        return schedule(files, known, journal);
+    }
+
+    /**
+     * Learns the lengths of the {@code files} not known yet and orders them.
+     *
+     * @param files   names of the files of the old storage
+     * @param known   lengths of the {@code files} learned before, negative if not known,
+     *                e.g. {@link MigrationPlan#getLengths()}
+     * @param journal {@link MigrationJournal} of the migration
+     * @return {@link SizeSchedule} of the {@code files}
+     * @throws ExecutionException if the length of a file can not be learned
+     */
+    public SizeSchedule schedule(final List<String> files, final long[] known, final MigrationJournal journal)
+            throws ExecutionException {
+        final long[] lengths = known.clone();
+        if (scheduling != Scheduling.LISTING) {
+            // every task opens its own share of the files, so millions of files do not need millions of futures
+            final List<Future<Object>> futures = new ArrayList<>();
+            for (int task = 0; task < threads; task++) {
+                final int first = task;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < lengths.length; i += threads) {
+                        final String name = files.get(i);
+                        if (journal.isUploaded(name)) {
+                            lengths[i] = 0;
+                            continue;
+                        }
+                        if (lengths[i] >= 0) {
+                            continue;
+                        }
+                        try {
+                            lengths[i] = getFileLength(oldStorageService, name, retryPolicy);
+                        } catch (MigrationException e) {
+                            throw new MigrationException("Unable to get the length of file: " + name, e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            final List<ExecutionException> exceptions = new ArrayList<>();
+            for (final Future<Object> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ExecutionException("Scheduling was interrupted", e);
+                } catch (ExecutionException e) {
+                    exceptions.add(e);
+                }
+            }
+            if (!exceptions.isEmpty()) {
+                final ExecutionException e = exceptions.get(0);
+                exceptions.subList(1, exceptions.size()).forEach(e::addSuppressed);
+                throw e;
+            }
+        }
+        return new SizeSchedule(files, lengths, scheduling, workers, overheadMillis, bytesPerMilli);
+    }
+
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
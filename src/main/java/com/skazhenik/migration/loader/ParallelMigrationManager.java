@@ -1,51 +1,242 @@
 package com.skazhenik.migration.loader;
 
+import com.skazhenik.migration.checksum.FileChecksum;
+import com.skazhenik.migration.checksum.IntegrityCheck;
+import com.skazhenik.migration.event.TaskEvent;
 import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.exception.RetryDeferredException;
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.retry.BackoffRetryPolicy;
+import com.skazhenik.migration.retry.DeferredRetryPolicy;
+import com.skazhenik.migration.retry.RetryPolicy;
 import com.skazhenik.migration.service.AbstractStorageService;
+import com.skazhenik.migration.service.AsyncStorageService;
 import com.skazhenik.migration.service.NewStorageService;
 import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.spool.Spool;
+import com.skazhenik.migration.spool.SpoolManager;
+import com.skazhenik.migration.util.AsyncMigrationUtils;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 import static com.skazhenik.migration.util.FileUtils.deleteFileIfPossible;
 import static com.skazhenik.migration.util.MigrationUtils.*;
 
 /**
  * Provides concurrent file migration processing.
- * Each thread performs a complete download-upload cycle.
+ * The migration of every file is split into transfer, verification and deletion steps run by a
+ * {@link PriorityExecutor}, which keeps first attempts of transfers ahead of retries, verifications
+ * and deletions by weighted fair sharing of the workers, see {@link TaskPriority}.
+ * The file is verified by its {@link IntegrityCheck} between the upload and the delete,
+ * the non-blocking migration does not verify files. Finished files and uploaded bytes are counted
+ * in the {@link MigrationProgress} of the manager, every task is recorded as a {@link TaskEvent}.
+ *
+ * @see TransferMode
  */
-public class ParallelMigrationManager implements AutoCloseable {
+public class ParallelMigrationManager implements MigrationManager {
     private final Path tempDir;
     private final OldStorageService oldStorageService;
     private final NewStorageService newStorageService;
-    private final ExecutorService executorService;
+    private final TransferMode transferMode;
+    private final PriorityExecutor executor;
+    private final AsyncStorageService asyncOldStorageService;
+    private final AsyncStorageService asyncNewStorageService;
+    private final Semaphore inFlight;
+    private final IntegrityCheck integrityCheck;
+    private final RetryPolicy retryPolicy;
+    private final MigrationProgress progress = new MigrationProgress();
+
+    /**
+     * Creates a new instance of the class for non-blocking migration with at most {@code inFlight}
+     * transfers started at once. The transfers are driven by {@code eventLoopThreads} threads of
+     * {@link HttpClient}, which are not held while a transfer waits for the storage.
+     *
+     * @param inFlight          maximum number of files transferred at once
+     * @param eventLoopThreads  number of threads handling requests
+     * @param tempDir           directory for storing temporary data
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @param retryPolicy       {@link RetryPolicy} deciding whether and when a failed request is repeated
+     * @see TransferMode#ASYNC
+     */
+    public ParallelMigrationManager(final int inFlight,
+                                    final int eventLoopThreads,
+                                    final Path tempDir,
+                                    final OldStorageService oldStorageService,
+                                    final NewStorageService newStorageService,
+                                    final RetryPolicy retryPolicy) {
+        this.tempDir = tempDir;
+        this.oldStorageService = oldStorageService;
+        this.newStorageService = newStorageService;
+        this.transferMode = TransferMode.ASYNC;
+        this.executor = new PriorityExecutor(ExecutionMode.PLATFORM, eventLoopThreads);
+        final HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(oldStorageService.getTimeouts().getConnectTimeout()))
+                .executor(executor)
+                .build();
+        this.asyncOldStorageService = new AsyncStorageService(oldStorageService, client);
+        this.asyncNewStorageService = new AsyncStorageService(newStorageService, client);
+        this.inFlight = new Semaphore(inFlight);
+        this.integrityCheck = IntegrityCheck.NONE;
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Creates a new instance of the class for non-blocking migration retrying with
+     * the default {@link BackoffRetryPolicy}.
+     *
+     * @param inFlight          maximum number of files transferred at once
+     * @param eventLoopThreads  number of threads handling requests
+     * @param tempDir           directory for storing temporary data
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @see TransferMode#ASYNC
+     */
+    public ParallelMigrationManager(final int inFlight,
+                                    final int eventLoopThreads,
+                                    final Path tempDir,
+                                    final OldStorageService oldStorageService,
+                                    final NewStorageService newStorageService) {
+        this(inFlight, eventLoopThreads, tempDir, oldStorageService, newStorageService, new BackoffRetryPolicy());
+    }
 
     /**
      * Creates a new instance of the class for parallel migration with
-     * a given number of threads, a temporary directory and storages.
-     * Uses {@link ExecutorService} for multithreaded execution.
+     * a given number of concurrent tasks, a temporary directory and storages.
+     * Uses {@link PriorityExecutor} for multithreaded execution.
      *
-     * @param threads           number of threads
+     * @param threads           number of concurrent tasks, in {@link ExecutionMode#VIRTUAL} mode it may be far above
+     *                          the number of connections, which the tasks wait for without holding threads
      * @param tempDir           directory for storing temporary data
      * @param oldStorageService service for old storage
      * @param newStorageService service for new storage
-     * @see java.util.concurrent.Executors#newFixedThreadPool(int)
+     * @param transferMode      way of moving file content between storages, {@link TransferMode#ASYNC}
+     *                          mode runs up to {@code threads} transfers on two threads
+     * @param executionMode     kind of threads running the tasks, ignored in {@link TransferMode#ASYNC} mode
+     * @param integrityCheck    {@link IntegrityCheck} of every transferred file before it is deleted
+     * @param retryPolicy       {@link RetryPolicy} deciding whether and when a failed request is repeated
+     * @throws UnsupportedOperationException if {@link ExecutionMode#VIRTUAL} mode is not available
+     * @throws IllegalArgumentException      if {@code transferMode} is {@link TransferMode#ASYNC}
      */
     public ParallelMigrationManager(final int threads,
                                     final Path tempDir,
                                     final OldStorageService oldStorageService,
-                                    final NewStorageService newStorageService) {
+                                    final NewStorageService newStorageService,
+                                    final TransferMode transferMode,
+                                    final ExecutionMode executionMode,
+                                    final IntegrityCheck integrityCheck,
+                                    final RetryPolicy retryPolicy) {
+        if (transferMode == TransferMode.ASYNC) {
+            throw new IllegalArgumentException("Use the constructor with the number of event loop threads");
+        }
         this.tempDir = tempDir;
         this.oldStorageService = oldStorageService;
         this.newStorageService = newStorageService;
-        this.executorService = Executors.newFixedThreadPool(threads);
+        this.transferMode = transferMode;
+        this.executor = new PriorityExecutor(executionMode, threads);
+        this.asyncOldStorageService = null;
+        this.asyncNewStorageService = null;
+        this.inFlight = null;
+        this.integrityCheck = integrityCheck;
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Creates a new instance of the class for parallel migration retrying with
+     * the default {@link BackoffRetryPolicy}.
+     *
+     * @param threads           number of concurrent tasks
+     * @param tempDir           directory for storing temporary data
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @param transferMode      way of moving file content between storages
+     * @param executionMode     kind of threads running the tasks
+     * @param integrityCheck    {@link IntegrityCheck} of every transferred file before it is deleted
+     * @throws UnsupportedOperationException if {@link ExecutionMode#VIRTUAL} mode is not available
+     * @throws IllegalArgumentException      if {@code transferMode} is {@link TransferMode#ASYNC}
+     */
+    public ParallelMigrationManager(final int threads,
+                                    final Path tempDir,
+                                    final OldStorageService oldStorageService,
+                                    final NewStorageService newStorageService,
+                                    final TransferMode transferMode,
+                                    final ExecutionMode executionMode,
+                                    final IntegrityCheck integrityCheck) {
+        this(threads, tempDir, oldStorageService, newStorageService, transferMode, executionMode, integrityCheck,
+                new BackoffRetryPolicy());
+    }
+
+    /**
+     * Creates a new instance of the class for parallel migration without reading the files back.
+     *
+     * @param threads           number of concurrent tasks
+     * @param tempDir           directory for storing temporary data
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @param transferMode      way of moving file content between storages
+     * @param executionMode     kind of threads running the tasks
+     * @throws UnsupportedOperationException if {@link ExecutionMode#VIRTUAL} mode is not available
+     * @throws IllegalArgumentException      if {@code transferMode} is {@link TransferMode#ASYNC}
+     * @see IntegrityCheck#NONE
+     */
+    public ParallelMigrationManager(final int threads,
+                                    final Path tempDir,
+                                    final OldStorageService oldStorageService,
+                                    final NewStorageService newStorageService,
+                                    final TransferMode transferMode,
+                                    final ExecutionMode executionMode) {
+        this(threads, tempDir, oldStorageService, newStorageService, transferMode, executionMode,
+                IntegrityCheck.NONE);
+    }
+
+    /**
+     * Creates a new instance of the class for parallel migration on a fixed pool of platform threads.
+     *
+     * @param threads           number of threads
+     * @param tempDir           directory for storing temporary data
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @param transferMode      way of moving file content between storages
+     * @see ExecutionMode#PLATFORM
+     */
+    public ParallelMigrationManager(final int threads,
+                                    final Path tempDir,
+                                    final OldStorageService oldStorageService,
+                                    final NewStorageService newStorageService,
+                                    final TransferMode transferMode) {
+        this(threads, tempDir, oldStorageService, newStorageService, transferMode, ExecutionMode.PLATFORM);
+    }
+
+    /**
+     * Creates a new instance of the class for parallel migration which spools every file.
+     *
+     * @param threads           number of threads
+     * @param tempDir           directory for storing temporary data
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @see TransferMode#SPOOL
+     */
+    public ParallelMigrationManager(final int threads,
+                                    final Path tempDir,
+                                    final OldStorageService oldStorageService,
+                                    final NewStorageService newStorageService) {
+        this(threads, tempDir, oldStorageService, newStorageService, TransferMode.SPOOL);
     }
 
     /**
@@ -74,32 +265,381 @@ public class ParallelMigrationManager implements AutoCloseable {
     }
 
     /**
-     * Performs parallel migration.
+     * Waits for the tasks started before the files names could not be read.
      *
-     * @param files      {@link List} of files names
-     * @param loadFactor parameter providing a fixed size of the directory with local files
-     * @throws ExecutionException if one of the tasks ended with an exception
+     * @param e       exception thrown by the iterator of files names
+     * @param futures list of {@link Future} of the started tasks
+     * @param <T>     {@link Future#get()} return value
+     * @return {@link ExecutionException} with {@code e} cause and exceptions of the tasks suppressed
      */
-    public void load(final List<String> files, final int loadFactor) throws ExecutionException {
-        final List<Future<Object>> futures = new ArrayList<>();
-        for (final String name : files) {
-            futures.add(executorService.submit(() -> {
-                final int cnt = tempDir.getNameCount();
-                // it's ok if some threads will not get the exact value
-                if (cnt <= loadFactor) {
-                    downloadFile(oldStorageService, tempDir, name);
-                } else {
-                    throw new MigrationException("Temp storage is broken, unable to download file:" + name);
+    private <T> ExecutionException listFailed(final UncheckedIOException e, final List<Future<T>> futures) {
+        final ExecutionException failure = new ExecutionException("Unable to read the files names", e.getCause());
+        try {
+            throwIfPresent(futures);
+        } catch (ExecutionException eTask) {
+            failure.addSuppressed(eTask);
+        }
+        return failure;
+    }
+
+    /**
+     * Step of the migration of a file making its requests with the given {@link RetryPolicy}.
+     */
+    @FunctionalInterface
+    private interface Step {
+        void run(RetryPolicy retryPolicy) throws Exception;
+    }
+
+    /**
+     * Migration of one file in steps, every step is submitted to the executor with its {@link TaskPriority}
+     * when the previous one is over. Steps of one file never run at once, so its state needs no locks:
+     * submission to the executor orders them. A failed request is not waited for in the worker,
+     * the step is scheduled again as a {@link TaskPriority#RETRY} task after the delay of the retry policy.
+     * Only the upload from a spool is retried in place, see {@link #spool(RetryPolicy)}.
+     */
+    private final class FileTask {
+        private final String name;
+        private final SpoolManager spoolManager;
+        private final MigrationJournal journal;
+        private final boolean deleteOld;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final TaskEvent event = new TaskEvent();
+        private long bytes = 0;
+        private boolean started = false;
+
+        private FileTask(final String name,
+                         final SpoolManager spoolManager,
+                         final MigrationJournal journal,
+                         final boolean deleteOld) {
+            this.name = name;
+            this.spoolManager = spoolManager;
+            this.journal = journal;
+            this.deleteOld = deleteOld;
+        }
+
+        /**
+         * Puts the first step of the file, waiting while the queue of its class or the backlog is full.
+         * A file uploaded according to the journal is only deleted.
+         *
+         * @return {@link CompletableFuture} completed when the file is migrated
+         */
+        private CompletableFuture<Void> start() {
+            progress.submitted();
+            if (journal.isUploaded(name)) {
+                executor.put(TaskPriority.DELETE, step(this::delete));
+            } else if (transferMode == TransferMode.STREAM) {
+                executor.put(TaskPriority.TRANSFER, step(this::stream));
+            } else {
+                executor.put(TaskPriority.TRANSFER, step(this::spool));
+            }
+            return done;
+        }
+
+        /**
+         * @return task running {@code step} with its own {@link DeferredRetryPolicy}
+         */
+        private Callable<Void> step(final Step step) {
+            return attempt(step, new DeferredRetryPolicy(retryPolicy));
+        }
+
+        /**
+         * @return task running one attempt of {@code step} which schedules the next attempt if the policy
+         * allows it and fails the file otherwise
+         */
+        private Callable<Void> attempt(final Step step, final DeferredRetryPolicy policy) {
+            return () -> {
+                if (!started) {
+                    started = true;
+                    progress.started();
+                    event.begin();
+                }
+                try {
+                    step.run(policy);
+                } catch (RetryDeferredException e) {
+                    try {
+                        executor.schedule(TaskPriority.RETRY, attempt(step, policy), e.getDelay());
+                    } catch (RejectedExecutionException eSchedule) {
+                        fail(e);
+                    }
+                } catch (Throwable e) {
+                    fail(e);
                 }
-                Path filePath = tempDir.resolve(name);
-                uploadFile(newStorageService, new File(filePath.toString()), name);
-                deleteFileIfPossible(filePath);
                 return null;
+            };
+        }
+
+        /**
+         * Streams the file directly between the storages, the file is spooled by a
+         * {@link TaskPriority#RETRY} step if the upload failed.
+         */
+        private void stream(final RetryPolicy policy) throws MigrationException {
+            final FileChecksum checksum = streamFile(oldStorageService, newStorageService, name,
+                    integrityCheck.getAlgorithm(), policy);
+            if (checksum == null) {
+                executor.submit(TaskPriority.RETRY, step(this::spool));
+            } else {
+                uploaded(checksum);
+            }
+        }
+
+        /**
+         * Downloads the file to a spool and uploads it in the same worker. A failed download holds nothing,
+         * so it is scheduled again, but a failed upload is retried in place with the retry policy
+         * of the manager: the spool holds the quota other workers may be waiting for, so a deferred upload
+         * could wait for a free worker forever.
+         */
+        private void spool(final RetryPolicy policy) throws MigrationException, InterruptedException {
+            final FileChecksum checksum;
+            try (Spool spool = downloadFile(oldStorageService, tempDir, name, spoolManager,
+                    integrityCheck.getAlgorithm(), policy)) {
+                journal.record(name, MigrationJournal.State.DOWNLOADED);
+                uploadFile(newStorageService, spool, retryPolicy);
+                checksum = spool.getChecksum();
+            }
+            uploaded(checksum);
+        }
+
+        private void uploaded(final FileChecksum checksum) {
+            bytes = checksum.getLength();
+            progress.transferred(bytes);
+            if (integrityCheck.shouldReadBack()) {
+                executor.submit(TaskPriority.VERIFY, step(policy -> verify(checksum, policy)));
+            } else {
+                journal.record(name, MigrationJournal.State.UPLOADED);
+                deleteOrComplete();
+            }
+        }
+
+        private void verify(final FileChecksum checksum, final RetryPolicy policy) throws MigrationException {
+            verifyFile(newStorageService, name, checksum, policy);
+            journal.record(name, MigrationJournal.State.UPLOADED);
+            deleteOrComplete();
+        }
+
+        private void deleteOrComplete() {
+            if (deleteOld) {
+                executor.submit(TaskPriority.DELETE, step(this::delete));
+            } else {
+                complete();
+            }
+        }
+
+        private void delete(final RetryPolicy policy) throws MigrationException {
+            deleteFile(oldStorageService, name, policy);
+            journal.record(name, MigrationJournal.State.DELETED);
+            complete();
+        }
+
+        private void complete() {
+            progress.completed();
+            event.commit(name, bytes, transferMode.name(), false);
+            done.complete(null);
+        }
+
+        private void fail(final Throwable e) {
+            progress.failed();
+            event.commit(name, bytes, transferMode.name(), true);
+            done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Starts a non-blocking transfer of one file through the temporary directory. The reservation
+     * made for the unknown file length is adjusted as soon as the file is downloaded.
+     *
+     * @param name        file name
+     * @param reservation {@link SpoolManager.Reservation} for the downloaded file
+     * @param journal     {@link MigrationJournal} recording the downloaded file
+     * @return {@link CompletableFuture} of the file length completed when the file is uploaded
+     */
+    private CompletableFuture<Long> transferAsync(final String name,
+                                                  final SpoolManager.Reservation reservation,
+                                                  final MigrationJournal journal) {
+        return AsyncMigrationUtils.downloadFile(asyncOldStorageService, tempDir, name, retryPolicy)
+                .thenCompose(file -> {
+                    final long length;
+                    try {
+                        length = Files.size(file);
+                        reservation.adjust(length);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                    journal.record(name, MigrationJournal.State.DOWNLOADED);
+                    return AsyncMigrationUtils.uploadFile(asyncNewStorageService, name, file, retryPolicy)
+                            .thenApply(result -> {
+                                progress.transferred(length);
+                                return length;
+                            });
+                });
+    }
+
+    /**
+     * Starts transfers from the calling thread while there are free in-flight permits and spool quota,
+     * then waits for all of them.
+     *
+     * @param files        {@link Iterator} of files names
+     * @param spoolManager {@link SpoolManager} limiting the size of the directory with local files
+     * @param journal      {@link MigrationJournal} of the migration
+     * @param deleteOld    whether to delete every file from the old storage after its upload
+     * @throws ExecutionException if one of the transfers ended with an exception, the files names could not be
+     *                            read or the thread was interrupted
+     */
+    private void loadAsync(final Iterator<String> files,
+                           final SpoolManager spoolManager,
+                           final MigrationJournal journal,
+                           final boolean deleteOld) throws ExecutionException {
+        final List<Future<Long>> futures = new ArrayList<>();
+        while (true) {
+            final String name;
+            try {
+                if (!files.hasNext()) {
+                    break;
+                }
+                name = files.next();
+            } catch (UncheckedIOException e) {
+                throw listFailed(e, futures);
+            }
+            final boolean uploaded = journal.isUploaded(name);
+            if (uploaded && !deleteOld) {
+                continue;
+            }
+            progress.submitted();
+            final SpoolManager.Reservation reservation;
+            try {
+                inFlight.acquire();
+                try {
+                    reservation = uploaded ? null : spoolManager.reserve(-1);
+                } catch (InterruptedException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ExecutionException("Migration was interrupted", e);
+            }
+            progress.started();
+            final TaskEvent event = new TaskEvent();
+            event.begin();
+            CompletableFuture<Long> future = CompletableFuture.completedFuture(0L);
+            if (!uploaded) {
+                future = transferAsync(name, reservation, journal).whenComplete((length, e) -> {
+                    deleteFileIfPossible(tempDir.resolve(name));
+                    reservation.close();
+                }).thenApply(length -> {
+                    journal.record(name, MigrationJournal.State.UPLOADED);
+                    return length;
+                });
+            }
+            if (deleteOld) {
+                future = future.thenCompose(length -> AsyncMigrationUtils
+                        .deleteFile(asyncOldStorageService, name, retryPolicy)
+                        .thenApply(result -> {
+                            journal.record(name, MigrationJournal.State.DELETED);
+                            return length;
+                        }));
+            }
+            futures.add(future.whenComplete((length, e) -> {
+                if (e == null) {
+                    progress.completed();
+                } else {
+                    progress.failed();
+                }
+                event.commit(name, e == null ? length : 0, transferMode.name(), e != null);
+                inFlight.release();
             }));
         }
         throwIfPresent(futures);
     }
 
+    /**
+     * Transfers every file not uploaded according to {@code journal} and deletes it from the old storage
+     * if {@code deleteOld} is set.
+     *
+     * @param files        {@link Iterator} of files names, files are transferred as they are taken
+     * @param spoolManager {@link SpoolManager} limiting the size of the directory with local files
+     * @param journal      {@link MigrationJournal} of the migration
+     * @param deleteOld    whether to delete every file from the old storage after its upload
+     * @throws ExecutionException if one of the tasks ended with an exception or the files names could not be read
+     */
+    private void load(final Iterator<String> files,
+                      final SpoolManager spoolManager,
+                      final MigrationJournal journal,
+                      final boolean deleteOld) throws ExecutionException {
+        if (transferMode == TransferMode.ASYNC) {
+            loadAsync(files, spoolManager, journal, deleteOld);
+            return;
+        }
+        final List<Future<Void>> futures = new ArrayList<>();
+        try {
+            while (files.hasNext()) {
+                final String name = files.next();
+                if (!deleteOld && journal.isUploaded(name)) {
+                    continue;
+                }
+                futures.add(new FileTask(name, spoolManager, journal, deleteOld).start());
+            }
+        } catch (UncheckedIOException e) {
+            throw listFailed(e, futures);
+        }
+        throwIfPresent(futures);
+    }
+
+    /**
+     * Performs parallel migration. In {@link TransferMode#STREAM} mode a file is
+     * spooled to the temporary directory only if its direct upload failed.
+     * Spooled files are kept in memory or within the quota of {@code spoolManager}, tasks wait
+     * for it instead of failing when it is exhausted.
+     *
+     * @param files        {@link Iterator} of files names, files are transferred as they are taken
+     * @param spoolManager {@link SpoolManager} limiting the size of the directory with local files
+     * @throws ExecutionException if one of the tasks ended with an exception or the files names could not be read
+     */
+    public void load(final Iterator<String> files, final SpoolManager spoolManager) throws ExecutionException {
+        load(files, spoolManager, MigrationJournal.NONE, false);
+    }
+
+    /**
+     * Performs parallel migration of the {@code files}.
+     *
+     * @param files        {@link List} of files names
+     * @param spoolManager {@link SpoolManager} limiting the size of the directory with local files
+     * @throws ExecutionException if one of the tasks ended with an exception
+     * @see #load(Iterator, SpoolManager)
+     */
+    public void load(final List<String> files, final SpoolManager spoolManager) throws ExecutionException {
+        load(files.iterator(), spoolManager);
+    }
+
+    /**
+     * Performs parallel migration and deletes every file from the old storage right after
+     * it was uploaded to the new one. Deletions overlap with transfers of other files, and
+     * an interrupted migration leaves only in-flight files in both storages.
+     *
+     * @param files        {@link Iterator} of files names, files are transferred as they are taken
+     * @param spoolManager {@link SpoolManager} limiting the size of the directory with local files
+     * @param journal      {@link MigrationJournal} of the migration
+     * @throws ExecutionException if one of the tasks ended with an exception or the files names could not be read
+     * @see #load(Iterator, SpoolManager)
+     */
+    @Override
+    public void migrate(final Iterator<String> files,
+                        final SpoolManager spoolManager,
+                        final MigrationJournal journal) throws ExecutionException {
+        load(files, spoolManager, journal, true);
+    }
+
+    /**
+     * Performs parallel migration spooling at most {@code loadFactor} files at once.
+     *
+     * @param files      {@link List} of files names
+     * @param loadFactor maximum number of files in the directory with local files
+     * @throws ExecutionException if one of the tasks ended with an exception
+     * @see #load(List, SpoolManager)
+     */
+    public void load(final List<String> files, final int loadFactor) throws ExecutionException {
+        load(files, new SpoolManager(loadFactor, Long.MAX_VALUE));
+    }
+
     /**
      * Delete all files from storage using {@code service}.
      *
@@ -108,20 +648,58 @@ public class ParallelMigrationManager implements AutoCloseable {
      * @throws ExecutionException if one of the tasks ended with an exception
      */
     public void delete(final AbstractStorageService service, final List<String> files) throws ExecutionException {
-        final List<Future<Object>> futures = new ArrayList<>();
+        final List<Future<Void>> futures = new ArrayList<>();
         for (final String name : files) {
-            futures.add(executorService.submit(() -> {
-                deleteFile(service, name);
-                return null;
-            }));
+            final CompletableFuture<Void> done = new CompletableFuture<>();
+            executor.put(TaskPriority.DELETE, delete(service, name, new DeferredRetryPolicy(retryPolicy), done));
+            futures.add(done);
         }
         throwIfPresent(futures);
     }
 
+    /**
+     * @return task making one attempt to delete the file, the next attempt is scheduled as
+     * a {@link TaskPriority#RETRY} task if the policy allows it
+     */
+    private Callable<Void> delete(final AbstractStorageService service,
+                                  final String name,
+                                  final DeferredRetryPolicy policy,
+                                  final CompletableFuture<Void> done) {
+        return () -> {
+            try {
+                deleteFile(service, name, policy);
+                done.complete(null);
+            } catch (RetryDeferredException e) {
+                try {
+                    executor.schedule(TaskPriority.RETRY, delete(service, name, policy, done), e.getDelay());
+                } catch (RejectedExecutionException eSchedule) {
+                    done.completeExceptionally(e);
+                }
+            } catch (Throwable e) {
+                done.completeExceptionally(e);
+            }
+            return null;
+        };
+    }
+
+    /**
+     * @return statistics of the {@link TaskPriority} classes of the blocking migration,
+     * empty in {@link TransferMode#ASYNC} mode
+     */
+    @Override
+    public List<StageStats> getStats() {
+        return transferMode == TransferMode.ASYNC ? List.of() : executor.getStats();
+    }
+
+    @Override
+    public MigrationProgress getProgress() {
+        return progress;
+    }
+
     @Override
     public void close() {
-        if (!executorService.isShutdown()) {
-            executorService.shutdown();
+        if (!executor.isShutdown()) {
+            executor.close();
         }
     }
 }
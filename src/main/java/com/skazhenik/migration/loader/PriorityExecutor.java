@@ -0,0 +1,320 @@
+package com.skazhenik.migration.loader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs tasks of several {@link TaskPriority} classes with at most the given number of them executing at once.
+ * Every class has its own queue, and a free worker takes the task of the class which has used the least
+ * worker time divided by its weight (weighted fair queuing by the actual running time of the tasks).
+ * A class whose queue was empty starts from the current virtual time, so it can not save up its share.
+ * Equal claims are resolved in favour of the higher priority.
+ * <p>
+ * Tasks are dispatched to a fixed pool of platform threads or to virtual threads, depending on the
+ * {@link ExecutionMode}. Producers {@link #put(TaskPriority, Callable)} tasks waiting while the queue
+ * of the class is full or the backlog of all classes reaches its capacity, tasks submit their follow-ups
+ * with {@link #submit(TaskPriority, Callable)}, which never waits, so the workers can not block each other,
+ * while the follow-ups piling up hold back new work. Retries are {@link #schedule(TaskPriority, Callable, long)
+ * scheduled} after their delay instead of sleeping in a worker.
+ */
+public class PriorityExecutor implements Executor, AutoCloseable {
+    private final ExecutorService executorService;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final int backlogCapacity;
+    private final Map<TaskPriority, TaskQueue> queues = new EnumMap<>(TaskPriority.class);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final long startNanos = System.nanoTime();
+    private int running = 0;
+    private int delayed = 0;
+    private long virtualTime = 0;
+    private boolean shutdown = false;
+
+    /**
+     * Waiting tasks and consumed worker time of one class, guarded by the lock of the executor.
+     */
+    private static final class TaskQueue {
+        private final TaskPriority priority;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private long pass = 0;
+        private long busyNanos = 0;
+        private long processed = 0;
+        private int running = 0;
+
+        private TaskQueue(final TaskPriority priority) {
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Creates an executor of the given mode.
+     *
+     * @param mode          {@link ExecutionMode} of the executor
+     * @param concurrency   maximum number of simultaneously executing tasks
+     * @param queueCapacity   number of waiting tasks of one class after which
+     *                        {@link #put(TaskPriority, Callable)} waits
+     * @param backlogCapacity number of waiting and scheduled tasks of all classes after which
+     *                        {@link #put(TaskPriority, Callable)} waits
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public PriorityExecutor(final ExecutionMode mode,
+                            final int concurrency,
+                            final int queueCapacity,
+                            final int backlogCapacity) {
+        this.executorService = mode == ExecutionMode.VIRTUAL
+                ? VirtualThreads.newExecutor() : Executors.newFixedThreadPool(concurrency);
+        this.concurrency = concurrency;
+        this.queueCapacity = queueCapacity;
+        this.backlogCapacity = backlogCapacity;
+        for (final TaskPriority priority : TaskPriority.values()) {
+            queues.put(priority, new TaskQueue(priority));
+        }
+    }
+
+    /**
+     * Creates an executor whose backlog of all classes is twice the capacity of one queue, so the follow-ups
+     * can take as many places as the tasks put by the producers.
+     *
+     * @param mode          {@link ExecutionMode} of the executor
+     * @param concurrency   maximum number of simultaneously executing tasks
+     * @param queueCapacity number of waiting tasks of one class after which {@link #put(TaskPriority, Callable)}
+     *                      waits
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public PriorityExecutor(final ExecutionMode mode, final int concurrency, final int queueCapacity) {
+        this(mode, concurrency, queueCapacity, 2 * queueCapacity);
+    }
+
+    /**
+     * Creates an executor which lets {@code concurrency} tasks of a class wait in its queue.
+     *
+     * @param mode        {@link ExecutionMode} of the executor
+     * @param concurrency maximum number of simultaneously executing tasks
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    public PriorityExecutor(final ExecutionMode mode, final int concurrency) {
+        this(mode, concurrency, concurrency);
+    }
+
+    /**
+     * Submits {@code task} for execution, waiting while the queue of its class or the backlog is full.
+     *
+     * @param priority {@link TaskPriority} of the task
+     * @param task     task to execute
+     * @param <T>      task result type
+     * @return {@link Future} of the task
+     * @throws RejectedExecutionException if the executor was shut down
+     */
+    public <T> Future<T> put(final TaskPriority priority, final Callable<T> task) {
+        return enqueue(priority, task, true);
+    }
+
+    /**
+     * Submits {@code task} for execution without waiting, even if the queue of its class is full.
+     *
+     * @param priority {@link TaskPriority} of the task
+     * @param task     task to execute
+     * @param <T>      task result type
+     * @return {@link Future} of the task
+     * @throws RejectedExecutionException if the executor was shut down
+     */
+    public <T> Future<T> submit(final TaskPriority priority, final Callable<T> task) {
+        return enqueue(priority, task, false);
+    }
+
+    /**
+     * Submits {@code task} for execution after {@code delay} without waiting. Until then the task is counted
+     * in the backlog, and it is run even if the executor is shut down in the meantime.
+     *
+     * @param priority {@link TaskPriority} of the task
+     * @param task     task to execute
+     * @param delay    delay in milliseconds
+     * @throws RejectedExecutionException if the executor was shut down
+     */
+    public void schedule(final TaskPriority priority, final Callable<?> task, final long delay) {
+        final FutureTask<?> future = new FutureTask<>(task);
+        final TaskQueue queue = queues.get(priority);
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor was shut down");
+            }
+            delayed++;
+        } finally {
+            lock.unlock();
+        }
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            lock.lock();
+            try {
+                delayed--;
+                add(queue, future);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Executes {@code command} as a {@link TaskPriority#TRANSFER} task without waiting.
+     *
+     * @param command task to execute
+     */
+    @Override
+    public void execute(final Runnable command) {
+        submit(TaskPriority.TRANSFER, () -> {
+            command.run();
+            return null;
+        });
+    }
+
+    private <T> Future<T> enqueue(final TaskPriority priority, final Callable<T> task, final boolean wait) {
+        final FutureTask<T> future = new FutureTask<>(task);
+        final TaskQueue queue = queues.get(priority);
+        lock.lock();
+        try {
+            while (wait && !shutdown && (queue.tasks.size() >= queueCapacity || getBacklog() >= backlogCapacity)) {
+                notFull.awaitUninterruptibly();
+            }
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor was shut down");
+            }
+            add(queue, future);
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    /**
+     * Adds {@code task} to its queue and starts waiting tasks, must be called with the lock held.
+     */
+    private void add(final TaskQueue queue, final Runnable task) {
+        if (queue.tasks.isEmpty() && queue.running == 0) {
+            queue.pass = Math.max(queue.pass, virtualTime);
+        }
+        queue.tasks.add(task);
+        dispatch();
+    }
+
+    /**
+     * @return number of waiting and scheduled tasks of all classes, must be called with the lock held
+     */
+    private int getBacklog() {
+        int backlog = delayed;
+        for (final TaskQueue queue : queues.values()) {
+            backlog += queue.tasks.size();
+        }
+        return backlog;
+    }
+
+    /**
+     * Starts waiting tasks while there are free workers, must be called with the lock held.
+     */
+    private void dispatch() {
+        while (running < concurrency) {
+            TaskQueue next = null;
+            for (final TaskQueue queue : queues.values()) {
+                if (!queue.tasks.isEmpty() && (next == null || queue.pass < next.pass)) {
+                    next = queue;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            final TaskQueue queue = next;
+            final Runnable task = queue.tasks.poll();
+            notFull.signalAll();
+            virtualTime = queue.pass;
+            running++;
+            queue.running++;
+            executorService.execute(() -> run(queue, task));
+        }
+    }
+
+    private void run(final TaskQueue queue, final Runnable task) {
+        final long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            lock.lock();
+            try {
+                running--;
+                queue.running--;
+                queue.busyNanos += elapsed;
+                queue.processed++;
+                queue.pass += elapsed / queue.priority.getWeight();
+                dispatch();
+                if (shutdown && running == 0 && delayed == 0) {
+                    executorService.shutdown();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return statistics of every {@link TaskPriority} class, the utilisation is the share
+     * of the time of all workers the class has used
+     */
+    public List<StageStats> getStats() {
+        final long elapsed = Math.max(1, System.nanoTime() - startNanos);
+        final List<StageStats> stats = new ArrayList<>();
+        lock.lock();
+        try {
+            for (final TaskQueue queue : queues.values()) {
+                stats.add(new StageStats(queue.priority.name().toLowerCase(), queue.running, queue.tasks.size(),
+                        queueCapacity, queue.processed,
+                        Math.min(1.0, queue.busyNanos / ((double) elapsed * concurrency))));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if the executor was shut down
+     */
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting tasks, already submitted and scheduled tasks are completed.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notFull.signalAll();
+            if (running == 0 && delayed == 0) {
+                executorService.shutdown();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.skazhenik.migration.loader;
+
+import org.json.JSONObject;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints the {@link MigrationProgress} periodically as a console line, a JSON line or both. The throughput
+ * is smoothed exponentially over about {@link #SMOOTHING_MILLIS}, so a few slow or fast intervals
+ * do not throw the estimated time of arrival around. The estimate is the longer of the ones based on the files
+ * and on the bytes: longest files first transfer most of the bytes early, after that per-file overhead dominates.
+ */
+public class ProgressReporter implements AutoCloseable {
+    public static final long DEFAULT_INTERVAL_MILLIS = 10_000;
+    public static final long SMOOTHING_MILLIS = 60_000;
+
+    private final MigrationProgress progress;
+    private final PrintStream console;
+    private final PrintStream json;
+    private final ScheduledExecutorService reporter;
+    // state of the previous report, only the reporting thread uses it
+    private long previousNanos = System.nanoTime();
+    private long previousFiles = 0;
+    private long previousBytes = 0;
+    private double filesPerSecond = -1;
+    private double bytesPerSecond = -1;
+
+    /**
+     * Starts reporting.
+     *
+     * @param progress       {@link MigrationProgress} to report
+     * @param intervalMillis time between the reports
+     * @param console        {@link PrintStream} of the console lines, may be {@code null}
+     * @param json           {@link PrintStream} of the JSON lines, may be {@code null}
+     */
+    public ProgressReporter(final MigrationProgress progress,
+                            final long intervalMillis,
+                            final PrintStream console,
+                            final PrintStream json) {
+        this.progress = progress;
+        this.console = console;
+        this.json = json;
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "progress-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts reporting console lines to {@link System#out} every {@link #DEFAULT_INTERVAL_MILLIS}.
+     *
+     * @param progress {@link MigrationProgress} to report
+     */
+    public ProgressReporter(final MigrationProgress progress) {
+        this(progress, DEFAULT_INTERVAL_MILLIS, System.out, null);
+    }
+
+    /**
+     * @return smoothed rate, the latest one if there is no previous
+     */
+    private static double smooth(final double previous, final double latest, final double weight) {
+        return previous < 0 ? latest : previous + weight * (latest - previous);
+    }
+
+    /**
+     * @return estimated time till the end of the migration in milliseconds or negative number if it is unknown
+     */
+    private long estimateMillis() {
+        long estimate = -1;
+        if (progress.getExpectedFiles() >= 0 && filesPerSecond > 0) {
+            estimate = (long) (progress.getRemaining() / filesPerSecond * 1000);
+        }
+        final long expectedBytes = progress.getExpectedBytes();
+        if (expectedBytes > 0 && bytesPerSecond > 0) {
+            final long remaining = Math.max(0, expectedBytes - progress.getBytes());
+            estimate = Math.max(estimate, (long) (remaining / bytesPerSecond * 1000));
+        }
+        return estimate;
+    }
+
+    private static String formatMillis(final long millis) {
+        if (millis < 0) {
+            return "?";
+        }
+        final long seconds = millis / 1000;
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    private void report() {
+        final long now = System.nanoTime();
+        final double seconds = Math.max(1, now - previousNanos) / 1e9;
+        final long files = progress.getCompleted() + progress.getFailed();
+        final long bytes = progress.getBytes();
+        final double weight = 1 - Math.exp(-seconds * 1000 / SMOOTHING_MILLIS);
+        filesPerSecond = smooth(filesPerSecond, (files - previousFiles) / seconds, weight);
+        bytesPerSecond = smooth(bytesPerSecond, (bytes - previousBytes) / seconds, weight);
+        previousNanos = now;
+        previousFiles = files;
+        previousBytes = bytes;
+        final long eta = estimateMillis();
+        if (console != null) {
+            console.println(String.format("%s rate=%.1ffiles/s %.2fMB/s eta=%s",
+                    progress, filesPerSecond, bytesPerSecond / 1e6, formatMillis(eta)));
+        }
+        if (json != null) {
+            json.println(new JSONObject()
+                    .put("timestamp", System.currentTimeMillis())
+                    .put("elapsedMillis", progress.getElapsedMillis())
+                    .put("completed", progress.getCompleted())
+                    .put("failed", progress.getFailed())
+                    .put("inFlight", progress.getInFlight())
+                    .put("queued", progress.getQueued())
+                    .put("remaining", progress.getRemaining())
+                    .put("expectedFiles", progress.getExpectedFiles())
+                    .put("bytes", bytes)
+                    .put("expectedBytes", progress.getExpectedBytes())
+                    .put("filesPerSecond", filesPerSecond)
+                    .put("bytesPerSecond", bytesPerSecond)
+                    .put("etaMillis", eta));
+        }
+    }
+
+    /**
+     * Stops reporting without a final report.
+     */
+    @Override
+    public void close() {
+        reporter.shutdownNow();
+    }
+}
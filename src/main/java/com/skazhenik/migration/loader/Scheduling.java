@@ -0,0 +1,86 @@
+package com.skazhenik.migration.loader;
+
+/**
+ * Order in which the files are handed to a {@link MigrationManager}. Workers take the files in this order,
+ * so a huge file taken last keeps one worker busy long after the others are idle.
+ *
+ * @see MigrationScheduler
+ */
+public enum Scheduling {
+    /**
+     * Files are transferred in the order of the listing, their lengths are not needed.
+     */
+    LISTING {
+        @Override
+        int[] order(final long[] lengths) {
+            final int[] order = new int[lengths.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            return order;
+        }
+    },
+    /**
+     * The longest files are transferred first, so the last files to finish are the shortest ones.
+     */
+    LONGEST_FIRST {
+        @Override
+        int[] order(final long[] lengths) {
+            return sortDescending(lengths);
+        }
+    },
+    /**
+     * The longest and the shortest of the remaining files are transferred by turns. A long transfer is limited
+     * by the bandwidth and a short one by the latency of requests, so mixing them keeps both in use,
+     * while the longest files still start early.
+     */
+    INTERLEAVED {
+        @Override
+        int[] order(final long[] lengths) {
+            final int[] sorted = sortDescending(lengths);
+            final int[] order = new int[sorted.length];
+            int longest = 0;
+            int shortest = sorted.length - 1;
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i % 2 == 0 ? sorted[longest++] : sorted[shortest--];
+            }
+            return order;
+        }
+    };
+
+    /**
+     * @param lengths lengths of the files in the order of the listing
+     * @return indexes of the files in the order of the transfer
+     */
+    abstract int[] order(long[] lengths);
+
+    /**
+     * Stable bottom-up merge sort of the indexes, files of the same length keep the order of the listing.
+     *
+     * @param lengths lengths of the files
+     * @return indexes of the files from the longest to the shortest
+     */
+    private static int[] sortDescending(final long[] lengths) {
+        int[] order = LISTING.order(lengths);
+        int[] buffer = new int[order.length];
+        for (int width = 1; width < order.length; width *= 2) {
+            for (int from = 0; from < order.length; from += 2 * width) {
+                final int middle = Math.min(from + width, order.length);
+                final int to = Math.min(from + 2 * width, order.length);
+                int left = from;
+                int right = middle;
+                for (int i = from; i < to; i++) {
+                    if (right == to || left < middle && lengths[order[left]] >= lengths[order[right]]) {
+                        buffer[i] = order[left++];
+                    } else {
+                        buffer[i] = order[right++];
+                    }
+                }
+            }
+            final int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+        return order;
+    }
+}
@@ -0,0 +1,175 @@
+package com.skazhenik.migration.loader;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Files ordered by {@link MigrationScheduler} with the predicted makespan of the migration. A file takes
+ * a fixed overhead plus its length divided by the bandwidth of one transfer, and the workers take the files
+ * in order as soon as they are free. The same model is applied to the order of the listing for comparison.
+ * The actual makespan is measured from the first taken file till {@link #complete()}.
+ */
+public class SizeSchedule implements Iterable<String> {
+    private final List<String> files;
+    private final int[] order;
+    private final Scheduling scheduling;
+    private final int workers;
+    private final long bytes;
+    private final int unknown;
+    private final long predictedMillis;
+    private final long listingMillis;
+    private volatile long startNanos = 0;
+    private volatile long actualMillis = -1;
+
+    /**
+     * @param files          names of the files in the order of the listing
+     * @param lengths        lengths of the files, negative if unknown
+     * @param scheduling     {@link Scheduling} of the files
+     * @param workers        number of files transferred at once
+     * @param overheadMillis time of transferring an empty file
+     * @param bytesPerMilli  bandwidth of one transfer
+     */
+    SizeSchedule(final List<String> files,
+                 final long[] lengths,
+                 final Scheduling scheduling,
+                 final int workers,
+                 final long overheadMillis,
+                 final double bytesPerMilli) {
+        long known = 0;
+        int unknown = 0;
+        for (final long length : lengths) {
+            if (length < 0) {
+                unknown++;
+            } else {
+                known += length;
+            }
+        }
+        // a file of unknown length is expected to be of the average length
+        final long average = lengths.length > unknown ? known / (lengths.length - unknown) : 0;
+        final long[] estimates = new long[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            estimates[i] = lengths[i] < 0 ? average : lengths[i];
+        }
+        this.files = files;
+        this.order = scheduling.order(estimates);
+        this.scheduling = scheduling;
+        this.workers = workers;
+        this.bytes = known;
+        this.unknown = unknown;
+        this.predictedMillis = simulate(order, estimates, workers, overheadMillis, bytesPerMilli);
+        this.listingMillis = scheduling == Scheduling.LISTING ? predictedMillis
+                : simulate(Scheduling.LISTING.order(estimates), estimates, workers, overheadMillis, bytesPerMilli);
+    }
+
+    /**
+     * Simulates list scheduling: every file goes to the worker which is free first.
+     *
+     * @return time when the last worker is free
+     */
+    private static long simulate(final int[] order,
+                                 final long[] lengths,
+                                 final int workers,
+                                 final long overheadMillis,
+                                 final double bytesPerMilli) {
+        final PriorityQueue<Double> free = new PriorityQueue<>();
+        for (int i = 0; i < workers; i++) {
+            free.add(0.0);
+        }
+        double makespan = 0;
+        for (final int index : order) {
+            final double finish = free.poll() + overheadMillis + lengths[index] / bytesPerMilli;
+            makespan = Math.max(makespan, finish);
+            free.add(finish);
+        }
+        return Math.round(makespan);
+    }
+
+    /**
+     * Starts measuring the actual makespan.
+     *
+     * @return {@link Iterator} of the files names in the scheduled order
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<>() {
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < order.length;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (position == 0) {
+                    startNanos = System.nanoTime();
+                }
+                return files.get(order[position++]);
+            }
+        };
+    }
+
+    /**
+     * Stops measuring the actual makespan, must be called when the migration of the files is over.
+     */
+    public void complete() {
+        if (startNanos != 0) {
+            actualMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * @return number of scheduled files
+     */
+    public int getFileCount() {
+        return order.length;
+    }
+
+    /**
+     * @return total length of the files of known length
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return {@link Scheduling} of the files
+     */
+    public Scheduling getScheduling() {
+        return scheduling;
+    }
+
+    /**
+     * @return predicted makespan of the scheduled order in milliseconds
+     */
+    public long getPredictedMillis() {
+        return predictedMillis;
+    }
+
+    /**
+     * @return predicted makespan of the order of the listing in milliseconds
+     */
+    public long getListingMillis() {
+        return listingMillis;
+    }
+
+    /**
+     * @return actual makespan in milliseconds, negative until {@link #complete()}
+     */
+    public long getActualMillis() {
+        return actualMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("schedule: scheduling=%s files=%d bytes=%d unknown=%d workers=%d "
+                        + "predicted=%dms listing=%dms actual=%dms",
+                scheduling, order.length, bytes, unknown, workers, predictedMillis, listingMillis, actualMillis);
+    }
+}
@@ -0,0 +1,179 @@
+package com.skazhenik.migration.loader;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * One stage of {@link StagedMigrationManager}: a fixed number of threads processing items
+ * from a bounded queue. Submitting to a full queue blocks, which propagates backpressure
+ * to the previous stage. Items still waiting when the stage is shut down are passed to its discard handler,
+ * so resources they hold are released.
+ *
+ * @param <T> type of processed items
+ */
+class Stage<T> {
+    /**
+     * Processing of one item by the stage.
+     *
+     * @param <T> type of processed items
+     */
+    @FunctionalInterface
+    interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    /**
+     * Reaction on a failed processing of one item.
+     *
+     * @param <T> type of processed items
+     */
+    @FunctionalInterface
+    interface FailureHandler<T> {
+        void onFailure(T item, Exception e);
+    }
+
+    // a handler interrupted in a blocking request ends at the latest when the request times out
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 60_000;
+
+    private final String name;
+    private final int threads;
+    private final int queueCapacity;
+    private final Handler<T> handler;
+    private final FailureHandler<T> failureHandler;
+    private final Consumer<T> discardHandler;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Creates a stage and starts its threads.
+     *
+     * @param name           stage name used in statistics
+     * @param threads        number of threads
+     * @param queueCapacity  maximum number of waiting items
+     * @param handler        {@link Handler} processing items
+     * @param failureHandler {@link FailureHandler} called if {@code handler} threw an exception
+     * @param discardHandler called with every item left unprocessed when the stage is shut down
+     */
+    Stage(final String name,
+          final int threads,
+          final int queueCapacity,
+          final Handler<T> handler,
+          final FailureHandler<T> failureHandler,
+          final Consumer<T> discardHandler) {
+        this.name = name;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.handler = handler;
+        this.failureHandler = failureHandler;
+        this.discardHandler = discardHandler;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), (task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Stage " + name + " is shut down");
+            }
+            try {
+                pool.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for the " + name + " queue", e);
+            }
+            // the stage may have been shut down while waiting, then nobody takes the item from the queue
+            if (pool.isShutdown() && pool.remove(task)) {
+                throw new RejectedExecutionException("Stage " + name + " is shut down");
+            }
+        });
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Creates a stage whose items hold no resources.
+     *
+     * @param name           stage name used in statistics
+     * @param threads        number of threads
+     * @param queueCapacity  maximum number of waiting items
+     * @param handler        {@link Handler} processing items
+     * @param failureHandler {@link FailureHandler} called if {@code handler} threw an exception
+     */
+    Stage(final String name,
+          final int threads,
+          final int queueCapacity,
+          final Handler<T> handler,
+          final FailureHandler<T> failureHandler) {
+        this(name, threads, queueCapacity, handler, failureHandler, item -> {
+        });
+    }
+
+    /**
+     * Task processing one item, the item of a task left in the queue is recovered on shutdown.
+     */
+    private final class Task implements Runnable {
+        private final T item;
+
+        private Task(final T item) {
+            this.item = item;
+        }
+
+        @Override
+        public void run() {
+            final long start = System.nanoTime();
+            try {
+                handler.handle(item);
+            } catch (Exception e) {
+                failureHandler.onFailure(item, e);
+            } finally {
+                busyNanos.add(System.nanoTime() - start);
+                processed.increment();
+            }
+        }
+    }
+
+    /**
+     * Adds {@code item} to the stage queue, waiting while the queue is full.
+     *
+     * @param item item to process
+     * @throws RejectedExecutionException if the thread was interrupted while waiting or the stage is shut down
+     */
+    void submit(final T item) {
+        executor.execute(new Task(item));
+    }
+
+    StageStats getStats() {
+        final long elapsed = Math.max(1, System.nanoTime() - startNanos);
+        return new StageStats(name, threads, executor.getQueue().size(), queueCapacity,
+                processed.sum(), Math.min(1.0, busyNanos.sum() / ((double) elapsed * threads)));
+    }
+
+    /**
+     * Stops the stage: waiting items are passed to the discard handler and the threads are interrupted.
+     * Waits for the running handlers, so their items are either finished, failed or handed to the next stage
+     * before it is shut down in turn. The wait is not cut short by an interrupt of the calling thread,
+     * which is usually the reason of the shutdown.
+     */
+    void shutdown() {
+        for (final Runnable task : executor.shutdownNow()) {
+            discardHandler.accept(((Task) task).item);
+        }
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MILLIS);
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                executor.awaitTermination(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
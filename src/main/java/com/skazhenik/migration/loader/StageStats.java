@@ -0,0 +1,66 @@
+package com.skazhenik.migration.loader;
+
+/**
+ * Snapshot of the state of one {@link StagedMigrationManager} stage.
+ */
+public class StageStats {
+    private final String name;
+    private final int threads;
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long processed;
+    private final double utilisation;
+
+    StageStats(final String name,
+               final int threads,
+               final int queueDepth,
+               final int queueCapacity,
+               final long processed,
+               final double utilisation) {
+        this.name = name;
+        this.threads = threads;
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.processed = processed;
+        this.utilisation = utilisation;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return number of items waiting in the stage queue
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return number of items the stage has finished, successfully or not
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return share of time the stage threads were busy since the stage was created, from 0 to 1
+     */
+    public double getUtilisation() {
+        return utilisation;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: threads=%d queue=%d/%d processed=%d utilisation=%.0f%%",
+                name, threads, queueDepth, queueCapacity, processed, utilisation * 100);
+    }
+}
@@ -0,0 +1,236 @@
+package com.skazhenik.migration.loader;
+
+import com.skazhenik.migration.checksum.IntegrityCheck;
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.retry.BackoffRetryPolicy;
+import com.skazhenik.migration.retry.RetryPolicy;
+import com.skazhenik.migration.service.NewStorageService;
+import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.spool.Spool;
+import com.skazhenik.migration.spool.SpoolManager;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static com.skazhenik.migration.util.MigrationUtils.*;
+
+/**
+ * Provides concurrent file migration as a pipeline of download, upload and delete stages.
+ * Every stage has its own threads and a bounded queue, so a slow or hanging storage occupies
+ * only the threads of its own stage, while the other storage keeps working until the queue
+ * in between is full. Every file is spooled, because streaming would tie both storages together.
+ * When the migration is interrupted, the stages are shut down in pipeline order and the spools
+ * left in the upload queue are closed.
+ *
+ * @see Stage
+ */
+public class StagedMigrationManager implements MigrationManager {
+    private final Path tempDir;
+    private final OldStorageService oldStorageService;
+    private final NewStorageService newStorageService;
+    private final int downloadThreads;
+    private final int uploadThreads;
+    private final int deleteThreads;
+    private final int queueCapacity;
+    private final IntegrityCheck integrityCheck;
+    private final RetryPolicy retryPolicy;
+    private volatile List<Stage<?>> stages = List.of();
+
+    /**
+     * Creates a new instance of the class for staged migration.
+     *
+     * @param downloadThreads   number of threads downloading from the old storage
+     * @param uploadThreads     number of threads uploading to the new storage
+     * @param deleteThreads     number of threads deleting from the old storage
+     * @param queueCapacity     maximum number of files waiting for each stage
+     * @param tempDir           directory for storing temporary data
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @param integrityCheck    {@link IntegrityCheck} of every uploaded file, done by the upload stage
+     * @param retryPolicy       {@link RetryPolicy} deciding whether and when a failed request is repeated
+     */
+    public StagedMigrationManager(final int downloadThreads,
+                                  final int uploadThreads,
+                                  final int deleteThreads,
+                                  final int queueCapacity,
+                                  final Path tempDir,
+                                  final OldStorageService oldStorageService,
+                                  final NewStorageService newStorageService,
+                                  final IntegrityCheck integrityCheck,
+                                  final RetryPolicy retryPolicy) {
+        this.downloadThreads = downloadThreads;
+        this.uploadThreads = uploadThreads;
+        this.deleteThreads = deleteThreads;
+        this.queueCapacity = queueCapacity;
+        this.tempDir = tempDir;
+        this.oldStorageService = oldStorageService;
+        this.newStorageService = newStorageService;
+        this.integrityCheck = integrityCheck;
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Creates a new instance of the class for staged migration retrying with the default {@link BackoffRetryPolicy}.
+     *
+     * @param downloadThreads   number of threads downloading from the old storage
+     * @param uploadThreads     number of threads uploading to the new storage
+     * @param deleteThreads     number of threads deleting from the old storage
+     * @param queueCapacity     maximum number of files waiting for each stage
+     * @param tempDir           directory for storing temporary data
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @param integrityCheck    {@link IntegrityCheck} of every uploaded file, done by the upload stage
+     */
+    public StagedMigrationManager(final int downloadThreads,
+                                  final int uploadThreads,
+                                  final int deleteThreads,
+                                  final int queueCapacity,
+                                  final Path tempDir,
+                                  final OldStorageService oldStorageService,
+                                  final NewStorageService newStorageService,
+                                  final IntegrityCheck integrityCheck) {
+        this(downloadThreads, uploadThreads, deleteThreads, queueCapacity, tempDir, oldStorageService,
+                newStorageService, integrityCheck, new BackoffRetryPolicy());
+    }
+
+    /**
+     * Creates a new instance of the class for staged migration without reading the files back.
+     *
+     * @param downloadThreads   number of threads downloading from the old storage
+     * @param uploadThreads     number of threads uploading to the new storage
+     * @param deleteThreads     number of threads deleting from the old storage
+     * @param queueCapacity     maximum number of files waiting for each stage
+     * @param tempDir           directory for storing temporary data
+     * @param oldStorageService service for old storage
+     * @param newStorageService service for new storage
+     * @see IntegrityCheck#NONE
+     */
+    public StagedMigrationManager(final int downloadThreads,
+                                  final int uploadThreads,
+                                  final int deleteThreads,
+                                  final int queueCapacity,
+                                  final Path tempDir,
+                                  final OldStorageService oldStorageService,
+                                  final NewStorageService newStorageService) {
+        this(downloadThreads, uploadThreads, deleteThreads, queueCapacity, tempDir, oldStorageService,
+                newStorageService, IntegrityCheck.NONE);
+    }
+
+    /**
+     * Migrates all {@code files}. A file uploaded according to {@code journal} goes straight to the delete stage.
+     *
+     * @param files        {@link Iterator} of files names
+     * @param spoolManager {@link SpoolManager} limiting the size of the directory with local files
+     * @param journal      {@link MigrationJournal} of the migration
+     * @throws ExecutionException if migration of one of the files ended with an exception
+     *                            or the files names could not be read
+     */
+    @Override
+    public void migrate(final Iterator<String> files,
+                        final SpoolManager spoolManager,
+                        final MigrationJournal journal) throws ExecutionException {
+        // a permit for every finished file, the number of files is known only when the iterator is over
+        final Semaphore finished = new Semaphore(0);
+        final Queue<MigrationException> exceptions = new ConcurrentLinkedQueue<>();
+        final Stage<String> delete = new Stage<>("delete", deleteThreads, queueCapacity,
+                name -> {
+                    deleteFile(oldStorageService, name, retryPolicy);
+                    journal.record(name, MigrationJournal.State.DELETED);
+                    finished.release();
+                },
+                (name, e) -> {
+                    exceptions.add(new MigrationException("Unable to delete file: " + name, e));
+                    finished.release();
+                });
+        final Stage<Spool> upload = new Stage<>("upload", uploadThreads, queueCapacity,
+                spool -> {
+                    try (spool) {
+                        uploadFile(newStorageService, spool, retryPolicy);
+                    }
+                    if (integrityCheck.shouldReadBack()) {
+                        verifyFile(newStorageService, spool.getFileName(), spool.getChecksum(), retryPolicy);
+                    }
+                    journal.record(spool.getFileName(), MigrationJournal.State.UPLOADED);
+                    delete.submit(spool.getFileName());
+                },
+                (spool, e) -> {
+                    exceptions.add(new MigrationException("Unable to upload file: " + spool.getFileName(), e));
+                    finished.release();
+                },
+                Spool::close);
+        final Stage<String> download = new Stage<>("download", downloadThreads, queueCapacity,
+                name -> {
+                    final Spool spool = downloadFile(oldStorageService, tempDir, name, spoolManager,
+                            integrityCheck.getAlgorithm(), retryPolicy);
+                    try {
+                        upload.submit(spool);
+                    } catch (RejectedExecutionException e) {
+                        spool.close();
+                        throw e;
+                    }
+                    journal.record(name, MigrationJournal.State.DOWNLOADED);
+                },
+                (name, e) -> {
+                    exceptions.add(new MigrationException("Unable to download file: " + name, e));
+                    finished.release();
+                });
+        stages = List.of(download, upload, delete);
+        try {
+            int submitted = 0;
+            try {
+                while (files.hasNext()) {
+                    final String name = files.next();
+                    if (journal.isUploaded(name)) {
+                        delete.submit(name);
+                    } else {
+                        download.submit(name);
+                    }
+                    submitted++;
+                }
+            } catch (UncheckedIOException e) {
+                exceptions.add(new MigrationException("Unable to read the files names", e.getCause()));
+            }
+            finished.acquire(submitted);
+        } catch (InterruptedException | RejectedExecutionException e) {
+            exceptions.add(new MigrationException("Migration was interrupted", e));
+        } finally {
+            download.shutdown();
+            upload.shutdown();
+            delete.shutdown();
+        }
+        if (!exceptions.isEmpty()) {
+            final List<MigrationException> causes = new ArrayList<>(exceptions);
+            final ExecutionException e = new ExecutionException(causes.get(0));
+            causes.subList(1, causes.size()).forEach(e::addSuppressed);
+            throw e;
+        }
+    }
+
+    /**
+     * @return statistics of the download, upload and delete stages of the current or the last migration
+     */
+    @Override
+    public List<StageStats> getStats() {
+        final List<StageStats> stats = new ArrayList<>();
+        for (final Stage<?> stage : stages) {
+            stats.add(stage.getStats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() {
+        for (final Stage<?> stage : stages) {
+            stage.shutdown();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.skazhenik.migration.loader;
+
+/**
+ * Classes of the tasks of {@link ParallelMigrationManager} sharing the workers of {@link PriorityExecutor}.
+ * While several classes have tasks waiting, each class gets a share of the worker time proportional
+ * to its weight, and a class without waiting tasks leaves its share to the others.
+ */
+public enum TaskPriority {
+    /**
+     * First attempt to transfer a file, the expensive path which bounds the duration of the migration.
+     */
+    TRANSFER(8),
+    /**
+     * Transfer of a file whose first attempt failed, e.g. spooled after a failed direct upload.
+     */
+    RETRY(4),
+    /**
+     * Reading a file back from the new storage. Verification goes before deletion, because after a restart
+     * a verified file is only deleted, while an unverified one is transferred again.
+     */
+    VERIFY(2),
+    /**
+     * Deletion of a file from the old storage, cheap and deferrable.
+     */
+    DELETE(1);
+
+    private final int weight;
+
+    TaskPriority(final int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return share of the worker time of the class relative to the other classes
+     */
+    public int getWeight() {
+        return weight;
+    }
+}
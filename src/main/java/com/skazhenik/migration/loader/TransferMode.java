@@ -0,0 +1,23 @@
+package com.skazhenik.migration.loader;
+
+/**
+ * Defines how {@link ParallelMigrationManager} moves file content between storages.
+ */
+public enum TransferMode {
+    /**
+     * Every file is downloaded to the temporary directory and then uploaded from it.
+     */
+    SPOOL,
+    /**
+     * The content of the downloaded file is streamed directly into the upload request.
+     * The file is spooled to the temporary directory only if the upload has to be repeated.
+     */
+    STREAM,
+    /**
+     * Every file is downloaded to the temporary directory and uploaded from it by non-blocking requests,
+     * so a few threads keep many transfers in flight.
+     *
+     * @see com.skazhenik.migration.service.AsyncStorageService
+     */
+    ASYNC
+}
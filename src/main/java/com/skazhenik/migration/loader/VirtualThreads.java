@@ -0,0 +1,27 @@
+package com.skazhenik.migration.loader;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to virtual threads from code compiled for Java 11.
+ * The factory class exists only in the {@code java21} build profile.
+ */
+final class VirtualThreads {
+    private static final String FACTORY_CLASS = "com.skazhenik.migration.loader.VirtualThreadExecutorFactory";
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return {@link ExecutorService} starting a new virtual thread for each task
+     * @throws UnsupportedOperationException if the application was built without the {@code java21} profile
+     */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Class.forName(FACTORY_CLASS).getMethod("newExecutor").invoke(null);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads require the application built with the java21 profile and Java 21 runtime", e);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.skazhenik.migration.metrics;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prints {@link StorageMetrics} of the storages periodically: the counters with the transfer rates
+ * over the last interval and the latency percentiles of every operation and response code so far.
+ */
+public class MetricsReporter implements AutoCloseable {
+    public static final long DEFAULT_INTERVAL_MILLIS = 10_000;
+
+    private final Map<String, StorageMetrics> metrics;
+    private final PrintStream out;
+    private final ScheduledExecutorService reporter;
+    // counters of the previous report, only the reporting thread uses them
+    private final Map<String, long[]> previous = new HashMap<>();
+    private long previousNanos = System.nanoTime();
+
+    /**
+     * Starts reporting.
+     *
+     * @param metrics        {@link StorageMetrics} by names of the storages
+     * @param out            {@link PrintStream} of the reports
+     * @param intervalMillis time between the reports
+     */
+    public MetricsReporter(final Map<String, StorageMetrics> metrics,
+                           final PrintStream out,
+                           final long intervalMillis) {
+        this.metrics = new LinkedHashMap<>(metrics);
+        this.out = out;
+        metrics.forEach((name, storage) -> previous.put(name, new long[]{0, 0}));
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            final Thread thread = new Thread(task, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts reporting to {@link System#out} every {@link #DEFAULT_INTERVAL_MILLIS}.
+     *
+     * @param metrics {@link StorageMetrics} by names of the storages
+     */
+    public MetricsReporter(final Map<String, StorageMetrics> metrics) {
+        this(metrics, System.out, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    private void report() {
+        final long now = System.nanoTime();
+        final double seconds = Math.max(1, now - previousNanos) / 1e9;
+        previousNanos = now;
+        final StringBuilder report = new StringBuilder();
+        metrics.forEach((name, storage) -> {
+            final long[] last = previous.get(name);
+            final long received = storage.getBytesReceived();
+            final long sent = storage.getBytesSent();
+            report.append(String.format("%s metrics: %s receive=%.1fMB/s send=%.1fMB/s%n", name, storage,
+                    (received - last[0]) / seconds / 1e6, (sent - last[1]) / seconds / 1e6));
+            last[0] = received;
+            last[1] = sent;
+            storage.getLatencies().forEach((key, latency) ->
+                    report.append(String.format("  %s %s%n", key, latency)));
+        });
+        out.print(report);
+    }
+
+    /**
+     * Stops reporting without a final report.
+     */
+    @Override
+    public void close() {
+        reporter.shutdownNow();
+    }
+}
@@ -0,0 +1,237 @@
+package com.skazhenik.migration.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Metrics of the requests to one storage endpoint: a {@link LatencyHistogram} per operation and response code,
+ * retries per operation and transferred bytes. Everything is recorded with atomic operations without locks,
+ * so the metrics are always on. They can be read over JMX after {@link #register(String)}.
+ */
+public class StorageMetrics implements StorageMetricsMXBean {
+    /**
+     * Domain of the JMX names of the metrics.
+     */
+    public static final String DOMAIN = "com.skazhenik.migration";
+    // response codes are three-digit numbers, 0 stands for a request failed without a response
+    private static final int CODES = 600;
+
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final long start = System.nanoTime();
+
+    /**
+     * Requests of one operation.
+     */
+    private static final class OperationMetrics {
+        private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(CODES);
+        private final AtomicLong retries = new AtomicLong();
+
+        private LatencyHistogram getLatency(final int responseCode) {
+            final int code = responseCode > 0 && responseCode < CODES ? responseCode : 0;
+            final LatencyHistogram latency = latencies.get(code);
+            if (latency != null) {
+                return latency;
+            }
+            latencies.compareAndSet(code, null, new LatencyHistogram());
+            return latencies.get(code);
+        }
+    }
+
+    private OperationMetrics getOperation(final String operation) {
+        final OperationMetrics metrics = operations.get(operation);
+        return metrics != null ? metrics : operations.computeIfAbsent(operation, name -> new OperationMetrics());
+    }
+
+    /**
+     * @param operation    name of the operation
+     * @param responseCode response code, 0 if the request failed without a response
+     * @param nanos        time from sending the request to receiving the response or the failure
+     */
+    public void record(final String operation, final int responseCode, final long nanos) {
+        getOperation(operation).getLatency(responseCode).record(nanos);
+    }
+
+    /**
+     * @param operation name of the operation attempted again
+     */
+    public void retried(final String operation) {
+        getOperation(operation).retries.incrementAndGet();
+    }
+
+    /**
+     * @param bytes number of bytes of response bodies
+     */
+    public void received(final long bytes) {
+        bytesReceived.addAndGet(bytes);
+    }
+
+    /**
+     * @param bytes number of bytes of request bodies
+     */
+    public void sent(final long bytes) {
+        bytesSent.addAndGet(bytes);
+    }
+
+    /**
+     * @param operation    name of the operation
+     * @param responseCode response code, 0 for requests failed without a response
+     * @return {@link LatencyHistogram} of the requests or {@code null} if there were none
+     */
+    public LatencyHistogram getLatency(final String operation, final int responseCode) {
+        final OperationMetrics metrics = operations.get(operation);
+        return metrics == null || responseCode < 0 || responseCode >= CODES
+                ? null : metrics.latencies.get(responseCode);
+    }
+
+    /**
+     * @param operation    name of the operation
+     * @param responseCode response code, 0 for requests failed without a response
+     * @return number of requests of the operation which ended with the response code
+     */
+    public long getResponseCount(final String operation, final int responseCode) {
+        final LatencyHistogram latency = getLatency(operation, responseCode);
+        return latency == null ? 0 : latency.getCount();
+    }
+
+    /**
+     * @param operation name of the operation
+     * @return number of times the operation was attempted again
+     */
+    public long getRetryCount(final String operation) {
+        final OperationMetrics metrics = operations.get(operation);
+        return metrics == null ? 0 : metrics.retries.get();
+    }
+
+    /**
+     * @return histograms of all operations and response codes seen so far ordered by the keys
+     * @see StorageMetricsMXBean
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        final Map<String, LatencyHistogram> latencies = new TreeMap<>();
+        operations.forEach((operation, metrics) -> {
+            for (int code = 0; code < CODES; code++) {
+                final LatencyHistogram latency = metrics.latencies.get(code);
+                if (latency != null) {
+                    latencies.put(operation + " " + code, latency);
+                }
+            }
+        });
+        return latencies;
+    }
+
+    @Override
+    public long getRequestCount() {
+        long requests = 0;
+        for (final LatencyHistogram latency : getLatencies().values()) {
+            requests += latency.getCount();
+        }
+        return requests;
+    }
+
+    @Override
+    public long getErrorCount() {
+        long errors = 0;
+        for (final OperationMetrics metrics : operations.values()) {
+            for (int code = 0; code < CODES; code = code == 0 ? 500 : code + 1) {
+                final LatencyHistogram latency = metrics.latencies.get(code);
+                if (latency != null) {
+                    errors += latency.getCount();
+                }
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public long getRetryCount() {
+        long retries = 0;
+        for (final OperationMetrics metrics : operations.values()) {
+            retries += metrics.retries.get();
+        }
+        return retries;
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public double getReceiveRate() {
+        return bytesReceived.get() * 1e9 / Math.max(1, System.nanoTime() - start);
+    }
+
+    @Override
+    public double getSendRate() {
+        return bytesSent.get() * 1e9 / Math.max(1, System.nanoTime() - start);
+    }
+
+    @Override
+    public Map<String, Long> getResponseCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        getLatencies().forEach((key, latency) -> counts.put(key, latency.getCount()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getRetryCounts() {
+        final Map<String, Long> counts = new TreeMap<>();
+        operations.forEach((operation, metrics) -> counts.put(operation, metrics.retries.get()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP50Millis() {
+        return getLatencyMillis(latency -> latency.getPercentile(0.5));
+    }
+
+    @Override
+    public Map<String, Double> getLatencyP99Millis() {
+        return getLatencyMillis(latency -> latency.getPercentile(0.99));
+    }
+
+    @Override
+    public Map<String, Double> getLatencyMaxMillis() {
+        return getLatencyMillis(LatencyHistogram::getMaxNanos);
+    }
+
+    private Map<String, Double> getLatencyMillis(final ToDoubleFunction<LatencyHistogram> nanos) {
+        final Map<String, Double> millis = new TreeMap<>();
+        getLatencies().forEach((key, latency) -> millis.put(key, nanos.applyAsDouble(latency) / 1e6));
+        return millis;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server.
+     *
+     * @param name name of the storage
+     * @return {@link ObjectName} of the registered metrics
+     * @throws JMException if the metrics can not be registered, e.g. the name is taken
+     */
+    public ObjectName register(final String name) throws JMException {
+        final ObjectName objectName = new ObjectName(DOMAIN + ":type=StorageMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("requests=%d errors=%d retries=%d received=%d sent=%d",
+                getRequestCount(), getErrorCount(), getRetryCount(), getBytesReceived(), getBytesSent());
+    }
+}
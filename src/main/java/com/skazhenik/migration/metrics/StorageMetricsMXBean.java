@@ -0,0 +1,51 @@
+package com.skazhenik.migration.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link StorageMetrics}. Maps are keyed by the operation and the response code,
+ * e.g. {@code "UPLOAD 409"}, where code 0 means the request failed without a response.
+ */
+public interface StorageMetricsMXBean {
+    long getRequestCount();
+
+    /**
+     * @return number of requests failed without a response or with a server error
+     */
+    long getErrorCount();
+
+    long getRetryCount();
+
+    long getBytesReceived();
+
+    long getBytesSent();
+
+    /**
+     * @return received bytes per second since the metrics were created
+     */
+    double getReceiveRate();
+
+    /**
+     * @return sent bytes per second since the metrics were created
+     */
+    double getSendRate();
+
+    Map<String, Long> getResponseCounts();
+
+    Map<String, Long> getRetryCounts();
+
+    /**
+     * @return median latency in milliseconds
+     */
+    Map<String, Double> getLatencyP50Millis();
+
+    /**
+     * @return 99th percentile of the latency in milliseconds
+     */
+    Map<String, Double> getLatencyP99Millis();
+
+    /**
+     * @return maximum latency in milliseconds
+     */
+    Map<String, Double> getLatencyMaxMillis();
+}
@@ -0,0 +1,71 @@
+package com.skazhenik.migration.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries transient errors with exponential backoff and full jitter: the delay before attempt {@code n + 1}
+ * is random from zero to {@code min(maxDelay, baseDelay * 2^(n - 1))}, so clients failed at the same moment
+ * do not come back at the same moment. Permanent errors are not retried.
+ * <p>
+ * Every retry is withdrawn from the shared {@link RetryBudget}. When the budget is exhausted, the operation
+ * is still retried, but after the maximum delay, so while the storage keeps failing the workers slow down
+ * instead of flooding the recovering storage with retries, and a burst of errors does not fail the files.
+ */
+public class BackoffRetryPolicy implements RetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 100;
+    public static final long DEFAULT_BASE_DELAY = 10;
+    public static final long DEFAULT_MAX_DELAY = 2_000;
+    public static final double DEFAULT_BUDGET_RATIO = 0.2;
+    public static final double DEFAULT_BUDGET_BALANCE = 100;
+
+    private final int maxAttempts;
+    private final long baseDelay;
+    private final long maxDelay;
+    private final ErrorClassifier classifier;
+    private final RetryBudget budget;
+
+    /**
+     * @param maxAttempts maximum number of attempts of one operation
+     * @param baseDelay   upper bound of the delay after the first attempt in milliseconds
+     * @param maxDelay    upper bound of any delay in milliseconds
+     * @param classifier  {@link ErrorClassifier} of failed attempts
+     * @param budget      {@link RetryBudget} shared by all operations
+     */
+    public BackoffRetryPolicy(final int maxAttempts,
+                              final long baseDelay,
+                              final long maxDelay,
+                              final ErrorClassifier classifier,
+                              final RetryBudget budget) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.classifier = classifier;
+        this.budget = budget;
+    }
+
+    /**
+     * Creates a policy with default limits, which allows retrying at most {@link #DEFAULT_BUDGET_RATIO}
+     * of requests.
+     */
+    public BackoffRetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY, new ErrorClassifier(),
+                new RetryBudget(DEFAULT_BUDGET_RATIO, DEFAULT_BUDGET_BALANCE));
+    }
+
+    @Override
+    public void onRequest() {
+        budget.onRequest();
+    }
+
+    @Override
+    public long getDelay(final int attempt, final Exception e) {
+        if (attempt >= maxAttempts || !classifier.isRetryable(e)) {
+            return -1;
+        }
+        if (!budget.tryRetry()) {
+            return maxDelay;
+        }
+        final long bound = Math.min(maxDelay, baseDelay << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+}
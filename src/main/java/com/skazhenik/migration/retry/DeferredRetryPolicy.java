@@ -0,0 +1,40 @@
+package com.skazhenik.migration.retry;
+
+/**
+ * Policy of one operation whose retries are not waited for by the calling thread: a failed attempt which
+ * the shared {@link RetryPolicy} allows to repeat ends with {@link RetryDeferredException}, and the caller
+ * submits the operation again with the same instance after the delay. The instance counts the attempts
+ * across the submissions, so the delays grow and the limits of the shared policy hold as if the operation
+ * was retried in place.
+ */
+public class DeferredRetryPolicy implements RetryPolicy {
+    private final RetryPolicy policy;
+    private int attempts = 0;
+
+    /**
+     * @param policy shared {@link RetryPolicy} deciding whether and when the operation is repeated
+     */
+    public DeferredRetryPolicy(final RetryPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Counts the operation in the shared policy once, not on every submission.
+     */
+    @Override
+    public void onRequest() {
+        if (attempts == 0) {
+            policy.onRequest();
+        }
+    }
+
+    @Override
+    public long getDelay(final int attempt, final Exception e) {
+        return policy.getDelay(++attempts, e);
+    }
+
+    @Override
+    public boolean isDeferred() {
+        return true;
+    }
+}
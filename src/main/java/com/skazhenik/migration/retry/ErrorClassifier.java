@@ -0,0 +1,60 @@
+package com.skazhenik.migration.retry;
+
+import com.skazhenik.migration.exception.ServiceException;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ClientProtocolException;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+/**
+ * Separates transient errors, which may disappear on the next attempt, from permanent ones.
+ * A {@link ServiceException} with a response code is classified by the code, otherwise by its cause.
+ */
+public class ErrorClassifier {
+    /**
+     * @param e exception of a failed attempt
+     * @return {@link Boolean#TRUE} if the operation may succeed when attempted again
+     */
+    public boolean isRetryable(final Exception e) {
+        if (e instanceof ServiceException && ((ServiceException) e).getResponseCode() != 0) {
+            return isRetryable(((ServiceException) e).getResponseCode());
+        }
+        final Throwable cause = e instanceof IOException ? e : e.getCause();
+        if (cause instanceof IOException) {
+            return isRetryable((IOException) cause);
+        }
+        return !(cause instanceof InterruptedException);
+    }
+
+    /**
+     * Server errors, timeouts and throttling are transient, other client errors are permanent.
+     *
+     * @param responseCode response code of the failed request
+     * @return {@link Boolean#TRUE} if the request may succeed when sent again
+     */
+    protected boolean isRetryable(final int responseCode) {
+        if (responseCode == HttpStatus.SC_REQUEST_TIMEOUT || responseCode == 429) {
+            return true;
+        }
+        return responseCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR && responseCode != HttpStatus.SC_NOT_IMPLEMENTED;
+    }
+
+    /**
+     * Broken and timed out connections are transient, unknown hosts, TLS and protocol errors are permanent.
+     *
+     * @param e exception of the failed request
+     * @return {@link Boolean#TRUE} if the request may succeed when sent again
+     */
+    protected boolean isRetryable(final IOException e) {
+        if (e instanceof InterruptedIOException) {
+            return e instanceof SocketTimeoutException || !Thread.currentThread().isInterrupted();
+        }
+        return !(e instanceof UnknownHostException
+                || e instanceof SSLException
+                || e instanceof ClientProtocolException);
+    }
+}
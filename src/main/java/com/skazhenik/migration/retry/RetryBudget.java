@@ -0,0 +1,41 @@
+package com.skazhenik.migration.retry;
+
+/**
+ * Limits fast retries to a share of requests. Every request deposits {@code ratio} of a retry
+ * and every retry withdraws a whole one, so when the storage fails persistently the retries
+ * stop at about {@code ratio} of the traffic instead of multiplying it.
+ * The balance is capped, so a long healthy period does not allow a burst of retries.
+ */
+public class RetryBudget {
+    private final double ratio;
+    private final double maxBalance;
+    private double balance;
+
+    /**
+     * @param ratio      share of requests which may be retried
+     * @param maxBalance maximum number of retries saved up, also the initial balance
+     */
+    public RetryBudget(final double ratio, final double maxBalance) {
+        this.ratio = ratio;
+        this.maxBalance = maxBalance;
+        this.balance = maxBalance;
+    }
+
+    /**
+     * Deposits a share of a retry for a new request.
+     */
+    public synchronized void onRequest() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if a retry is allowed and was withdrawn from the budget
+     */
+    public synchronized boolean tryRetry() {
+        if (balance < 1) {
+            return false;
+        }
+        balance--;
+        return true;
+    }
+}
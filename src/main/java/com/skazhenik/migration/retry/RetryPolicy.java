@@ -0,0 +1,30 @@
+package com.skazhenik.migration.retry;
+
+import com.skazhenik.migration.exception.RetryDeferredException;
+
+/**
+ * Decides whether and when a failed storage operation is attempted again.
+ * A single policy is shared by all operations of a migration and passed to everything which calls the storages.
+ */
+public interface RetryPolicy {
+    /**
+     * Called before the first attempt of every operation.
+     */
+    void onRequest();
+
+    /**
+     * @param attempt number of the failed attempt starting from 1
+     * @param e       exception of the failed attempt
+     * @return delay in milliseconds before the next attempt or negative number if the operation must fail
+     */
+    long getDelay(int attempt, Exception e);
+
+    /**
+     * @return {@code true} if the operation is not repeated by the caller waiting for the delay, but ends with
+     * {@link RetryDeferredException} and is submitted again after the delay
+     * @see DeferredRetryPolicy
+     */
+    default boolean isDeferred() {
+        return false;
+    }
+}
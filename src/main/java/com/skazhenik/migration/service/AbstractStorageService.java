@@ -1,40 +1,141 @@
 package com.skazhenik.migration.service;
 
+import com.skazhenik.migration.breaker.CircuitBreaker;
+import com.skazhenik.migration.breaker.CircuitBreakers;
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.event.RequestEvent;
 import com.skazhenik.migration.exception.ServiceException;
-import org.apache.http.HttpEntity;
+import com.skazhenik.migration.limit.ConcurrencyLimiter;
+import com.skazhenik.migration.metrics.StorageMetrics;
+import com.skazhenik.migration.spool.Spool;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import com.skazhenik.migration.transfer.TransferEngine;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.entity.mime.content.FileBody;
+import org.apache.http.entity.mime.content.InputStreamBody;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
-import org.json.JSONArray;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 
 public abstract class AbstractStorageService {
     protected static final String localhost = "http://localhost:8080";
+    private static final ConcurrencyLimiter.Permit NO_LIMIT = new ConcurrencyLimiter.Permit() {
+        @Override
+        public void onSuccess(final long rttNanos) {
+        }
+
+        @Override
+        public void onDropped() {
+        }
 
-    private final int MAX_CONNECTION = 100;
-    private final PoolingHttpClientConnectionManager httpClientConnectionManager;
+        @Override
+        public void onIgnore() {
+        }
+    };
+    // idempotent requests slower than this percentile of the latest ones are hedged
+    private static final double HEDGE_QUANTILE = 0.95;
+
+    private final ConnectionPool connectionPool;
     private final CloseableHttpClient client;
+    private final TransferEngine transferEngine;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final CircuitBreakers circuitBreakers;
+    private final Map<Operation, LatencyTracker> latencies = new EnumMap<>(Operation.class);
+    private final StorageMetrics metrics = new StorageMetrics();
+
+    /**
+     * Creates a service executing requests with connections of {@code connectionPool}, at most as many
+     * at once as {@code concurrencyLimiter} allows and only while the breaker of the operation is not open.
+     *
+     * @param connectionPool     {@link ConnectionPool} shared with other services
+     * @param transferEngine     {@link TransferEngine} used to save downloaded files
+     * @param concurrencyLimiter {@link ConcurrencyLimiter} of the storage endpoint, may be {@code null}
+     * @param circuitBreakers    {@link CircuitBreakers} shared with other services, may be {@code null}
+     */
+    public AbstractStorageService(final ConnectionPool connectionPool,
+                                  final TransferEngine transferEngine,
+                                  final ConcurrencyLimiter concurrencyLimiter,
+                                  final CircuitBreakers circuitBreakers) {
+        this.connectionPool = connectionPool;
+        this.client = connectionPool.getClient();
+        this.transferEngine = transferEngine;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.circuitBreakers = circuitBreakers;
+        for (final Operation operation : Operation.values()) {
+            if (operation.isIdempotent()) {
+                latencies.put(operation, new LatencyTracker(HEDGE_QUANTILE));
+            }
+        }
+    }
 
     /**
-     * Creates {@link org.apache.http.client.HttpClient} with {@link #MAX_CONNECTION} connections.
+     * Creates a service executing requests with connections of {@code connectionPool}
+     * and at most as many at once as {@code concurrencyLimiter} allows.
+     *
+     * @param connectionPool     {@link ConnectionPool} shared with other services
+     * @param transferEngine     {@link TransferEngine} used to save downloaded files
+     * @param concurrencyLimiter {@link ConcurrencyLimiter} of the storage endpoint
+     */
+    public AbstractStorageService(final ConnectionPool connectionPool,
+                                  final TransferEngine transferEngine,
+                                  final ConcurrencyLimiter concurrencyLimiter) {
+        this(connectionPool, transferEngine, concurrencyLimiter, null);
+    }
+
+    /**
+     * Creates a service executing requests with connections of {@code connectionPool}
+     * limited only by the pool.
+     *
+     * @param connectionPool {@link ConnectionPool} shared with other services
+     * @param transferEngine {@link TransferEngine} used to save downloaded files
+     */
+    public AbstractStorageService(final ConnectionPool connectionPool, final TransferEngine transferEngine) {
+        this(connectionPool, transferEngine, null);
+    }
+
+    /**
+     * Creates a service with its own {@link ConnectionPool} of
+     * {@link ConnectionPool#DEFAULT_MAX_CONNECTIONS} connections.
+     *
+     * @param transferEngine {@link TransferEngine} used to save downloaded files
+     */
+    public AbstractStorageService(final TransferEngine transferEngine) {
+        this(new ConnectionPool(), transferEngine);
+    }
+
+    /**
+     * Creates a service with its own {@link ConnectionPool} of {@link ConnectionPool#DEFAULT_MAX_CONNECTIONS}
+     * connections which saves downloaded files with {@link BufferedTransferEngine}.
      */
     public AbstractStorageService() {
-        httpClientConnectionManager = new PoolingHttpClientConnectionManager();
-        httpClientConnectionManager.setMaxTotal(MAX_CONNECTION);
-        client = HttpClients.custom().setConnectionManager(httpClientConnectionManager).build();
+        this(new BufferedTransferEngine());
+    }
+
+    /**
+     * @return {@link StorageMetrics} of the requests executed by the service
+     */
+    public StorageMetrics getMetrics() {
+        return metrics;
     }
 
     /**
@@ -69,64 +170,481 @@ public abstract class AbstractStorageService {
     }
 
     /**
-     * Execute GET HTTP request.
+     * Permits of the circuit breaker and concurrency limiter and connection of the pool taken for one request.
+     * The {@link RequestEvent} of the request is committed when the connection is released.
+     * A request executed outside the pool, e.g. by {@link AsyncStorageService}, holds only the permits.
+     */
+    final class Lease {
+        private final HttpHost host;
+        private final Operation operation;
+        private final String fileName;
+        private final boolean hedge;
+        private final CircuitBreaker.Permit breakerPermit;
+        private final ConcurrencyLimiter.Permit permit;
+        private final RequestEvent event;
+        private final long waitNanos;
+        private final long start = System.nanoTime();
+        private long rttNanos;
+        private long bytes = 0;
+        private int responseCode = 0;
+        private boolean reported = false;
+        private boolean released = false;
+        private volatile boolean expired = false;
+
+        private Lease(final HttpHost host,
+                      final Operation operation,
+                      final String fileName,
+                      final boolean hedge,
+                      final CircuitBreaker.Permit breakerPermit,
+                      final ConcurrencyLimiter.Permit permit,
+                      final RequestEvent event,
+                      final long waitStart) {
+            this.host = host;
+            this.operation = operation;
+            this.fileName = fileName;
+            this.hedge = hedge;
+            this.breakerPermit = breakerPermit;
+            this.permit = permit;
+            this.event = event;
+            this.waitNanos = start - waitStart;
+        }
+
+        /**
+         * @param bytes number of bytes of the request or response body
+         */
+        void transferred(final long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Records the response code and latency of the request.
+         *
+         * @param response received {@link HttpResponse}
+         */
+        void responded(final HttpResponse response) {
+            responded(getResponseCode(response));
+        }
+
+        /**
+         * Records the response code and latency of the request.
+         *
+         * @param responseCode code of the received response
+         */
+        void responded(final int responseCode) {
+            this.responseCode = responseCode;
+            rttNanos = System.nanoTime() - start;
+        }
+
+        /**
+         * Aborts {@code request} because it is past its deadline. Unlike a request aborted because its hedge won,
+         * it counts as a failure.
+         *
+         * @param request executed request
+         */
+        void expire(final HttpRequestBase request) {
+            expired = true;
+            request.abort();
+        }
+
+        /**
+         * Starts the deadline of {@code request} which is about to be executed.
+         *
+         * @param request request to execute
+         * @return {@link ScheduledFuture} to cancel when the response is received
+         * @see RequestTimeouts#getDeadline(Operation)
+         */
+        ScheduledFuture<?> startDeadline(final HttpRequestBase request) {
+            return Hedging.schedule(() -> expire(request), getTimeouts().getDeadline(operation));
+        }
+
+        /**
+         * Releases the connection and reports the outcome of {@code request} unless it was reported before.
+         *
+         * @param request executed request
+         * @see #report(HttpRequestBase)
+         */
+        void release(final HttpRequestBase request) {
+            release(request.isAborted() && !expired);
+        }
+
+        /**
+         * Releases the connection and reports the outcome of the request unless it was reported before.
+         *
+         * @param aborted {@link Boolean#TRUE} if the request was aborted
+         */
+        void release(final boolean aborted) {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (host != null) {
+                connectionPool.release(host);
+            }
+            report(aborted);
+            event.commit(getDefaultURI(), operation.name(), fileName, bytes, responseCode, hedge,
+                    aborted, waitNanos);
+        }
+
+        /**
+         * Reports the outcome of {@code request} to the limiter, the breaker and the metrics, keeping
+         * the connection.
+         *
+         * @param request executed request
+         * @see #report(boolean)
+         */
+        void report(final HttpRequestBase request) {
+            report(request.isAborted() && !expired);
+        }
+
+        /**
+         * Reports the outcome of the request to the limiter, the breaker and the metrics, keeping
+         * the connection. Server errors, throttling and failures without a response mean the endpoint
+         * is overloaded. Other unsuccessful responses and requests aborted because their hedge won do not count.
+         *
+         * @param aborted {@link Boolean#TRUE} if the request was aborted
+         */
+        private void report(final boolean aborted) {
+            if (reported) {
+                return;
+            }
+            reported = true;
+            if (responseCode != 0 || !aborted) {
+                metrics.record(operation.name(), responseCode,
+                        responseCode != 0 ? rttNanos : System.nanoTime() - start);
+            }
+            if (responseCode == HttpStatus.SC_OK) {
+                permit.onSuccess(rttNanos);
+                if (breakerPermit != null) {
+                    breakerPermit.onSuccess();
+                }
+            } else if (responseCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR
+                    || responseCode == HttpStatus.SC_REQUEST_TIMEOUT || responseCode == 429
+                    || responseCode == 0 && !aborted) {
+                permit.onDropped();
+                if (breakerPermit != null) {
+                    breakerPermit.onFailure();
+                }
+            } else {
+                permit.onIgnore();
+                if (breakerPermit != null) {
+                    breakerPermit.onIgnore();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits while the circuit breaker of the {@code operation} is open.
+     *
+     * @param operation {@link Operation} of the request
+     * @param hedge     {@link Boolean#TRUE} if the request duplicates a slow one and must not wait
+     * @return {@link CircuitBreaker.Permit} of the request or {@code null} if there are no breakers
+     * @throws ServiceException if the thread was interrupted while waiting or the breaker does not let a hedge
+     */
+    private CircuitBreaker.Permit acquireBreaker(final Operation operation, final boolean hedge)
+            throws ServiceException {
+        if (circuitBreakers == null) {
+            return null;
+        }
+        final CircuitBreaker breaker = circuitBreakers.get(getDefaultURI(), operation.name());
+        if (hedge) {
+            final CircuitBreaker.Permit permit = breaker.tryAcquire();
+            if (permit == null) {
+                throw new ServiceException("Circuit breaker does not let a hedged request");
+            }
+            return permit;
+        }
+        try {
+            return breaker.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while waiting for the circuit breaker", e);
+        }
+    }
+
+    /**
+     * Waits while the circuit breaker of the {@code operation} is open, then for a permit of the concurrency
+     * limiter and a free connection of the pool to the target host of {@code request}. A hedged request does not
+     * wait and fails if it can not be sent at once, because the endpoint is saturated and a duplicate would
+     * only add load.
+     *
+     * @param request   request to execute
+     * @param operation {@link Operation} of the request
+     * @param fileName  name of the file of the request, {@code null} for the list of files
+     * @param hedge     {@link Boolean#TRUE} if the request duplicates a slow one
+     * @return {@link Lease} which must be released when the request is over
+     * @throws ServiceException if the thread was interrupted while waiting or a hedge can not be sent
+     * @see CircuitBreaker#acquire()
+     * @see ConcurrencyLimiter#acquire()
+     * @see ConnectionPool#acquire(HttpHost)
+     */
+    private Lease acquireConnection(final HttpUriRequest request,
+                                    final Operation operation,
+                                    final String fileName,
+                                    final boolean hedge) throws ServiceException {
+        final RequestEvent event = new RequestEvent();
+        event.begin();
+        final long waitStart = System.nanoTime();
+        final HttpHost host = URIUtils.extractHost(request.getURI());
+        final CircuitBreaker.Permit breakerPermit = acquireBreaker(operation, hedge);
+        try {
+            final ConcurrencyLimiter.Permit permit = acquirePermit(host, hedge);
+            return new Lease(host, operation, fileName, hedge, breakerPermit, permit, event, waitStart);
+        } catch (ServiceException e) {
+            if (breakerPermit != null) {
+                breakerPermit.onIgnore();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a permit of the concurrency limiter and a free connection of the pool to {@code host}.
+     *
+     * @param host  target host of the request
+     * @param hedge {@link Boolean#TRUE} if the request duplicates a slow one and must not wait
+     * @return {@link ConcurrencyLimiter.Permit} of the request, the connection is taken as well
+     * @throws ServiceException if the thread was interrupted while waiting or a hedge can not be sent
+     */
+    private ConcurrencyLimiter.Permit acquirePermit(final HttpHost host, final boolean hedge)
+            throws ServiceException {
+        ConcurrencyLimiter.Permit permit = NO_LIMIT;
+        if (concurrencyLimiter != null) {
+            if (hedge) {
+                permit = concurrencyLimiter.tryAcquire();
+                if (permit == null) {
+                    throw new ServiceException("No free permit for a hedged request");
+                }
+            } else {
+                try {
+                    permit = concurrencyLimiter.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ServiceException("Interrupted while waiting for the concurrency limit", e);
+                }
+            }
+        }
+        if (!hedge) {
+            try {
+                connectionPool.acquire(host);
+            } catch (ServiceException e) {
+                permit.onIgnore();
+                throw e;
+            }
+        } else if (!connectionPool.tryAcquire(host)) {
+            permit.onIgnore();
+            throw new ServiceException("No free connection for a hedged request");
+        }
+        return permit;
+    }
+
+    /**
+     * Takes the permits of the circuit breaker and the concurrency limiter for a request executed outside
+     * the connection pool without waiting for them.
+     *
+     * @param operation {@link Operation} of the request
+     * @param fileName  name of the file of the request, {@code null} for the list of files
+     * @param event     {@link RequestEvent} begun when the request started waiting
+     * @param waitStart {@link System#nanoTime()} when the request started waiting
+     * @return {@link Lease} which must be released when the request is over or {@code null} if the breaker
+     * of the {@code operation} is open or the limit is reached
+     */
+    Lease tryAcquireLease(final Operation operation,
+                          final String fileName,
+                          final RequestEvent event,
+                          final long waitStart) {
+        CircuitBreaker.Permit breakerPermit = null;
+        if (circuitBreakers != null) {
+            breakerPermit = circuitBreakers.get(getDefaultURI(), operation.name()).tryAcquire();
+            if (breakerPermit == null) {
+                return null;
+            }
+        }
+        ConcurrencyLimiter.Permit permit = NO_LIMIT;
+        if (concurrencyLimiter != null) {
+            permit = concurrencyLimiter.tryAcquire();
+            if (permit == null) {
+                if (breakerPermit != null) {
+                    breakerPermit.onIgnore();
+                }
+                return null;
+            }
+        }
+        return new Lease(null, operation, fileName, false, breakerPermit, permit, event, waitStart);
+    }
+
+    /**
+     * @return {@link RequestTimeouts} of the requests of the service
+     */
+    public RequestTimeouts getTimeouts() {
+        return connectionPool.getTimeouts();
+    }
+
+    /**
+     * @param request   new request
+     * @param operation {@link Operation} of the request
+     * @param <T>       request type
+     * @return {@code request} configured with timeouts of the {@code operation}
+     */
+    private <T extends HttpRequestBase> T configure(final T request, final Operation operation) {
+        request.setConfig(connectionPool.getRequestConfig(operation));
+        return request;
+    }
+
+    /**
+     * Execute GET HTTP request, hedging it if it is slower than usual.
      *
-     * @param uri {@link String} representation of URI
-     * @return {@link InputStream} with response content
+     * @param uri       {@link String} representation of URI
+     * @param operation {@link Operation#LIST} or {@link Operation#DOWNLOAD}
+     * @param fileName  name of the requested file, {@code null} for the list of files
+     * @return {@link FileContent} of successful response, closing it releases the connection
      * @throws ServiceException if the request failed
+     * @see Hedging
      */
-    private InputStream executeGetRequest(final String uri) throws ServiceException {
-        HttpGet request = new HttpGet(uri);
+    private FileContent executeGetRequest(final String uri, final Operation operation, final String fileName)
+            throws ServiceException {
+        return Hedging.execute(latencies.get(operation), connectionPool.getHedgeExecutor(),
+                () -> configure(new HttpGet(uri), operation),
+                (request, hedge) -> executeGetRequest(request, operation, fileName, hedge),
+                content -> {
+                    try {
+                        content.close();
+                    } catch (IOException ignored) {
+                    }
+                });
+    }
+
+    /**
+     * Execute GET HTTP request, which is aborted if the response does not arrive before its deadline.
+     *
+     * @param request   {@link HttpRequestBase} to execute
+     * @param operation {@link Operation#LIST} or {@link Operation#DOWNLOAD}
+     * @param fileName  name of the requested file, {@code null} for the list of files
+     * @param hedge     {@link Boolean#TRUE} if the request duplicates a slow one
+     * @return {@link FileContent} of successful response, closing it releases the connection
+     * @throws ServiceException if the request failed
+     */
+    private FileContent executeGetRequest(final HttpRequestBase request,
+                                          final Operation operation,
+                                          final String fileName,
+                                          final boolean hedge) throws ServiceException {
+        final Lease lease = acquireConnection(request, operation, fileName, hedge);
+        CloseableHttpResponse response = null;
         try {
-            CloseableHttpResponse response = client.execute(request);
-            HttpEntity entity = response.getEntity();
+            final ScheduledFuture<?> deadline = lease.startDeadline(request);
+            try {
+                response = client.execute(request);
+            } finally {
+                deadline.cancel(false);
+            }
+            lease.responded(response);
             if (isResponseSuccessful(response)) {
-                return entity.getContent();
+                if (operation == Operation.LIST) {
+                    // the list is read at the pace of the migration, so its permits must not be held that long
+                    lease.report(request);
+                }
+                return new FileContent(response, metrics, bytes -> {
+                    lease.transferred(bytes);
+                    lease.release(request);
+                });
             } else {
                 final int responseCode = getResponseCode(response);
-                entity.getContent().close();
+                response.close();
+                lease.release(request);
                 throw new ServiceException(
                         "Bad response with code: " + responseCode,
                         responseCode
                 );
             }
         } catch (IOException e) {
+            if (response != null) {
+                try {
+                    response.close();
+                } catch (IOException ignored) {
+                }
+            }
+            lease.release(request);
             throw new ServiceException("IOException occurred during the execution of the GET request", e);
         }
     }
 
     /**
-     * Execute (file) POST HTTP request.
+     * Execute (file) POST HTTP request, which is aborted if the response does not arrive before its deadline.
+     * The deadline includes sending the body, so a stalled upload does not hold the connection and the permits
+     * indefinitely. The bytes of the body are counted as they are sent.
      *
      * @param uri  {@link String} representation of URI
-     * @param file file to post
+     * @param body file content to post
      * @throws ServiceException if the request failed
      */
-    private void executePostRequest(final String uri, final File file) throws ServiceException {
-        HttpPost request = new HttpPost(uri);
+    private void executePostRequest(final String uri, final ContentBody body) throws ServiceException {
+        HttpPost request = configure(new HttpPost(uri), Operation.UPLOAD);
         request.setHeader("Accept", "*/*");
-        request.setEntity(MultipartEntityBuilder.create().addPart("file", new FileBody(file)).build());
+        final Lease lease = acquireConnection(request, Operation.UPLOAD, body.getFilename(), false);
+        request.setEntity(new HttpEntityWrapper(MultipartEntityBuilder.create().addPart("file", body).build()) {
+            @Override
+            public void writeTo(final OutputStream outStream) throws IOException {
+                final CountingOutputStream counting = new CountingOutputStream(outStream);
+                try {
+                    super.writeTo(counting);
+                } finally {
+                    metrics.sent(counting.getByteCount());
+                    lease.transferred(counting.getByteCount());
+                }
+            }
+        });
+        final ScheduledFuture<?> deadline = lease.startDeadline(request);
         try (CloseableHttpResponse response = client.execute(request)) {
+            lease.responded(response);
             checkResponse(response);
         } catch (IOException e) {
             throw new ServiceException("IOException occurred during the execution of the POST request", e);
+        } finally {
+            deadline.cancel(false);
+            lease.release(request);
         }
     }
 
     /**
-     * Execute DELETE HTTP request.
+     * Execute DELETE HTTP request, hedging it if it is slower than usual.
      *
-     * @param uri {@link String} representation of URI
+     * @param uri      {@link String} representation of URI
+     * @param fileName name of the file to delete
      * @throws ServiceException if the request failed
+     * @see Hedging
      */
-    private void executeDeleteRequest(final String uri) throws ServiceException {
-        HttpDelete request = new HttpDelete(uri);
-        request.setHeader("Accept", "*/*");
+    private void executeDeleteRequest(final String uri, final String fileName) throws ServiceException {
+        Hedging.execute(latencies.get(Operation.DELETE), connectionPool.getHedgeExecutor(), () -> {
+            final HttpDelete request = configure(new HttpDelete(uri), Operation.DELETE);
+            request.setHeader("Accept", "*/*");
+            return request;
+        }, (request, hedge) -> executeDeleteRequest(request, fileName, hedge), ignored -> {
+        });
+    }
+
+    /**
+     * Execute DELETE HTTP request, which is aborted if the response does not arrive before its deadline.
+     *
+     * @param request  {@link HttpRequestBase} to execute
+     * @param fileName name of the file to delete
+     * @param hedge    {@link Boolean#TRUE} if the request duplicates a slow one
+     * @return nothing
+     * @throws ServiceException if the request failed
+     */
+    private Void executeDeleteRequest(final HttpRequestBase request, final String fileName, final boolean hedge)
+            throws ServiceException {
+        final Lease lease = acquireConnection(request, Operation.DELETE, fileName, hedge);
+        final ScheduledFuture<?> deadline = lease.startDeadline(request);
         try (CloseableHttpResponse response = client.execute(request)) {
+            lease.responded(response);
             checkResponse(response);
         } catch (IOException e) {
             throw new ServiceException("IOException occurred during the execution of the DELETE request", e);
+        } finally {
+            deadline.cancel(false);
+            lease.release(request);
         }
+        return null;
     }
 
     /**
@@ -144,31 +662,31 @@ public abstract class AbstractStorageService {
      */
     abstract String getDefaultURI();
 
+    /**
+     * Requests the list of files without waiting for it to be received.
+     *
+     * @return {@link FileListIterator} reading files names from the response, closing it releases the connection
+     * @throws ServiceException if the request failed
+     * @see #executeGetRequest(String, Operation, String)
+     */
+    public FileListIterator listFiles() throws ServiceException {
+        return new FileListIterator(executeGetRequest(getDefaultURI(), Operation.LIST, null));
+    }
+
     /**
      * Construct a {@link List} from {@link InputStream} received from GET request
      *
-     * @return {@link List} of files names from storage
+     * @return {@link FileNameStore} of files names from storage
      * @throws ServiceException if the request or it's processing failed
-     * @see #executeGetRequest(String)
+     * @see #listFiles()
      */
     public List<String> getFilesList() throws ServiceException {
-        try (BufferedReader bufferedReader =
-                     new BufferedReader(new InputStreamReader(executeGetRequest(getDefaultURI())))) {
-            StringBuilder jsonString = new StringBuilder();
+        try (FileListIterator iterator = listFiles()) {
             try {
-                String line;
-                while ((line = bufferedReader.readLine()) != null) {
-                    jsonString.append(line);
-                }
-            } catch (IOException e) {
-                throw new ServiceException("IOException occurred during parsing request content", e);
-            }
-            JSONArray jsonArray = new JSONArray(jsonString.toString());
-            List<String> files = new ArrayList<>();
-            for (int i = 0; i < jsonArray.length(); i++) {
-                files.add(jsonArray.getString(i));
+                return FileNameStore.of(iterator);
+            } catch (UncheckedIOException e) {
+                throw new ServiceException("IOException occurred during parsing request content", e.getCause());
             }
-            return files;
         } catch (IOException e) {
             throw new ServiceException("IOException occurred during reading request content", e);
         }
@@ -179,10 +697,42 @@ public abstract class AbstractStorageService {
      *
      * @param file file to upload
      * @throws ServiceException if upload failed
-     * @see #executePostRequest(String, File)
+     * @see #executePostRequest(String, ContentBody)
      */
     public void upload(final File file) throws ServiceException {
-        executePostRequest(getDefaultURI(), file);
+        executePostRequest(getDefaultURI(), new FileBody(file));
+    }
+
+    /**
+     * Upload file with {@code fileName} to the storage reading its content from {@code inputStream}.
+     * The stream is consumed only once, so a failed upload can not be repeated with the same stream.
+     *
+     * @param fileName    file's name to upload
+     * @param inputStream {@link InputStream} with file content
+     * @param length      content length in bytes or negative number if it is unknown
+     * @throws ServiceException if upload failed
+     * @see #executePostRequest(String, ContentBody)
+     */
+    public void upload(final String fileName, final InputStream inputStream, final long length)
+            throws ServiceException {
+        executePostRequest(getDefaultURI(), new InputStreamBody(inputStream, ContentType.DEFAULT_BINARY, fileName) {
+            @Override
+            public long getContentLength() {
+                return length;
+            }
+        });
+    }
+
+    /**
+     * Open file with {@code fileName} from storage for reading without saving it locally.
+     *
+     * @param fileName file's name to open
+     * @return {@link FileContent} of the file, must be closed by caller
+     * @throws ServiceException if the request failed
+     * @see #executeGetRequest(String, Operation, String)
+     */
+    public FileContent open(final String fileName) throws ServiceException {
+        return executeGetRequest(getFileURI(fileName), Operation.DOWNLOAD, fileName);
     }
 
     /**
@@ -191,17 +741,29 @@ public abstract class AbstractStorageService {
      * @param tempDir  directory for storing temporary data
      * @param fileName file's name to download
      * @throws ServiceException if download failed
-     * @see #executeGetRequest(String)
+     * @see #open(String)
+     * @see #download(FileContent, Path)
      */
     public void download(final Path tempDir, final String fileName) throws ServiceException {
-        Path file = tempDir.resolve(fileName);
-        try (InputStream inputStream = executeGetRequest(getFileURI(fileName))) {
-            try (OutputStream writer = Files.newOutputStream(file)) {
-                int data;
-                while ((data = inputStream.read()) != -1) {
-                    writer.write(data);
-                }
-            }
+        try (FileContent content = open(fileName)) {
+            download(content, tempDir.resolve(fileName));
+        } catch (IOException e) {
+            throw new ServiceException("IOException occurred during releasing request content", e);
+        }
+    }
+
+    /**
+     * Save already opened file {@code content} to {@code file}. The file is removed if saving failed.
+     *
+     * @param content {@link FileContent} received by {@link #open(String)}
+     * @param file    {@link Path} to the local file
+     * @return number of saved bytes
+     * @throws ServiceException if download failed
+     * @see TransferEngine#transfer(InputStream, Path, long)
+     */
+    public long download(final FileContent content, final Path file) throws ServiceException {
+        try {
+            return transferEngine.transfer(content.getInputStream(), file, content.getLength());
         } catch (IOException e) {
             try {
                 Files.deleteIfExists(file);
@@ -209,7 +771,38 @@ public abstract class AbstractStorageService {
             }
             throw new ServiceException("IOException occurred during processing request content", e);
         }
+    }
+
+    /**
+     * Save already opened file {@code content} to {@code spool}.
+     *
+     * @param content {@link FileContent} received by {@link #open(String)}
+     * @param spool   {@link Spool} for the file content
+     * @return number of saved bytes
+     * @throws ServiceException if download failed
+     * @see Spool#write(InputStream, long, TransferEngine)
+     */
+    public long download(final FileContent content, final Spool spool) throws ServiceException {
+        return download(content, spool, ChecksumAlgorithm.NONE);
+    }
 
+    /**
+     * Save already opened file {@code content} to {@code spool} computing its checksum while it is read.
+     *
+     * @param content   {@link FileContent} received by {@link #open(String)}
+     * @param spool     {@link Spool} for the file content
+     * @param algorithm {@link ChecksumAlgorithm} of the checksum kept by the spool
+     * @return number of saved bytes
+     * @throws ServiceException if download failed
+     * @see Spool#write(InputStream, long, TransferEngine, ChecksumAlgorithm)
+     */
+    public long download(final FileContent content, final Spool spool, final ChecksumAlgorithm algorithm)
+            throws ServiceException {
+        try {
+            return spool.write(content.getInputStream(), content.getLength(), transferEngine, algorithm);
+        } catch (IOException e) {
+            throw new ServiceException("IOException occurred during processing request content", e);
+        }
     }
 
     /**
@@ -217,9 +810,9 @@ public abstract class AbstractStorageService {
      *
      * @param fileName file's name to delete
      * @throws ServiceException if deletion failed
-     * @see #executeDeleteRequest(String)
+     * @see #executeDeleteRequest(String, String)
      */
     public void delete(final String fileName) throws ServiceException {
-        executeDeleteRequest(getFileURI(fileName));
+        executeDeleteRequest(getFileURI(fileName), fileName);
     }
 }
@@ -0,0 +1,344 @@
+package com.skazhenik.migration.service;
+
+import com.skazhenik.migration.event.RequestEvent;
+import com.skazhenik.migration.exception.ServiceException;
+import org.apache.http.HttpStatus;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Provides non-blocking interaction with the storage endpoint of an {@link AbstractStorageService}.
+ * Requests are executed by {@link HttpClient} which streams bodies with its own few threads,
+ * so no thread waits for a transfer. Requests pass the same circuit breakers and concurrency limiter
+ * as the requests of the blocking service, have its timeouts and are recorded in its metrics and
+ * flight recorder events. Failed operations complete exceptionally with
+ * {@link ServiceException} holding the response code if there was a response.
+ */
+public class AsyncStorageService {
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // a request not admitted by the breaker or the limiter tries again after this delay instead of waiting
+    private static final Executor ADMISSION_RETRY = CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS);
+
+    private final AbstractStorageService service;
+    private final String defaultURI;
+    private final HttpClient client;
+    private final RequestTimeouts timeouts;
+
+    /**
+     * Creates a service for the endpoint of {@code service}.
+     *
+     * @param service {@link AbstractStorageService} whose endpoint, breakers, limiter, timeouts
+     *                and metrics are used
+     * @param client  {@link HttpClient} executing requests, may be shared between services
+     */
+    public AsyncStorageService(final AbstractStorageService service, final HttpClient client) {
+        this.service = service;
+        this.defaultURI = service.getDefaultURI();
+        this.client = client;
+        this.timeouts = service.getTimeouts();
+    }
+
+    /**
+     * Construct file's URI from default URI and file's name.
+     *
+     * @param fileName file name
+     * @return {@link URI} of the file
+     */
+    private URI getFileURI(final String fileName) {
+        return URI.create(defaultURI.concat("/").concat(fileName));
+    }
+
+    /**
+     * @param response {@link HttpResponse} response
+     * @param method   request method for the error message
+     * @param <T>      body type
+     * @return body of the response
+     * @throws CompletionException with {@link ServiceException} if response code is not {@link HttpStatus#SC_OK}
+     */
+    private static <T> T checkResponse(final HttpResponse<T> response, final String method) {
+        if (response.statusCode() != HttpStatus.SC_OK) {
+            throw new CompletionException(new ServiceException(
+                    "Bad response to the " + method + " request with code: " + response.statusCode(),
+                    response.statusCode()
+            ));
+        }
+        return response.body();
+    }
+
+    /**
+     * Wraps an exception of {@link HttpClient} into {@link ServiceException}.
+     *
+     * @param e      exception completing the request
+     * @param method request method for the error message
+     * @return {@link CompletionException} with {@link ServiceException} cause
+     */
+    private static CompletionException wrap(final Throwable e, final String method) {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof ServiceException) {
+            return new CompletionException(cause);
+        }
+        return new CompletionException(
+                new ServiceException("Exception occurred during the execution of the " + method + " request", cause));
+    }
+
+    /**
+     * Completes {@code admitted} with a {@link AbstractStorageService.Lease} as soon as the breaker and the limiter
+     * let the request, trying again after a delay without holding a thread.
+     *
+     * @param admitted  future to complete
+     * @param operation {@link Operation} of the request
+     * @param fileName  name of the file of the request, {@code null} for the list of files
+     * @param event     {@link RequestEvent} of the request
+     * @param waitStart {@link System#nanoTime()} when the request started waiting
+     */
+    private void admit(final CompletableFuture<AbstractStorageService.Lease> admitted,
+                       final Operation operation,
+                       final String fileName,
+                       final RequestEvent event,
+                       final long waitStart) {
+        final AbstractStorageService.Lease lease = service.tryAcquireLease(operation, fileName, event, waitStart);
+        if (lease != null) {
+            admitted.complete(lease);
+        } else {
+            ADMISSION_RETRY.execute(() -> admit(admitted, operation, fileName, event, waitStart));
+        }
+    }
+
+    /**
+     * Executes the request once it is admitted and checks its response. The time to the response headers
+     * is limited by the timeout of the {@code operation}.
+     *
+     * @param builder   {@link HttpRequest.Builder} of the request to send
+     * @param operation {@link Operation} of the request
+     * @param fileName  name of the file of the request, {@code null} for the list of files
+     * @param handler   {@link HttpResponse.BodyHandler} for the response body
+     * @param bytes     number of bytes transferred by a successful request with the given body
+     * @param <T>       body type
+     * @return {@link CompletableFuture} of the response body
+     */
+    private <T> CompletableFuture<T> send(final HttpRequest.Builder builder,
+                                          final Operation operation,
+                                          final String fileName,
+                                          final HttpResponse.BodyHandler<T> handler,
+                                          final ToLongFunction<T> bytes) {
+        final HttpRequest request = builder.timeout(Duration.ofMillis(timeouts.getTimeout(operation))).build();
+        final String method = request.method();
+        final RequestEvent event = new RequestEvent();
+        event.begin();
+        final CompletableFuture<AbstractStorageService.Lease> admitted = new CompletableFuture<>();
+        admit(admitted, operation, fileName, event, System.nanoTime());
+        return admitted.thenCompose(lease -> client.sendAsync(request, responseInfo -> {
+            lease.responded(responseInfo.statusCode());
+            return handler.apply(responseInfo);
+        }).handle((response, e) -> {
+            try {
+                if (e != null) {
+                    throw wrap(e, method);
+                }
+                final T body = checkResponse(response, method);
+                final long transferred = bytes.applyAsLong(body);
+                lease.transferred(transferred);
+                if (operation == Operation.UPLOAD) {
+                    service.getMetrics().sent(transferred);
+                } else {
+                    service.getMetrics().received(transferred);
+                }
+                return body;
+            } finally {
+                lease.release(false);
+            }
+        }));
+    }
+
+    /**
+     * Requests the list of files.
+     *
+     * @return {@link CompletableFuture} of the {@link List} of files names from storage
+     */
+    public CompletableFuture<List<String>> getFilesList() {
+        return send(HttpRequest.newBuilder(URI.create(defaultURI)).GET(), Operation.LIST, null,
+                HttpResponse.BodyHandlers.ofString(), String::length).thenApply(body -> {
+            try {
+                final JSONArray jsonArray = new JSONArray(body);
+                final List<String> files = new ArrayList<>(jsonArray.length());
+                for (int i = 0; i < jsonArray.length(); i++) {
+                    files.add(jsonArray.getString(i));
+                }
+                return files;
+            } catch (JSONException e) {
+                throw new CompletionException(new ServiceException("Unable to parse the file list", e));
+            }
+        });
+    }
+
+    /**
+     * Downloads file with {@code fileName} to {@code tempDir}. The body is written to the file as it arrives,
+     * the body of an unsuccessful response is discarded.
+     *
+     * @param tempDir  directory for storing temporary data
+     * @param fileName file's name to download
+     * @return {@link CompletableFuture} of the downloaded file {@link Path}
+     */
+    public CompletableFuture<Path> download(final Path tempDir, final String fileName) {
+        final Path file = tempDir.resolve(fileName);
+        return send(HttpRequest.newBuilder(getFileURI(fileName)).GET(), Operation.DOWNLOAD, fileName,
+                responseInfo -> responseInfo.statusCode() == HttpStatus.SC_OK
+                        ? HttpResponse.BodySubscribers.ofFile(file)
+                        : HttpResponse.BodySubscribers.replacing(file),
+                AsyncStorageService::size);
+    }
+
+    /**
+     * @param file downloaded file
+     * @return length of the file or {@code 0} if it can not be read
+     */
+    private static long size(final Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Uploads {@code file} with {@code fileName} as multipart/form-data. The file is read
+     * in chunks as the request body is sent. Quotes and backslashes of the name are escaped
+     * in the part header, a name with a line break is rejected, because it would end the header.
+     *
+     * @param fileName file's name to upload
+     * @param file     {@link Path} to the local file
+     * @return {@link CompletableFuture} completed when the file is uploaded
+     */
+    public CompletableFuture<Void> upload(final String fileName, final Path file) {
+        if (fileName.indexOf('\r') >= 0 || fileName.indexOf('\n') >= 0) {
+            return CompletableFuture.failedFuture(
+                    new ServiceException("File name contains a line break: " + fileName.strip()));
+        }
+        final String quotedName = fileName.replace("\\", "\\\\").replace("\"", "\\\"");
+        final String boundary = UUID.randomUUID().toString();
+        final byte[] prefix = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + quotedName + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-Transfer-Encoding: binary\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        final byte[] suffix = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        final long fileSize;
+        try {
+            fileSize = Files.size(file);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new ServiceException("Unable to read file to upload", e));
+        }
+        final long contentLength = prefix.length + fileSize + suffix.length;
+        final HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(defaultURI))
+                .header("Accept", "*/*")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofByteArrays(() -> new MultipartIterator(prefix, file, suffix)),
+                        contentLength));
+        return send(request, Operation.UPLOAD, fileName, HttpResponse.BodyHandlers.discarding(),
+                body -> contentLength);
+    }
+
+    /**
+     * Deletes file with {@code fileName}.
+     *
+     * @param fileName file's name to delete
+     * @return {@link CompletableFuture} completed when the file is deleted
+     */
+    public CompletableFuture<Void> delete(final String fileName) {
+        final HttpRequest.Builder request = HttpRequest.newBuilder(getFileURI(fileName))
+                .header("Accept", "*/*")
+                .DELETE();
+        return send(request, Operation.DELETE, fileName, HttpResponse.BodyHandlers.discarding(), body -> 0);
+    }
+
+    /**
+     * Chunks of a multipart body: the part header, the file content read lazily and the closing boundary.
+     */
+    private static class MultipartIterator implements Iterator<byte[]> {
+        private final byte[] prefix;
+        private final Path file;
+        private final byte[] suffix;
+        private FileChannel channel;
+        private int state = 0;
+
+        MultipartIterator(final byte[] prefix, final Path file, final byte[] suffix) {
+            this.prefix = prefix;
+            this.file = file;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return state < 2;
+        }
+
+        @Override
+        public byte[] next() {
+            switch (state) {
+                case 0:
+                    state = 1;
+                    return prefix;
+                case 1:
+                    final byte[] chunk = readChunk();
+                    if (chunk != null) {
+                        return chunk;
+                    }
+                    state = 2;
+                    return suffix;
+                default:
+                    throw new NoSuchElementException();
+            }
+        }
+
+        private byte[] readChunk() {
+            try {
+                if (channel == null) {
+                    channel = FileChannel.open(file, StandardOpenOption.READ);
+                }
+                final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+                while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                    // fill the whole chunk to keep the number of body parts small
+                }
+                if (buffer.position() == 0) {
+                    channel.close();
+                    return null;
+                }
+                final byte[] chunk = new byte[buffer.position()];
+                buffer.flip().get(chunk);
+                return chunk;
+            } catch (IOException e) {
+                try {
+                    if (channel != null) {
+                        channel.close();
+                    }
+                } catch (IOException ignored) {
+                }
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.skazhenik.migration.service;
+
+import com.skazhenik.migration.exception.ServiceException;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP connections shared by storage services. Connections to one host are limited by the per-route
+ * maximum, which should match the number of requests the migration runs at once. Connections are kept
+ * alive between requests, validated after a period of inactivity and evicted in the background when idle.
+ * <p>
+ * Requests wait for a free connection on a per-route semaphore with the same number of permits instead of
+ * inside the pool, because the pool waits inside a monitor, which pins virtual threads to their carriers
+ * and can stall all of them.
+ * <p>
+ * Every request is executed with the {@link RequestTimeouts} of its {@link Operation}. Hedged duplicates
+ * of slow requests run on at most as many threads as there are connections to one host.
+ */
+public class ConnectionPool implements AutoCloseable {
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+    // used when the server does not send the Keep-Alive header
+    private static final long KEEP_ALIVE_MILLIS = 30_000;
+    private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2_000;
+    private static final long MAX_IDLE_SECONDS = 10;
+    private static final long HEDGE_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final int maxPerRoute;
+    private final RequestTimeouts timeouts;
+    private final Map<Operation, RequestConfig> requestConfigs = new EnumMap<>(Operation.class);
+    private final ConcurrentMap<HttpHost, Semaphore> routePermits = new ConcurrentHashMap<>();
+    private final ExecutorService hedges;
+
+    /**
+     * Creates a pool of at most {@code maxTotal} connections and {@code maxPerRoute} connections to one host.
+     *
+     * @param maxPerRoute maximum number of connections to one host
+     * @param maxTotal    maximum number of connections
+     * @param timeouts    {@link RequestTimeouts} of requests
+     */
+    public ConnectionPool(final int maxPerRoute, final int maxTotal, final RequestTimeouts timeouts) {
+        this.maxPerRoute = maxPerRoute;
+        this.timeouts = timeouts;
+        for (final Operation operation : Operation.values()) {
+            requestConfigs.put(operation, RequestConfig.custom()
+                    .setConnectTimeout(timeouts.getConnectTimeout())
+                    .setConnectionRequestTimeout(timeouts.getTimeout(operation))
+                    .setSocketTimeout(timeouts.getTimeout(operation))
+                    .build());
+        }
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+        client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy((response, context) -> {
+                    final long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                            .getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? keepAlive : KEEP_ALIVE_MILLIS;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(MAX_IDLE_SECONDS, TimeUnit.SECONDS)
+                .build();
+        hedges = new ThreadPoolExecutor(0, maxPerRoute, HEDGE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), task -> {
+            final Thread thread = new Thread(task, "hedged-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a pool with {@link RequestTimeouts#DEFAULT} timeouts.
+     *
+     * @param maxPerRoute maximum number of connections to one host
+     * @param maxTotal    maximum number of connections
+     */
+    public ConnectionPool(final int maxPerRoute, final int maxTotal) {
+        this(maxPerRoute, maxTotal, RequestTimeouts.DEFAULT);
+    }
+
+    /**
+     * Creates a pool with {@code maxPerRoute} connections to one host
+     * and at least {@link #DEFAULT_MAX_CONNECTIONS} connections in total.
+     *
+     * @param maxPerRoute maximum number of connections to one host
+     */
+    public ConnectionPool(final int maxPerRoute) {
+        this(maxPerRoute, Math.max(maxPerRoute, DEFAULT_MAX_CONNECTIONS));
+    }
+
+    /**
+     * Creates a pool with {@link #DEFAULT_MAX_CONNECTIONS} connections.
+     */
+    public ConnectionPool() {
+        this(DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @return {@link CloseableHttpClient} executing requests with connections of the pool
+     */
+    CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return {@link ExecutorService} for hedged requests, rejecting a hedge if all its threads are busy
+     */
+    ExecutorService getHedgeExecutor() {
+        return hedges;
+    }
+
+    /**
+     * Waits for a free connection to {@code host}. Every successful call must be followed by {@link #release(HttpHost)}.
+     *
+     * @param host target host of the request
+     * @throws ServiceException if the thread was interrupted while waiting
+     */
+    void acquire(final HttpHost host) throws ServiceException {
+        try {
+            routePermits.computeIfAbsent(host, key -> new Semaphore(maxPerRoute, true)).acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("Interrupted while waiting for a connection", e);
+        }
+    }
+
+    /**
+     * Takes a free connection to {@code host} if there is one. A successful call must be followed
+     * by {@link #release(HttpHost)}.
+     *
+     * @param host target host of the request
+     * @return {@link Boolean#TRUE} if the connection was taken
+     */
+    boolean tryAcquire(final HttpHost host) {
+        return routePermits.computeIfAbsent(host, key -> new Semaphore(maxPerRoute, true)).tryAcquire();
+    }
+
+    /**
+     * @param operation {@link Operation} of the request
+     * @return {@link RequestConfig} with timeouts of the {@code operation}
+     */
+    RequestConfig getRequestConfig(final Operation operation) {
+        return requestConfigs.get(operation);
+    }
+
+    /**
+     * @return {@link RequestTimeouts} of requests
+     */
+    RequestTimeouts getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns the permit taken by {@link #acquire(HttpHost)}.
+     *
+     * @param host target host of the request
+     */
+    void release(final HttpHost host) {
+        routePermits.get(host).release();
+    }
+
+    /**
+     * @return current state of the pool, pending requests include those waiting for a permit
+     */
+    public ConnectionPoolStats getStats() {
+        final PoolStats stats = connectionManager.getTotalStats();
+        int waiting = stats.getPending();
+        for (final Semaphore permits : routePermits.values()) {
+            waiting += permits.getQueueLength();
+        }
+        return new ConnectionPoolStats(stats.getLeased(), stats.getAvailable(), waiting,
+                maxPerRoute, stats.getMax());
+    }
+
+    /**
+     * Stops the eviction of idle connections, closes all connections and stops sending hedges.
+     */
+    @Override
+    public void close() {
+        hedges.shutdown();
+        try {
+            client.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
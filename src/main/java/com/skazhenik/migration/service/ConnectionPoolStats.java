@@ -0,0 +1,59 @@
+package com.skazhenik.migration.service;
+
+/**
+ * Snapshot of the state of a {@link ConnectionPool}.
+ */
+public class ConnectionPoolStats {
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int maxPerRoute;
+    private final int maxTotal;
+
+    ConnectionPoolStats(final int leased,
+                        final int available,
+                        final int pending,
+                        final int maxPerRoute,
+                        final int maxTotal) {
+        this.leased = leased;
+        this.available = available;
+        this.pending = pending;
+        this.maxPerRoute = maxPerRoute;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * @return number of connections executing requests
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    /**
+     * @return number of idle connections kept alive
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * @return number of requests waiting for a connection, a persistently positive value means starvation
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("connections: leased=%d available=%d pending=%d max=%d/%d",
+                leased, available, pending, maxPerRoute, maxTotal);
+    }
+}
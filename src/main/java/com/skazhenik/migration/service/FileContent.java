@@ -0,0 +1,74 @@
+package com.skazhenik.migration.service;
+
+import com.skazhenik.migration.metrics.StorageMetrics;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.client.methods.CloseableHttpResponse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Content of a storage file received from a successful GET request.
+ * The content is not buffered anywhere, so it can be read only once.
+ * Closing it releases the underlying connection and adds the bytes read to the {@link StorageMetrics}.
+ */
+public class FileContent implements Closeable {
+    private final CloseableHttpResponse response;
+    private final CountingInputStream inputStream;
+    private final long length;
+    private final StorageMetrics metrics;
+    private final LongConsumer onClose;
+    private boolean closed = false;
+
+    /**
+     * @param response successful response
+     * @param metrics  {@link StorageMetrics} of the storage
+     * @param onClose  called with the number of bytes read when the content is closed
+     * @throws IOException if the content can not be obtained
+     */
+    FileContent(final CloseableHttpResponse response, final StorageMetrics metrics, final LongConsumer onClose)
+            throws IOException {
+        this.response = response;
+        this.inputStream = new CountingInputStream(response.getEntity().getContent());
+        this.length = response.getEntity().getContentLength();
+        this.metrics = metrics;
+        this.onClose = onClose;
+    }
+
+    /**
+     * @return {@link InputStream} with file content
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * @return file length in bytes or negative number if it is unknown
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Releases the connection. If the content has not been read to the end,
+     * the connection is aborted instead of draining the remaining bytes.
+     *
+     * @throws IOException if an error occurs while closing the response
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        final long bytes = inputStream.getByteCount();
+        metrics.received(bytes);
+        try {
+            response.close();
+        } finally {
+            onClose.accept(bytes);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.skazhenik.migration.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads file names from the JSON array of a file list response as they arrive, so the first names
+ * can be migrated before the whole list is received, and the list is never kept in memory as a whole.
+ * <p>
+ * The response is released as soon as the closing bracket is read, or when the iterator is closed.
+ * As {@link Iterator} can not throw checked exceptions, a failed or malformed response makes
+ * {@link #hasNext()} and {@link #next()} throw {@link UncheckedIOException}.
+ */
+public class FileListIterator implements Iterator<String>, Closeable {
+    private final FileContent content;
+    private final Reader reader;
+    private final StringBuilder name = new StringBuilder();
+    private String next;
+    private boolean started = false;
+    private boolean finished = false;
+
+    FileListIterator(final FileContent content) {
+        this.content = content;
+        this.reader = new BufferedReader(new InputStreamReader(content.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readName();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read the file list", e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final String result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * @return next file name or {@code null} if the array is over
+     * @throws IOException if the response can not be read or is not a JSON array of strings
+     */
+    private String readName() throws IOException {
+        int c = skipWhitespace();
+        if (!started) {
+            if (c != '[') {
+                throw malformed(c);
+            }
+            started = true;
+            c = skipWhitespace();
+        } else if (c == ',') {
+            c = skipWhitespace();
+        } else if (c != ']') {
+            throw malformed(c);
+        }
+        if (c == ']') {
+            finished = true;
+            content.close();
+            return null;
+        }
+        if (c != '"') {
+            throw malformed(c);
+        }
+        return readString();
+    }
+
+    /**
+     * Reads a JSON string whose opening quote was already read.
+     *
+     * @return unescaped string
+     * @throws IOException if the response can not be read or the string is malformed
+     */
+    private String readString() throws IOException {
+        name.setLength(0);
+        while (true) {
+            final int c = read();
+            if (c == '"') {
+                return name.toString();
+            }
+            if (c != '\\') {
+                name.append((char) c);
+                continue;
+            }
+            final int escaped = read();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    name.append((char) escaped);
+                    break;
+                case 'b':
+                    name.append('\b');
+                    break;
+                case 'f':
+                    name.append('\f');
+                    break;
+                case 'n':
+                    name.append('\n');
+                    break;
+                case 'r':
+                    name.append('\r');
+                    break;
+                case 't':
+                    name.append('\t');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        final int digit = Character.digit(read(), 16);
+                        if (digit < 0) {
+                            throw new IOException("Malformed unicode escape in the file list");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    name.append((char) code);
+                    break;
+                default:
+                    throw malformed(escaped);
+            }
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+        return c;
+    }
+
+    private int read() throws IOException {
+        final int c = reader.read();
+        if (c < 0) {
+            throw new IOException("Unexpected end of the file list");
+        }
+        return c;
+    }
+
+    private static IOException malformed(final int c) {
+        return new IOException("Unexpected character in the file list: " + (char) c);
+    }
+
+    /**
+     * Releases the connection, aborting it if the list has not been read to the end.
+     *
+     * @throws IOException if an error occurs while closing the response
+     */
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        content.close();
+    }
+}
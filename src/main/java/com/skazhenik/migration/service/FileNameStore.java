@@ -0,0 +1,195 @@
+package com.skazhenik.migration.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Immutable list of file names stored as UTF-8 in one byte array with an index of offsets.
+ * A name takes its encoded length and four bytes of the index instead of a {@link String} with its own array,
+ * so a huge listing fits a small heap. A {@link String} is decoded only when an element is requested
+ * and can be collected as soon as the file is migrated.
+ * <p>
+ * {@link #contains(Object)} and {@link #indexOf(Object)} look names up in a hash table of indices built on
+ * the first lookup, which takes eight to sixteen bytes per name, so two huge listings can be joined in memory.
+ */
+public final class FileNameStore extends AbstractList<String> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final byte[] bytes;
+    private final int[] offsets;
+    private final int size;
+    private volatile int[] table;
+
+    private FileNameStore(final byte[] bytes, final int[] offsets, final int size) {
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.size = size;
+    }
+
+    /**
+     * Stores all names remaining in {@code names}.
+     *
+     * @param names {@link Iterator} of file names
+     * @return {@link FileNameStore} with the names in the order of the iterator
+     * @throws IllegalStateException if the encoded names do not fit a byte array
+     */
+    public static FileNameStore of(final Iterator<String> names) {
+        final Builder builder = new Builder();
+        names.forEachRemaining(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * Stores all {@code names}.
+     *
+     * @param names file names
+     * @return {@link FileNameStore} with the names in the same order
+     */
+    public static FileNameStore of(final Iterable<String> names) {
+        return of(names.iterator());
+    }
+
+    /**
+     * Decodes the name at {@code index}.
+     *
+     * @param index index of the name
+     * @return file name
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    @Override
+    public String get(final int index) {
+        final int start = offsets[Objects.checkIndex(index, size)];
+        return new String(bytes, start, offsets[index + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param index index of the name
+     * @return length of the UTF-8 encoded name in bytes
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int getLength(final int index) {
+        return offsets[Objects.checkIndex(index, size) + 1] - offsets[index];
+    }
+
+    /**
+     * Finds the first occurrence of the name in the hash table.
+     *
+     * @param o name to find
+     * @return index of the name or -1 if there is no such name
+     */
+    @Override
+    public int indexOf(final Object o) {
+        if (!(o instanceof String)) {
+            return -1;
+        }
+        final byte[] name = ((String) o).getBytes(StandardCharsets.UTF_8);
+        final int[] table = getTable();
+        final int mask = table.length - 1;
+        for (int slot = hash(name, 0, name.length) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            final int index = table[slot] - 1;
+            if (Arrays.equals(bytes, offsets[index], offsets[index + 1], name, 0, name.length)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Builds the open addressing table of indices increased by one, at most half full.
+     * Concurrent callers may build it twice, but they build the same table.
+     *
+     * @return hash table of the names
+     */
+    private int[] getTable() {
+        int[] result = table;
+        if (result != null) {
+            return result;
+        }
+        result = new int[Math.max(2, Integer.highestOneBit(Math.max(1, size)) << 2)];
+        final int mask = result.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = hash(bytes, offsets[index], offsets[index + 1]) & mask;
+            while (result[slot] != 0 && !Arrays.equals(bytes, offsets[index], offsets[index + 1],
+                    bytes, offsets[result[slot] - 1], offsets[result[slot]])) {
+                slot = (slot + 1) & mask;
+            }
+            if (result[slot] == 0) {
+                result[slot] = index + 1;
+            }
+        }
+        table = result;
+        return result;
+    }
+
+    private static int hash(final byte[] bytes, final int from, final int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the higher bits, the table is indexed by the lower ones
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return number of bytes taken by the encoded names, not counting the index
+     */
+    public int getByteSize() {
+        return bytes.length;
+    }
+
+    /**
+     * Collects names one by one, so a list can be stored while it is being read.
+     * The builder is not thread-safe.
+     */
+    public static final class Builder {
+        private byte[] bytes = new byte[INITIAL_CAPACITY * 16];
+        private int[] offsets = new int[INITIAL_CAPACITY + 1];
+        private int size = 0;
+        private int length = 0;
+
+        /**
+         * @param name file name to append
+         * @throws IllegalStateException if the encoded names do not fit a byte array
+         */
+        public void add(final String name) {
+            final byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+            if (encoded.length > Integer.MAX_VALUE - 8 - length) {
+                throw new IllegalStateException("File names take more than 2 GiB");
+            }
+            if (length + encoded.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(
+                        Math.max(2L * bytes.length, length + encoded.length), Integer.MAX_VALUE - 8));
+            }
+            if (size + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+            }
+            System.arraycopy(encoded, 0, bytes, length, encoded.length);
+            length += encoded.length;
+            offsets[++size] = length;
+        }
+
+        /**
+         * Copies the names added so far, the builder may be used further.
+         *
+         * @return {@link FileNameStore} with the names in the order they were added
+         */
+        public FileNameStore build() {
+            return new FileNameStore(Arrays.copyOf(bytes, length), Arrays.copyOf(offsets, size + 1), size);
+        }
+    }
+}
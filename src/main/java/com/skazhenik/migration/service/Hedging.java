@@ -0,0 +1,158 @@
+package com.skazhenik.migration.service;
+
+import com.skazhenik.migration.exception.ServiceException;
+import org.apache.http.client.methods.HttpRequestBase;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Executes idempotent requests with hedging. The request runs in the calling thread, and if it takes longer
+ * than the percentile of the latest latencies, a duplicate is sent from another thread. The first successful
+ * response is used, the other request is aborted or its result is discarded. Hedges run on the bounded
+ * executor of the {@link ConnectionPool}, a hedge without a free thread is not sent. The scheduler also
+ * aborts requests which are past their deadline.
+ */
+final class Hedging {
+    private static final int NONE = 0;
+    private static final int PRIMARY = 1;
+    private static final int HEDGE = 2;
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+        final Thread thread = new Thread(task, "hedging-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Hedging() {
+    }
+
+    /**
+     * Executes a request.
+     *
+     * @param <T> result type
+     */
+    interface Call<T> {
+        /**
+         * @param request {@link HttpRequestBase} to execute
+         * @param hedge   {@link Boolean#TRUE} if the request is a duplicate, which must not wait for a connection
+         * @return result of the request
+         * @throws ServiceException if the request failed
+         */
+        T execute(HttpRequestBase request, boolean hedge) throws ServiceException;
+    }
+
+    /**
+     * Runs {@code task} after {@code delayMillis}, e.g. to abort a request which is past its deadline.
+     *
+     * @param task        task to run
+     * @param delayMillis delay in milliseconds
+     * @return {@link ScheduledFuture} to cancel the task
+     */
+    static ScheduledFuture<?> schedule(final Runnable task, final long delayMillis) {
+        return scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static <T> T timed(final LatencyTracker tracker,
+                               final Call<T> call,
+                               final HttpRequestBase request,
+                               final boolean hedge) throws ServiceException {
+        final long start = System.nanoTime();
+        final T result = call.execute(request, hedge);
+        tracker.record(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Executes a request created by {@code requests}, hedging it after the percentile of {@code tracker}.
+     * No request is hedged until the tracker has enough samples.
+     *
+     * @param tracker  {@link LatencyTracker} of the kind of requests
+     * @param hedges   {@link Executor} running the duplicates
+     * @param requests creates a new request
+     * @param call     executes a request
+     * @param discard  releases the result of the request which was not used
+     * @param <T>      result type
+     * @return result of the first successful request
+     * @throws ServiceException if the request and its duplicate, if any, failed
+     */
+    static <T> T execute(final LatencyTracker tracker,
+                         final Executor hedges,
+                         final Supplier<HttpRequestBase> requests,
+                         final Call<T> call,
+                         final Consumer<T> discard) throws ServiceException {
+        final long delay = tracker.getPercentile();
+        final HttpRequestBase primary = requests.get();
+        if (delay < 0) {
+            return timed(tracker, call, primary, false);
+        }
+        final HttpRequestBase hedge = requests.get();
+        final AtomicInteger winner = new AtomicInteger(NONE);
+        // the hedge may already run while its timer is not done yet, so the timer can not tell whether it started
+        final AtomicBoolean claimed = new AtomicBoolean(false);
+        final CompletableFuture<T> hedgeResult = new CompletableFuture<>();
+        final ScheduledFuture<?> timer = scheduler.schedule(() -> {
+            try {
+                hedges.execute(() -> {
+                    if (!claimed.compareAndSet(false, true)) {
+                        return;
+                    }
+                    try {
+                        final T result = timed(tracker, call, hedge, true);
+                        if (winner.compareAndSet(NONE, HEDGE)) {
+                            primary.abort();
+                            hedgeResult.complete(result);
+                        } else {
+                            discard.accept(result);
+                            hedgeResult.completeExceptionally(new ServiceException("Hedged request was not used"));
+                        }
+                    } catch (ServiceException | RuntimeException e) {
+                        hedgeResult.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException ignored) {
+                // every thread runs a hedge already, the primary goes on alone
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+
+        final T result;
+        try {
+            result = timed(tracker, call, primary, false);
+        } catch (ServiceException e) {
+            timer.cancel(false);
+            if (claimed.compareAndSet(false, true)) {
+                throw e;
+            }
+            try {
+                return hedgeResult.get();
+            } catch (ExecutionException eHedge) {
+                e.addSuppressed(eHedge.getCause());
+                throw e;
+            } catch (InterruptedException eHedge) {
+                Thread.currentThread().interrupt();
+                if (!winner.compareAndSet(NONE, PRIMARY)) {
+                    hedgeResult.thenAccept(discard);
+                }
+                throw e;
+            }
+        }
+        if (winner.compareAndSet(NONE, PRIMARY)) {
+            timer.cancel(false);
+            claimed.set(true);
+            hedge.abort();
+            return result;
+        }
+        discard.accept(result);
+        return hedgeResult.join();
+    }
+}
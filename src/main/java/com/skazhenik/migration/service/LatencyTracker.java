@@ -0,0 +1,44 @@
+package com.skazhenik.migration.service;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latest latencies of one kind of requests and estimates their percentile.
+ * The estimate is recomputed periodically rather than on every request.
+ */
+class LatencyTracker {
+    private static final int SAMPLES = 1024;
+    private static final int MIN_SAMPLES = 64;
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    private final double quantile;
+    private final long[] samples = new long[SAMPLES];
+    private long count = 0;
+    private volatile long percentile = -1;
+
+    /**
+     * @param quantile quantile of the estimated percentile, from 0 to 1
+     */
+    LatencyTracker(final double quantile) {
+        this.quantile = quantile;
+    }
+
+    /**
+     * @param nanos latency of a successful request in nanoseconds
+     */
+    synchronized void record(final long nanos) {
+        samples[(int) (count++ % SAMPLES)] = nanos;
+        if (count >= MIN_SAMPLES && count % RECOMPUTE_INTERVAL == 0) {
+            final long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, SAMPLES));
+            Arrays.sort(sorted);
+            percentile = sorted[(int) Math.min(sorted.length - 1, sorted.length * quantile)];
+        }
+    }
+
+    /**
+     * @return estimated percentile in nanoseconds or negative number if there are not enough samples yet
+     */
+    long getPercentile() {
+        return percentile;
+    }
+}
@@ -1,5 +1,9 @@
 package com.skazhenik.migration.service;
 
+import com.skazhenik.migration.breaker.CircuitBreakers;
+import com.skazhenik.migration.limit.ConcurrencyLimiter;
+import com.skazhenik.migration.transfer.TransferEngine;
+
 /**
  * Provides interaction with new storage.
  *
@@ -7,10 +11,54 @@ package com.skazhenik.migration.service;
  */
 public class NewStorageService extends AbstractStorageService {
     private static final String endPoint = "/newStorage/files";
-    private static final String defaultURI = localhost + endPoint;
+    private final String defaultURI;
 
     public NewStorageService() {
         super();
+        this.defaultURI = localhost + endPoint;
+    }
+
+    public NewStorageService(final TransferEngine transferEngine) {
+        super(transferEngine);
+        this.defaultURI = localhost + endPoint;
+    }
+
+    public NewStorageService(final ConnectionPool connectionPool, final TransferEngine transferEngine) {
+        super(connectionPool, transferEngine);
+        this.defaultURI = localhost + endPoint;
+    }
+
+    public NewStorageService(final ConnectionPool connectionPool,
+                            final TransferEngine transferEngine,
+                            final ConcurrencyLimiter concurrencyLimiter) {
+        super(connectionPool, transferEngine, concurrencyLimiter);
+        this.defaultURI = localhost + endPoint;
+    }
+
+    public NewStorageService(final ConnectionPool connectionPool,
+                            final TransferEngine transferEngine,
+                            final ConcurrencyLimiter concurrencyLimiter,
+                            final CircuitBreakers circuitBreakers) {
+        super(connectionPool, transferEngine, concurrencyLimiter, circuitBreakers);
+        this.defaultURI = localhost + endPoint;
+    }
+
+    /**
+     * Creates a service of the new storage served at {@code baseURL} instead of the default host.
+     *
+     * @param baseURL            scheme, host and port of the storage server, e.g. {@code http://localhost:8080}
+     * @param connectionPool     {@link ConnectionPool} shared with other services
+     * @param transferEngine     {@link TransferEngine} used to save downloaded files
+     * @param concurrencyLimiter {@link ConcurrencyLimiter} of the storage endpoint, may be {@code null}
+     * @param circuitBreakers    {@link CircuitBreakers} shared with other services, may be {@code null}
+     */
+    public NewStorageService(final String baseURL,
+                            final ConnectionPool connectionPool,
+                            final TransferEngine transferEngine,
+                            final ConcurrencyLimiter concurrencyLimiter,
+                            final CircuitBreakers circuitBreakers) {
+        super(connectionPool, transferEngine, concurrencyLimiter, circuitBreakers);
+        this.defaultURI = baseURL + endPoint;
     }
 
     @Override
@@ -0,0 +1,36 @@
+package com.skazhenik.migration.service;
+
+/**
+ * Kinds of requests a storage service executes.
+ */
+public enum Operation {
+    /**
+     * GET request for the list of files.
+     */
+    LIST(true),
+    /**
+     * GET request for the file content.
+     */
+    DOWNLOAD(true),
+    /**
+     * POST request with the file content.
+     */
+    UPLOAD(false),
+    /**
+     * DELETE request for the file.
+     */
+    DELETE(true);
+
+    private final boolean idempotent;
+
+    Operation(final boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if repeating the request has the same effect as executing it once
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+}
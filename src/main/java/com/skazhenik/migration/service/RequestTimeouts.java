@@ -0,0 +1,58 @@
+package com.skazhenik.migration.service;
+
+/**
+ * Timeouts of storage requests in milliseconds. A connection must be established within the connect timeout.
+ * The operation timeout limits the wait for every portion of the response, so a hung request fails
+ * after it instead of holding its thread indefinitely, while a slow but progressing transfer does not.
+ */
+public class RequestTimeouts {
+    public static final RequestTimeouts DEFAULT = new RequestTimeouts(5_000, 30_000, 30_000, 60_000, 30_000);
+
+    private final int connectTimeout;
+    private final int listTimeout;
+    private final int downloadTimeout;
+    private final int uploadTimeout;
+    private final int deleteTimeout;
+
+    public RequestTimeouts(final int connectTimeout,
+                           final int listTimeout,
+                           final int downloadTimeout,
+                           final int uploadTimeout,
+                           final int deleteTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.listTimeout = listTimeout;
+        this.downloadTimeout = downloadTimeout;
+        this.uploadTimeout = uploadTimeout;
+        this.deleteTimeout = deleteTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * @param operation {@link Operation} of the request
+     * @return maximum time of waiting for the response data of the {@code operation}
+     */
+    public int getTimeout(final Operation operation) {
+        switch (operation) {
+            case LIST:
+                return listTimeout;
+            case DOWNLOAD:
+                return downloadTimeout;
+            case UPLOAD:
+                return uploadTimeout;
+            default:
+                return deleteTimeout;
+        }
+    }
+
+    /**
+     * @param operation {@link Operation} of the request
+     * @return maximum time from sending the request to receiving the response of the {@code operation},
+     * after which the request is aborted even if data keeps arriving
+     */
+    public int getDeadline(final Operation operation) {
+        return connectTimeout + getTimeout(operation);
+    }
+}
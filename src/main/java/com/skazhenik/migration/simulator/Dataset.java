@@ -0,0 +1,213 @@
+package com.skazhenik.migration.simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic files of the old storage of {@link StorageSimulator}. The name, length and content of a file
+ * are derived from its index and the seed, so millions of files take no memory and the same seed gives
+ * the same files on every run.
+ */
+public class Dataset {
+    private static final String PREFIX = "file";
+    private static final String SUFFIX = ".bin";
+    private static final int LENGTH_STREAM = 0;
+    private static final int CONTENT_STREAM = 1;
+
+    private final int fileCount;
+    private final long minLength;
+    private final long maxLength;
+    private final SizeDistribution sizes;
+    private final long seed;
+
+    /**
+     * @param fileCount number of files
+     * @param minLength minimum length of a file in bytes
+     * @param maxLength maximum length of a file in bytes
+     * @param sizes     {@link SizeDistribution} of the lengths
+     * @param seed      seed of the lengths and contents
+     * @throws IllegalArgumentException if the count or the lengths are out of range
+     */
+    public Dataset(final int fileCount,
+                   final long minLength,
+                   final long maxLength,
+                   final SizeDistribution sizes,
+                   final long seed) {
+        if (fileCount < 0) {
+            throw new IllegalArgumentException("File count must not be negative: " + fileCount);
+        }
+        if (minLength < 0 || maxLength < minLength || maxLength == Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid file lengths: " + minLength + ".." + maxLength);
+        }
+        this.fileCount = fileCount;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.sizes = sizes;
+        this.seed = seed;
+    }
+
+    /**
+     * @return number of files
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @param index index of the file
+     * @return name of the file
+     */
+    public String getName(final int index) {
+        return PREFIX + index + SUFFIX;
+    }
+
+    /**
+     * @param name name of a file
+     * @return index of the file or -1 if the name does not belong to the dataset
+     */
+    public int indexOf(final String name) {
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        final String digits = name.substring(PREFIX.length(), name.length() - SUFFIX.length());
+        final int index;
+        try {
+            index = Integer.parseInt(digits);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        // "file01.bin" and "file+1.bin" are not names of the dataset
+        return index >= 0 && index < fileCount && getName(index).equals(name) ? index : -1;
+    }
+
+    /**
+     * @param index index of the file
+     * @return length of the file in bytes
+     */
+    public long getLength(final int index) {
+        return sizes.sample(random(index, LENGTH_STREAM), minLength, maxLength);
+    }
+
+    /**
+     * @param index index of the file
+     * @return {@link InputStream} generating the content of the file
+     */
+    public InputStream open(final int index) {
+        return new ContentStream(random(index, CONTENT_STREAM), getLength(index));
+    }
+
+    /**
+     * @param index   index of the file
+     * @param content array with the content to compare
+     * @param offset  start of the content in the array
+     * @param length  length of the content
+     * @return {@link Boolean#TRUE} if the content is the content of the file
+     */
+    boolean matches(final int index, final byte[] content, final int offset, final int length) {
+        if (getLength(index) != length) {
+            return false;
+        }
+        final InputStream expected = open(index);
+        final byte[] buffer = new byte[8192];
+        try {
+            for (int position = 0; position < length; ) {
+                final int read = expected.read(buffer, 0, Math.min(buffer.length, length - position));
+                if (!Arrays.equals(buffer, 0, read, content, offset + position, offset + position + read)) {
+                    return false;
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Generated content can not fail", e);
+        }
+        return true;
+    }
+
+    /**
+     * Adjacent seeds of {@link SplittableRandom} give shifted copies of one sequence, so the seed of every
+     * file is mixed first.
+     */
+    private SplittableRandom random(final int index, final int stream) {
+        return new SplittableRandom(mix(seed ^ mix(2L * index + stream)));
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("dataset: files=%d length=%d..%d sizes=%s seed=%d",
+                fileCount, minLength, maxLength, sizes, seed);
+    }
+
+    /**
+     * Pseudorandom bytes of a given length.
+     */
+    private static final class ContentStream extends InputStream {
+        private final SplittableRandom random;
+        private long remaining;
+        private long word;
+        private int wordBytes = 0;
+
+        private ContentStream(final SplittableRandom random, final long length) {
+            this.random = random;
+            this.remaining = length;
+        }
+
+        private byte next() {
+            if (wordBytes == 0) {
+                word = random.nextLong();
+                wordBytes = Long.BYTES;
+            }
+            final byte b = (byte) word;
+            word >>>= Byte.SIZE;
+            wordBytes--;
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read() {
+            return remaining > 0 ? next() & 0xff : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                return -1;
+            }
+            final int count = (int) Math.min(len, remaining);
+            int i = 0;
+            while (i < count && wordBytes > 0) {
+                b[off + i++] = next();
+            }
+            // whole words are written at once, in the same order as byte by byte
+            final int wordsStart = i;
+            for (; i + Long.BYTES <= count; i += Long.BYTES) {
+                long value = random.nextLong();
+                for (int j = 0; j < Long.BYTES; j++) {
+                    b[off + i + j] = (byte) value;
+                    value >>>= Byte.SIZE;
+                }
+            }
+            remaining -= i - wordsStart;
+            while (i < count) {
+                b[off + i++] = next();
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, remaining);
+        }
+    }
+}
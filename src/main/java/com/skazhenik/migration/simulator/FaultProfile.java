@@ -0,0 +1,111 @@
+package com.skazhenik.migration.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Misbehaviour of one storage of {@link StorageSimulator}. Every request waits for the latency, which is
+ * a fixed part plus an exponentially distributed tail, some requests hang much longer and some fail with
+ * an internal server error. Bodies of requests and responses are transferred at a limited rate
+ * on every connection.
+ */
+public class FaultProfile {
+    /**
+     * The storage answers at once, never fails and is limited only by the loopback connection.
+     */
+    public static final FaultProfile NONE = new FaultProfile(0, 0, 0, 0, 0, 0);
+
+    private final double errorRate;
+    private final long latencyMillis;
+    private final long latencyTailMillis;
+    private final double hangRate;
+    private final long hangMillis;
+    private final long bytesPerMilli;
+
+    /**
+     * @param errorRate         share of requests failed with an internal server error, from 0 to 1
+     * @param latencyMillis     fixed latency of every request
+     * @param latencyTailMillis mean of the exponentially distributed latency added to the fixed one
+     * @param hangRate          share of requests which hang, from 0 to 1
+     * @param hangMillis        time a request hangs
+     * @param bytesPerMilli     bandwidth of one connection, not limited if not positive
+     * @throws IllegalArgumentException if a rate is out of range or a time is negative
+     */
+    public FaultProfile(final double errorRate,
+                        final long latencyMillis,
+                        final long latencyTailMillis,
+                        final double hangRate,
+                        final long hangMillis,
+                        final long bytesPerMilli) {
+        if (!(errorRate >= 0 && errorRate <= 1) || !(hangRate >= 0 && hangRate <= 1)) {
+            throw new IllegalArgumentException("Rates must be from 0 to 1: " + errorRate + ", " + hangRate);
+        }
+        if (latencyMillis < 0 || latencyTailMillis < 0 || hangMillis < 0) {
+            throw new IllegalArgumentException("Times must not be negative");
+        }
+        this.errorRate = errorRate;
+        this.latencyMillis = latencyMillis;
+        this.latencyTailMillis = latencyTailMillis;
+        this.hangRate = hangRate;
+        this.hangMillis = hangMillis;
+        this.bytesPerMilli = bytesPerMilli;
+    }
+
+    /**
+     * @return share of requests failed with an internal server error
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * @return share of requests which hang
+     */
+    public double getHangRate() {
+        return hangRate;
+    }
+
+    /**
+     * @return time a request hangs
+     */
+    public long getHangMillis() {
+        return hangMillis;
+    }
+
+    /**
+     * @return bandwidth of one connection, not limited if not positive
+     */
+    public long getBytesPerMilli() {
+        return bytesPerMilli;
+    }
+
+    /**
+     * @return latency of the next request in milliseconds
+     */
+    long nextLatencyMillis() {
+        if (latencyTailMillis == 0) {
+            return latencyMillis;
+        }
+        return latencyMillis + Math.round(-latencyTailMillis * Math.log1p(-ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if the next request hangs
+     */
+    boolean nextHangs() {
+        return hangRate > 0 && ThreadLocalRandom.current().nextDouble() < hangRate;
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if the next request fails
+     */
+    boolean nextFails() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("faults: errors=%.3f latency=%dms+%dms hangs=%.3f hang=%dms bandwidth=%s",
+                errorRate, latencyMillis, latencyTailMillis, hangRate, hangMillis,
+                bytesPerMilli > 0 ? bytesPerMilli + "B/ms" : "unlimited");
+    }
+}
@@ -0,0 +1,39 @@
+package com.skazhenik.migration.simulator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Distribution of the lengths of the files of a {@link Dataset} between its minimum and maximum length.
+ */
+public enum SizeDistribution {
+    /**
+     * Every length is equally likely, a fixed length is given by equal minimum and maximum.
+     */
+    UNIFORM {
+        @Override
+        long sample(final SplittableRandom random, final long min, final long max) {
+            return min + random.nextLong(max - min + 1);
+        }
+    },
+    /**
+     * Every order of magnitude is equally likely, so most files are small and a few are close to
+     * the maximum, as in real storages.
+     */
+    LOG_UNIFORM {
+        @Override
+        long sample(final SplittableRandom random, final long min, final long max) {
+            final double low = Math.log1p(min);
+            final double high = Math.log1p(max);
+            final long length = (long) Math.expm1(low + random.nextDouble() * (high - low));
+            return Math.max(min, Math.min(max, length));
+        }
+    };
+
+    /**
+     * @param random source of randomness of one file
+     * @param min    minimum length
+     * @param max    maximum length
+     * @return length of the file
+     */
+    abstract long sample(SplittableRandom random, long min, long max);
+}
@@ -0,0 +1,495 @@
+package com.skazhenik.migration.simulator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Faulty storage server inside the current process. It serves the API of the old and the new storage
+ * on a loopback port, the old storage holds the files of a {@link Dataset} and the new one is empty.
+ * Each storage misbehaves according to its {@link FaultProfile}.
+ * <p>
+ * Files of the dataset uploaded to the new storage with their original content are kept as bits,
+ * so a migration of millions of files needs a few megabytes. Other uploaded files are kept in memory.
+ */
+public class StorageSimulator implements AutoCloseable {
+    /**
+     * Port the storage services connect to by default.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final String OLD_STORAGE = "/oldStorage/files";
+    private static final String NEW_STORAGE = "/newStorage/files";
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int BACKLOG = 1000;
+    // the defaults of main(), which serves a dataset for MigrationClient started in another process
+    private static final int DEFAULT_FILE_COUNT = 1_000_000;
+    private static final long DEFAULT_MAX_FILE_LENGTH = 64 * 1024;
+    private static final double DEFAULT_ERROR_RATE = 0.1;
+    private static final double DEFAULT_HANG_RATE = 0.001;
+    private static final long HANG_MILLIS = 3_000;
+    private static final long REPORT_INTERVAL_MILLIS = 10_000;
+
+    static {
+        // the server writes headers and body separately, so without it a small body waits for the delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(task -> {
+        final Thread thread = new Thread(task, "storage-simulator");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Dataset dataset;
+    private final FaultProfile oldFaults;
+    private final FaultProfile newFaults;
+    private final ReentrantLock lock = new ReentrantLock();
+    // files of the dataset deleted from the old storage
+    private final BitSet deleted = new BitSet();
+    // files of the dataset uploaded to the new storage with their original content
+    private final BitSet migrated = new BitSet();
+    private final Map<String, byte[]> uploaded = new HashMap<>();
+    // number of refused uploads of every file
+    private final Map<String, Integer> refused = new HashMap<>();
+    private volatile boolean keepUploads = true;
+    private volatile int uploadFailures = 0;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong hangs = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    /**
+     * Starts the server with separate misbehaviour of the storages.
+     *
+     * @param port      port to listen on, 0 for any free port
+     * @param dataset   {@link Dataset} of the old storage
+     * @param oldFaults {@link FaultProfile} of the old storage
+     * @param newFaults {@link FaultProfile} of the new storage
+     * @throws IOException if the server can not be started, e.g. the port is in use
+     */
+    public StorageSimulator(final int port,
+                            final Dataset dataset,
+                            final FaultProfile oldFaults,
+                            final FaultProfile newFaults) throws IOException {
+        this.dataset = dataset;
+        this.oldFaults = oldFaults;
+        this.newFaults = newFaults;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext(OLD_STORAGE, exchange -> handle(exchange, true));
+        server.createContext(NEW_STORAGE, exchange -> handle(exchange, false));
+        server.start();
+    }
+
+    /**
+     * Starts the server with the same misbehaviour of both storages.
+     *
+     * @param port    port to listen on, 0 for any free port
+     * @param dataset {@link Dataset} of the old storage
+     * @param faults  {@link FaultProfile} of both storages
+     * @throws IOException if the server can not be started, e.g. the port is in use
+     */
+    public StorageSimulator(final int port, final Dataset dataset, final FaultProfile faults) throws IOException {
+        this(port, dataset, faults, faults);
+    }
+
+    /**
+     * @return scheme, host and port of the server
+     */
+    public String getBaseURL() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return {@link Dataset} of the old storage
+     */
+    public Dataset getDataset() {
+        return dataset;
+    }
+
+    /**
+     * @param keepUploads whether uploaded files are stored, otherwise the bodies are read and dropped
+     */
+    public void setKeepUploads(final boolean keepUploads) {
+        this.keepUploads = keepUploads;
+    }
+
+    /**
+     * @param uploadFailures number of times the new storage refuses every file with an internal server error
+     *                       before it accepts the upload, uploads are refused only while they are kept
+     */
+    public void setUploadFailures(final int uploadFailures) {
+        this.uploadFailures = uploadFailures;
+    }
+
+    /**
+     * @return number of files in the old storage
+     */
+    public int getOldFileCount() {
+        lock.lock();
+        try {
+            return dataset.getFileCount() - deleted.cardinality();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of files in the new storage
+     */
+    public int getNewFileCount() {
+        lock.lock();
+        try {
+            return migrated.cardinality() + uploaded.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if every file of the dataset is deleted from the old storage
+     * and is in the new one with its original content
+     */
+    public boolean isMigrated() {
+        lock.lock();
+        try {
+            return deleted.cardinality() == dataset.getFileCount() && migrated.cardinality() == dataset.getFileCount();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Restores all files of the old storage and empties the new one.
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            deleted.clear();
+            migrated.clear();
+            uploaded.clear();
+            refused.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void handle(final HttpExchange exchange, final boolean old) throws IOException {
+        try {
+            requests.incrementAndGet();
+            final FaultProfile faults = old ? oldFaults : newFaults;
+            final Throttle throttle = new Throttle(faults.getBytesPerMilli());
+            final String method = exchange.getRequestMethod();
+            // the server closes the connection if the response is complete before the request body is read
+            final byte[] body = receive(exchange.getRequestBody(), throttle);
+            pause(faults.nextLatencyMillis());
+            if (faults.nextHangs()) {
+                hangs.incrementAndGet();
+                pause(faults.getHangMillis());
+            }
+            if (faults.nextFails()) {
+                errors.incrementAndGet();
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            final String base = old ? OLD_STORAGE : NEW_STORAGE;
+            final String path = exchange.getRequestURI().getPath();
+            final String name = path.length() > base.length() + 1 ? path.substring(base.length() + 1) : null;
+            switch (method) {
+                case "GET":
+                    if (name == null) {
+                        sendList(exchange, old, throttle);
+                    } else {
+                        sendFile(exchange, old, name, throttle);
+                    }
+                    break;
+                case "DELETE":
+                    exchange.sendResponseHeaders(name != null && delete(old, name) ? 200 : 404, -1);
+                    break;
+                case "POST":
+                    exchange.sendResponseHeaders(old ? 405 : upload(exchange, body), -1);
+                    break;
+                default:
+                    exchange.sendResponseHeaders(405, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] receive(final InputStream body, final Throttle throttle) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        int read;
+        while ((read = body.read(buffer)) >= 0) {
+            if (keepUploads) {
+                content.write(buffer, 0, read);
+            }
+            bytesReceived.addAndGet(read);
+            throttle.pace(read);
+        }
+        return content.toByteArray();
+    }
+
+    private void sendList(final HttpExchange exchange, final boolean old, final Throttle throttle) throws IOException {
+        final BitSet files;
+        final List<String> others;
+        lock.lock();
+        try {
+            files = (BitSet) (old ? deleted : migrated).clone();
+            others = old ? List.of() : new ArrayList<>(uploaded.keySet());
+        } finally {
+            lock.unlock();
+        }
+        // millions of names are written as they are generated, with chunked encoding
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = new BufferedOutputStream(throttle.wrap(exchange.getResponseBody()), CHUNK_SIZE)) {
+            out.write('[');
+            boolean first = true;
+            for (int i = 0; i < dataset.getFileCount(); i++) {
+                if (old ? !files.get(i) : files.get(i)) {
+                    first = writeName(out, dataset.getName(i), first);
+                }
+            }
+            for (final String name : others) {
+                first = writeName(out, name, first);
+            }
+            out.write(']');
+        }
+    }
+
+    private static boolean writeName(final OutputStream out, final String name, final boolean first)
+            throws IOException {
+        if (!first) {
+            out.write(',');
+        }
+        out.write('"');
+        out.write(name.replace("\\", "\\\\").replace("\"", "\\\"").getBytes(StandardCharsets.UTF_8));
+        out.write('"');
+        return false;
+    }
+
+    private void sendFile(final HttpExchange exchange, final boolean old, final String name, final Throttle throttle)
+            throws IOException {
+        final int index = dataset.indexOf(name);
+        final InputStream content;
+        final long length;
+        lock.lock();
+        try {
+            if (index >= 0 && (old ? !deleted.get(index) : migrated.get(index))) {
+                content = dataset.open(index);
+                length = dataset.getLength(index);
+            } else {
+                final byte[] stored = old ? null : uploaded.get(name);
+                content = stored == null ? null : new ByteArrayInputStream(stored);
+                length = stored == null ? 0 : stored.length;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(200, length == 0 ? -1 : length);
+        final OutputStream out = exchange.getResponseBody();
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        int read;
+        while ((read = content.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+            bytesSent.addAndGet(read);
+            throttle.pace(read);
+        }
+    }
+
+    private boolean delete(final boolean old, final String name) {
+        final int index = dataset.indexOf(name);
+        lock.lock();
+        try {
+            if (old) {
+                if (index < 0 || deleted.get(index)) {
+                    return false;
+                }
+                deleted.set(index);
+                return true;
+            }
+            if (index >= 0 && migrated.get(index)) {
+                migrated.clear(index);
+                return true;
+            }
+            return uploaded.remove(name) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores the only part of the multipart body. The part starts after the first empty line and
+     * ends right before the closing boundary, which is the tail of the body.
+     *
+     * @return response code
+     */
+    private int upload(final HttpExchange exchange, final byte[] request) {
+        if (!keepUploads) {
+            return 200;
+        }
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        final int boundaryStart = contentType == null ? -1 : contentType.indexOf("boundary=");
+        final int start = indexOf(request, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1)) + 4;
+        if (boundaryStart < 0 || start < 4) {
+            return 400;
+        }
+        final byte[] boundary = ("\r\n--" + contentType.substring(boundaryStart + 9) + "--")
+                .getBytes(StandardCharsets.ISO_8859_1);
+        int end = request.length - boundary.length;
+        while (end >= start && !Arrays.equals(request, end, end + boundary.length, boundary, 0, boundary.length)) {
+            end--;
+        }
+        final String headers = new String(request, 0, start, StandardCharsets.UTF_8);
+        final int nameStart = headers.indexOf("filename=\"") + 10;
+        if (end < start || nameStart < 10) {
+            return 400;
+        }
+        final String name = headers.substring(nameStart, headers.indexOf('"', nameStart));
+        final int index = dataset.indexOf(name);
+        final boolean original = index >= 0 && dataset.matches(index, request, start, end - start);
+        lock.lock();
+        try {
+            final int refusals = refused.getOrDefault(name, 0);
+            if (refusals < uploadFailures) {
+                refused.put(name, refusals + 1);
+                errors.incrementAndGet();
+                return 500;
+            }
+            if (index >= 0 && migrated.get(index) || uploaded.containsKey(name)) {
+                return 409;
+            }
+            if (original) {
+                migrated.set(index);
+            } else {
+                uploaded.put(name, Arrays.copyOfRange(request, start, end));
+            }
+            return 200;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int indexOf(final byte[] array, final byte[] target) {
+        for (int i = 0; i + target.length <= array.length; i++) {
+            if (Arrays.equals(array, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void pause(final long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Simulator was stopped");
+        }
+    }
+
+    /**
+     * Keeps the transfer of one body at the bandwidth of a connection.
+     */
+    private final class Throttle {
+        private final long bytesPerMilli;
+        private final long start = System.nanoTime();
+        private long bytes = 0;
+
+        private Throttle(final long bytesPerMilli) {
+            this.bytesPerMilli = bytesPerMilli;
+        }
+
+        void pace(final int count) throws InterruptedIOException {
+            if (bytesPerMilli <= 0) {
+                return;
+            }
+            bytes += count;
+            pause(bytes / bytesPerMilli - (System.nanoTime() - start) / 1_000_000);
+        }
+
+        OutputStream wrap(final OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    out.write(b, off, len);
+                    bytesSent.addAndGet(len);
+                    pace(len);
+                }
+            };
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("simulator: old=%d new=%d requests=%d errors=%d hangs=%d sent=%d received=%d",
+                getOldFileCount(), getNewFileCount(), requests.get(), errors.get(), hangs.get(),
+                bytesSent.get(), bytesReceived.get());
+    }
+
+    /**
+     * Stops the server at once.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Serves a dataset on {@link #DEFAULT_PORT}, so the migration client can be run against it from another
+     * process, and reports the state of the storages until every file is migrated.
+     *
+     * @param args number of files, maximum length of a file, error rate and hang rate, all optional
+     * @throws IOException          if the server can not be started
+     * @throws InterruptedException if the thread was interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_FILE_COUNT;
+        final long maxFileLength = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_MAX_FILE_LENGTH;
+        final double errorRate = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_ERROR_RATE;
+        final double hangRate = args.length > 3 ? Double.parseDouble(args[3]) : DEFAULT_HANG_RATE;
+        final Dataset dataset = new Dataset(fileCount, 0, maxFileLength, SizeDistribution.LOG_UNIFORM, 1);
+        final FaultProfile faults = new FaultProfile(errorRate, 1, 5, hangRate, HANG_MILLIS, 0);
+        try (StorageSimulator simulator = new StorageSimulator(DEFAULT_PORT, dataset, faults)) {
+            System.out.println("Serve " + dataset + " at " + simulator.getBaseURL());
+            System.out.println(faults);
+            while (!simulator.isMigrated()) {
+                Thread.sleep(REPORT_INTERVAL_MILLIS);
+                System.out.println(simulator);
+            }
+            System.out.println("All files are migrated");
+        }
+    }
+}
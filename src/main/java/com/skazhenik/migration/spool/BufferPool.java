@@ -0,0 +1,79 @@
+package com.skazhenik.migration.spool;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of direct {@link ByteBuffer}s of the same size with a global limit of off-heap memory.
+ * Buffers are allocated lazily and reused after release, so they are never collected by GC.
+ * The pool does not block: if the limit is reached, the caller has to store the data elsewhere.
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger allocatedBuffers = new AtomicInteger();
+    private final AtomicInteger usedBuffers = new AtomicInteger();
+
+    /**
+     * Creates a pool of buffers of {@code bufferSize} bytes using at most {@code maxMemory} bytes.
+     *
+     * @param bufferSize size of one buffer, files larger than it are not accepted
+     * @param maxMemory  limit of off-heap memory for all buffers
+     */
+    public BufferPool(final int bufferSize, final long maxMemory) {
+        if (bufferSize <= 0 || maxMemory < bufferSize) {
+            throw new IllegalArgumentException("Memory limit must fit at least one positive size buffer");
+        }
+        this.bufferSize = bufferSize;
+        this.maxBuffers = (int) Math.min(Integer.MAX_VALUE, maxMemory / bufferSize);
+    }
+
+    /**
+     * @return size of one buffer in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Takes a free buffer from the pool.
+     *
+     * @return cleared buffer or {@code null} if the memory limit is reached
+     */
+    public ByteBuffer tryAcquire() {
+        final ByteBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            usedBuffers.incrementAndGet();
+            return buffer.clear();
+        }
+        int allocated;
+        do {
+            allocated = allocatedBuffers.get();
+            if (allocated >= maxBuffers) {
+                return null;
+            }
+        } while (!allocatedBuffers.compareAndSet(allocated, allocated + 1));
+        usedBuffers.incrementAndGet();
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Returns the buffer taken by {@link #tryAcquire()} to the pool.
+     *
+     * @param buffer buffer to release
+     */
+    public void release(final ByteBuffer buffer) {
+        usedBuffers.decrementAndGet();
+        freeBuffers.offer(buffer);
+    }
+
+    /**
+     * @return number of bytes held by spooled files
+     */
+    public long getUsedMemory() {
+        return (long) usedBuffers.get() * bufferSize;
+    }
+}
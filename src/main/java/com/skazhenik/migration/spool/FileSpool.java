@@ -0,0 +1,73 @@
+package com.skazhenik.migration.spool;
+
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.checksum.ChecksumInputStream;
+import com.skazhenik.migration.checksum.FileChecksum;
+import com.skazhenik.migration.transfer.TransferEngine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.skazhenik.migration.util.FileUtils.deleteFileIfPossible;
+
+/**
+ * {@link Spool} storing the content in a file of the temporary directory within the quota of {@link SpoolManager}.
+ */
+public class FileSpool implements Spool {
+    private final Path file;
+    private final SpoolManager.Reservation reservation;
+    private long length = 0;
+    private FileChecksum checksum;
+
+    FileSpool(final Path file, final SpoolManager.Reservation reservation) {
+        this.file = file;
+        this.reservation = reservation;
+    }
+
+    @Override
+    public String getFileName() {
+        return file.getFileName().toString();
+    }
+
+    @Override
+    public long getLength() {
+        return length;
+    }
+
+    @Override
+    public FileChecksum getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public long write(final InputStream source,
+                      final long length,
+                      final TransferEngine engine,
+                      final ChecksumAlgorithm algorithm) throws IOException {
+        checksum = null;
+        try {
+            final ChecksumInputStream input = new ChecksumInputStream(source, algorithm);
+            this.length = engine.transfer(input, file, length);
+            checksum = input.getChecksum();
+        } finally {
+            reservation.adjust(Files.exists(file) ? Files.size(file) : 0);
+        }
+        return this.length;
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    /**
+     * Deletes the file and releases its reservation.
+     */
+    @Override
+    public void close() {
+        deleteFileIfPossible(file);
+        reservation.close();
+    }
+}
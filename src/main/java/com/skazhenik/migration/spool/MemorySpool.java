@@ -0,0 +1,124 @@
+package com.skazhenik.migration.spool;
+
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.checksum.ChecksumInputStream;
+import com.skazhenik.migration.checksum.FileChecksum;
+import com.skazhenik.migration.transfer.TransferEngine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * {@link Spool} storing the content in a direct {@link ByteBuffer} taken from {@link BufferPool}.
+ * The content never touches the file system and does not occupy the heap.
+ */
+public class MemorySpool implements Spool {
+    private final String fileName;
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+    private FileChecksum checksum;
+
+    /**
+     * {@link InputStream} reading an independent view of the spooled content.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer content;
+
+        ByteBufferInputStream(final ByteBuffer content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read() {
+            return content.hasRemaining() ? content.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!content.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(len, content.remaining());
+            content.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return content.remaining();
+        }
+    }
+
+    MemorySpool(final String fileName, final ByteBuffer buffer, final BufferPool pool) {
+        this.fileName = fileName;
+        this.buffer = buffer;
+        this.pool = pool;
+    }
+
+    @Override
+    public String getFileName() {
+        return fileName;
+    }
+
+    @Override
+    public long getLength() {
+        return buffer.limit();
+    }
+
+    @Override
+    public FileChecksum getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Reads the content into the buffer, {@code engine} is not used.
+     *
+     * @throws IOException if reading failed or the content does not fit into the buffer
+     */
+    @Override
+    public long write(final InputStream source,
+                      final long length,
+                      final TransferEngine engine,
+                      final ChecksumAlgorithm algorithm) throws IOException {
+        buffer.clear();
+        checksum = null;
+        final ChecksumInputStream input = new ChecksumInputStream(source, algorithm);
+        final ReadableByteChannel channel = Channels.newChannel(input);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                buffer.flip();
+                checksum = input.getChecksum();
+                return buffer.limit();
+            }
+        }
+        if (input.read() != -1) {
+            buffer.clear().limit(0);
+            throw new IOException("Content of " + fileName + " exceeds " + buffer.capacity() + " bytes buffer");
+        }
+        buffer.flip();
+        checksum = input.getChecksum();
+        return buffer.limit();
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new ByteBufferInputStream(buffer.duplicate());
+    }
+
+    /**
+     * Returns the buffer to the pool.
+     */
+    @Override
+    public void close() {
+        if (buffer != null) {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.skazhenik.migration.spool;
+
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.checksum.FileChecksum;
+import com.skazhenik.migration.transfer.TransferEngine;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Local copy of a downloaded file, which can be read any number of times while the file is uploaded.
+ * Closing the spool frees the storage it occupies.
+ *
+ * @see SpoolManager#allocate(java.nio.file.Path, String, long)
+ */
+public interface Spool extends AutoCloseable {
+    /**
+     * @return name of the spooled file
+     */
+    String getFileName();
+
+    /**
+     * @return number of spooled bytes
+     */
+    long getLength();
+
+    /**
+     * Save all bytes from {@code source} replacing the previous content.
+     *
+     * @param source {@link InputStream} with file content
+     * @param length expected content length in bytes or negative number if it is unknown
+     * @param engine {@link TransferEngine} used if the content is saved to a local file
+     * @return number of saved bytes
+     * @throws IOException if reading or saving failed
+     */
+    default long write(InputStream source, long length, TransferEngine engine) throws IOException {
+        return write(source, length, engine, ChecksumAlgorithm.NONE);
+    }
+
+    /**
+     * Save all bytes from {@code source} replacing the previous content and compute their checksum on the way.
+     *
+     * @param source    {@link InputStream} with file content
+     * @param length    expected content length in bytes or negative number if it is unknown
+     * @param engine    {@link TransferEngine} used if the content is saved to a local file
+     * @param algorithm {@link ChecksumAlgorithm} of the checksum of the content
+     * @return number of saved bytes
+     * @throws IOException if reading or saving failed
+     * @see #getChecksum()
+     */
+    long write(InputStream source, long length, TransferEngine engine, ChecksumAlgorithm algorithm)
+            throws IOException;
+
+    /**
+     * @return {@link FileChecksum} of the content computed while it was saved,
+     * {@code null} if nothing was saved yet
+     */
+    FileChecksum getChecksum();
+
+    /**
+     * @return new {@link InputStream} reading the spooled content from the beginning
+     * @throws IOException if the content can not be opened
+     */
+    InputStream openStream() throws IOException;
+
+    @Override
+    void close();
+}
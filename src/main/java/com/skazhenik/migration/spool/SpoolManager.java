@@ -0,0 +1,200 @@
+package com.skazhenik.migration.spool;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the local storage used for spooled files by the number of files and the number of bytes.
+ * Every spooled file holds a {@link Reservation} while it is stored locally. If there is not enough
+ * quota left, {@link #reserve(long)} blocks until other files release their reservations.
+ * A single file larger than the byte quota is admitted only when nothing else is spooled,
+ * so it can not block the migration forever. Waiting is done on a {@link ReentrantLock}, which does not pin
+ * virtual threads to their carriers.
+ * <p>
+ * If a {@link BufferPool} is given, files that fit into its buffers are kept in off-heap memory
+ * and do not count against the quota. Larger files and files that do not get a free buffer
+ * are spilled to the temporary directory.
+ */
+public class SpoolManager {
+    /**
+     * Number of bytes reserved for a file whose length is unknown.
+     */
+    public static final long DEFAULT_ESTIMATE = 1024 * 1024;
+
+    private final int maxFiles;
+    private final long maxBytes;
+    private final long estimate;
+    private final BufferPool bufferPool;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private int reservedFiles = 0;
+    private long reservedBytes = 0;
+
+    /**
+     * Reserved local storage for one spooled file. Closing it returns the quota to the manager.
+     */
+    public class Reservation implements AutoCloseable {
+        private long bytes;
+        private boolean closed = false;
+
+        private Reservation(final long bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return number of reserved bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Corrects the reservation to the actual size of the spooled file. Never blocks:
+         * the bytes are already on the disk, so they are accounted even if they exceed the quota.
+         *
+         * @param actualBytes actual file size in bytes
+         */
+        public void adjust(final long actualBytes) {
+            lock.lock();
+            try {
+                if (!closed) {
+                    reservedBytes += actualBytes - bytes;
+                    bytes = actualBytes;
+                    released.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (!closed) {
+                    closed = true;
+                    reservedFiles--;
+                    reservedBytes -= bytes;
+                    released.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Creates a manager with the given quota and the memory tier.
+     *
+     * @param maxFiles   maximum number of simultaneously spooled files
+     * @param maxBytes   maximum number of simultaneously spooled bytes
+     * @param estimate   number of bytes reserved for a file whose length is unknown
+     * @param bufferPool {@link BufferPool} for small files or {@code null} to spool all files to the disk
+     */
+    public SpoolManager(final int maxFiles, final long maxBytes, final long estimate, final BufferPool bufferPool) {
+        if (maxFiles <= 0 || maxBytes <= 0 || estimate < 0) {
+            throw new IllegalArgumentException("Spool quota must be positive");
+        }
+        this.maxFiles = maxFiles;
+        this.maxBytes = maxBytes;
+        this.estimate = estimate;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Creates a manager with the given quota which spools all files to the disk.
+     *
+     * @param maxFiles maximum number of simultaneously spooled files
+     * @param maxBytes maximum number of simultaneously spooled bytes
+     * @param estimate number of bytes reserved for a file whose length is unknown
+     */
+    public SpoolManager(final int maxFiles, final long maxBytes, final long estimate) {
+        this(maxFiles, maxBytes, estimate, null);
+    }
+
+    /**
+     * Creates a manager with the given quota reserving {@link #DEFAULT_ESTIMATE} bytes for files of unknown length.
+     *
+     * @param maxFiles maximum number of simultaneously spooled files
+     * @param maxBytes maximum number of simultaneously spooled bytes
+     */
+    public SpoolManager(final int maxFiles, final long maxBytes) {
+        this(maxFiles, maxBytes, DEFAULT_ESTIMATE);
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if a file of {@code bytes} may be spooled now, must be called with the lock held
+     */
+    private boolean fits(final long bytes) {
+        return reservedFiles == 0 || (reservedFiles < maxFiles && reservedBytes + bytes <= maxBytes);
+    }
+
+    /**
+     * Reserves local storage for one file, waiting until enough quota is released.
+     *
+     * @param length file length in bytes or negative number if it is unknown
+     * @return {@link Reservation} which must be closed when the file is removed
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public Reservation reserve(final long length) throws InterruptedException {
+        final long bytes = length < 0 ? estimate : length;
+        lock.lock();
+        try {
+            while (!fits(bytes)) {
+                released.await();
+            }
+            reservedFiles++;
+            reservedBytes += bytes;
+            return new Reservation(bytes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Allocates a {@link Spool} for one file. A file of known length that fits into a buffer of
+     * the {@link BufferPool} gets a {@link MemorySpool} if the memory limit allows it,
+     * otherwise a {@link FileSpool} is created waiting for the quota if necessary.
+     *
+     * @param tempDir  directory for storing temporary data
+     * @param fileName file name
+     * @param length   file length in bytes or negative number if it is unknown
+     * @return empty {@link Spool}, must be closed when the file is no longer needed
+     * @throws InterruptedException if the thread was interrupted while waiting for the quota
+     */
+    public Spool allocate(final Path tempDir, final String fileName, final long length) throws InterruptedException {
+        if (bufferPool != null && length >= 0 && length <= bufferPool.getBufferSize()) {
+            final ByteBuffer buffer = bufferPool.tryAcquire();
+            if (buffer != null) {
+                return new MemorySpool(fileName, buffer, bufferPool);
+            }
+        }
+        return new FileSpool(tempDir.resolve(fileName), reserve(length));
+    }
+
+    /**
+     * @return number of files currently spooled to the disk
+     */
+    public int getReservedFiles() {
+        lock.lock();
+        try {
+            return reservedFiles;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of currently reserved bytes
+     */
+    public long getReservedBytes() {
+        lock.lock();
+        try {
+            return reservedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
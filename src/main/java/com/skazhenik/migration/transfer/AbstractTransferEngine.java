@@ -0,0 +1,32 @@
+package com.skazhenik.migration.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Base {@link TransferEngine} that writes content into a {@link FileChannel}.
+ * The target file is created or truncated and then filled sequentially from zero position.
+ */
+public abstract class AbstractTransferEngine implements TransferEngine {
+    /**
+     * Copy all bytes from {@code source} to {@code channel} starting from zero position.
+     *
+     * @param source  {@link InputStream} with file content
+     * @param channel {@link FileChannel} of the local file
+     * @param length  expected content length in bytes or negative number if it is unknown
+     * @return number of copied bytes
+     * @throws IOException if reading or writing failed
+     */
+    protected abstract long copy(InputStream source, FileChannel channel, long length) throws IOException;
+
+    @Override
+    public long transfer(final InputStream source, final Path target, final long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            return copy(source, channel, length);
+        }
+    }
+}
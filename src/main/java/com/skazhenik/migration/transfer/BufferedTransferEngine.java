@@ -0,0 +1,47 @@
+package com.skazhenik.migration.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link TransferEngine} that copies content through a large buffer.
+ * Every thread reuses its own buffer, so no memory is allocated per file.
+ */
+public class BufferedTransferEngine extends AbstractTransferEngine {
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    private final ThreadLocal<ByteBuffer> buffers;
+
+    /**
+     * Creates an engine with buffers of {@code bufferSize} bytes.
+     *
+     * @param bufferSize size of the per thread buffer
+     */
+    public BufferedTransferEngine(final int bufferSize) {
+        buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(bufferSize));
+    }
+
+    /**
+     * Creates an engine with buffers of {@link #DEFAULT_BUFFER_SIZE} bytes.
+     */
+    public BufferedTransferEngine() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    protected long copy(final InputStream source, final FileChannel channel, final long length) throws IOException {
+        final ByteBuffer buffer = buffers.get();
+        final byte[] array = buffer.array();
+        long copied = 0;
+        int read;
+        while ((read = source.read(array, 0, array.length)) != -1) {
+            buffer.clear().limit(read);
+            while (buffer.hasRemaining()) {
+                copied += channel.write(buffer, copied);
+            }
+        }
+        return copied;
+    }
+}
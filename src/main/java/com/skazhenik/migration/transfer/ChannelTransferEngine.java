@@ -0,0 +1,27 @@
+package com.skazhenik.migration.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * {@link TransferEngine} that copies content with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)},
+ * leaving the choice of the copy strategy to the JDK.
+ */
+public class ChannelTransferEngine extends AbstractTransferEngine {
+    private static final long CHUNK_SIZE = 8 * 1024 * 1024;
+
+    @Override
+    protected long copy(final InputStream source, final FileChannel channel, final long length) throws IOException {
+        final ReadableByteChannel sourceChannel = Channels.newChannel(source);
+        long copied = 0;
+        long transferred;
+        // a blocking stream never reads zero bytes, so zero transferred bytes mean the end of stream
+        while ((transferred = channel.transferFrom(sourceChannel, copied, CHUNK_SIZE)) > 0) {
+            copied += transferred;
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,21 @@
+package com.skazhenik.migration.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Copies downloaded file content from the network stream to the local file.
+ */
+public interface TransferEngine {
+    /**
+     * Copy all bytes from {@code source} to {@code target}. The target file is created or truncated.
+     *
+     * @param source {@link InputStream} with file content
+     * @param target {@link Path} to the local file
+     * @param length expected content length in bytes or negative number if it is unknown
+     * @return number of copied bytes
+     * @throws IOException if reading or writing failed
+     */
+    long transfer(InputStream source, Path target, long length) throws IOException;
+}
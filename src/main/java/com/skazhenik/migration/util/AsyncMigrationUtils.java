@@ -0,0 +1,190 @@
+package com.skazhenik.migration.util;
+
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.retry.RetryPolicy;
+import com.skazhenik.migration.service.AsyncStorageService;
+import org.apache.http.HttpStatus;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Provides the same methods as {@link MigrationUtils} for {@link AsyncStorageService}.
+ * Failed requests are repeated after the delay of the {@link RetryPolicy} passed by the caller
+ * without a thread waiting for them. Returned futures complete exceptionally with {@link MigrationException}
+ * if it was not possible to get a successful response in the attempts allowed by the policy.
+ */
+public class AsyncMigrationUtils {
+    /**
+     * @param e exception completing a future
+     * @return the exception itself or its cause if it is a {@link CompletionException}
+     */
+    private static Exception unwrap(final Throwable e) {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof Exception ? (Exception) cause : new CompletionException(cause);
+    }
+
+    /**
+     * Starts the next attempt of an operation after the delay of the {@link RetryPolicy}.
+     *
+     * @param attempt number of the failed attempt starting from 1
+     * @param e       exception of the failed attempt
+     * @param message message of the exception if the operation must fail
+     * @param next    starts the next attempt
+     * @param policy  {@link RetryPolicy} of the operation
+     * @param <T>     result type
+     * @return {@link CompletableFuture} of the next attempt
+     */
+    private static <T> CompletableFuture<T> backOff(final int attempt,
+                                                    final Throwable e,
+                                                    final String message,
+                                                    final Supplier<CompletableFuture<T>> next,
+                                                    final RetryPolicy policy) {
+        final Exception cause = unwrap(e);
+        final long delay = policy.getDelay(attempt, cause);
+        if (delay < 0) {
+            return CompletableFuture.failedFuture(new MigrationException(message, cause));
+        }
+        final Executor executor = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(next, executor).thenCompose(Function.identity());
+    }
+
+    /**
+     * @param e exception completing a future
+     * @return response code of the {@link ServiceException} cause or {@code -1} if there is none
+     */
+    private static int getResponseCode(final Throwable e) {
+        final Throwable cause = unwrap(e);
+        return cause instanceof ServiceException ? ((ServiceException) cause).getResponseCode() : -1;
+    }
+
+    /**
+     * Repeats {@code request} until it completes successfully.
+     *
+     * @param request starts a new attempt
+     * @param attempt number of the attempt starting from 1
+     * @param message message of the exception if all attempts failed
+     * @param policy  {@link RetryPolicy} of the operation
+     * @param <T>     result type
+     * @return {@link CompletableFuture} of the first successful result
+     */
+    private static <T> CompletableFuture<T> attempt(final Supplier<CompletableFuture<T>> request,
+                                                    final int attempt,
+                                                    final String message,
+                                                    final RetryPolicy policy) {
+        if (attempt == 1) {
+            policy.onRequest();
+        }
+        return request.get().handle((result, e) -> {
+            if (e == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            return backOff(attempt, e, message, () -> attempt(request, attempt + 1, message, policy), policy);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Method attempts to get a list of files in the storage.
+     *
+     * @param service     service for interacting with storage
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link CompletableFuture} of the {@link List} of file names from the storage
+     */
+    public static CompletableFuture<List<String>> getFilesList(final AsyncStorageService service,
+                                                               final RetryPolicy retryPolicy) {
+        return attempt(service::getFilesList, 1,
+                "Waiting too long for the correct response to the file list request", retryPolicy);
+    }
+
+    /**
+     * Method attempts to download file from the storage and save it in {@code tempDir}.
+     *
+     * @param service     service for interacting with storage
+     * @param tempDir     directory for storing temporary data
+     * @param fileName    file name to download
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link CompletableFuture} of the downloaded file {@link Path}
+     */
+    public static CompletableFuture<Path> downloadFile(final AsyncStorageService service,
+                                                       final Path tempDir,
+                                                       final String fileName,
+                                                       final RetryPolicy retryPolicy) {
+        return attempt(() -> service.download(tempDir, fileName), 1,
+                "Waiting too long for the correct response to the file download request", retryPolicy);
+    }
+
+    /**
+     * Method attempts to upload file to the storage. If the return code matches {@link HttpStatus#SC_CONFLICT}
+     * then the existing file is deleted and the upload is repeated without spending an attempt,
+     * as {@link MigrationUtils#uploadFile(com.skazhenik.migration.service.AbstractStorageService, java.io.File,
+     * String, RetryPolicy)} does.
+     *
+     * @param service     service for interacting with storage
+     * @param fileName    file name to upload
+     * @param file        {@link Path} to the local file
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link CompletableFuture} completed when the file is uploaded
+     */
+    public static CompletableFuture<Void> uploadFile(final AsyncStorageService service,
+                                                     final String fileName,
+                                                     final Path file,
+                                                     final RetryPolicy retryPolicy) {
+        return uploadFile(service, fileName, file, 1, retryPolicy);
+    }
+
+    private static CompletableFuture<Void> uploadFile(final AsyncStorageService service,
+                                                      final String fileName,
+                                                      final Path file,
+                                                      final int attempt,
+                                                      final RetryPolicy retryPolicy) {
+        if (attempt == 1) {
+            retryPolicy.onRequest();
+        }
+        return service.upload(fileName, file).handle((result, e) -> {
+            if (e == null) {
+                return CompletableFuture.<Void>completedFuture(null);
+            }
+            if (getResponseCode(e) == HttpStatus.SC_CONFLICT) {
+                return deleteFile(service, fileName, retryPolicy).handle((deleted, eDelete) -> {
+                    if (eDelete != null) {
+                        final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        cause.addSuppressed(eDelete instanceof CompletionException ? eDelete.getCause() : eDelete);
+                        return CompletableFuture.<Void>failedFuture(
+                                new MigrationException("Unable to upload file ", cause));
+                    }
+                    return uploadFile(service, fileName, file, attempt, retryPolicy);
+                }).thenCompose(Function.identity());
+            }
+            return backOff(attempt, e, "Waiting too long for the correct response to the file upload request",
+                    () -> uploadFile(service, fileName, file, attempt + 1, retryPolicy), retryPolicy);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Method attempts to delete file from the storage. {@link HttpStatus#SC_NOT_FOUND} is not considered
+     * a mistake and is regarded as the successful execution of the method.
+     *
+     * @param service     service for interacting with storage
+     * @param fileName    file name to delete
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link CompletableFuture} completed when the file is deleted
+     */
+    public static CompletableFuture<Void> deleteFile(final AsyncStorageService service,
+                                                     final String fileName,
+                                                     final RetryPolicy retryPolicy) {
+        return attempt(() -> service.delete(fileName).exceptionally(e -> {
+            if (getResponseCode(e) == HttpStatus.SC_NOT_FOUND) {
+                return null;
+            }
+            throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+        }), 1,
+                "Waiting too long for the correct response to the file delete request", retryPolicy);
+    }
+}
@@ -1,62 +1,456 @@
 package com.skazhenik.migration.util;
 
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.checksum.ChecksumInputStream;
+import com.skazhenik.migration.checksum.FileChecksum;
+import com.skazhenik.migration.event.RetryEvent;
 import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.exception.RetryDeferredException;
 import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.retry.RetryPolicy;
 import com.skazhenik.migration.service.AbstractStorageService;
+import com.skazhenik.migration.service.FileContent;
+import com.skazhenik.migration.service.Operation;
+import com.skazhenik.migration.spool.Spool;
+import com.skazhenik.migration.spool.SpoolManager;
 import org.apache.http.HttpStatus;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 /**
  * Provides methods of interacting with a server with multiple attempts to obtain a result in case of failure.
+ * Whether and when a failed request is attempted again is decided by the {@link RetryPolicy} passed
+ * by the caller, usually one policy shared by all operations of a migration. With a deferred policy the methods
+ * make one attempt and leave the retry to the caller, see {@link RetryPolicy#isDeferred()}.
  */
 public class MigrationUtils {
-    private static final int UnsuccessfulRequestCount = 100;
+    private static final int COMPARE_BUFFER_SIZE = 64 * 1024;
+    private static final long DRAIN_LIMIT = 64 * 1024;
+
+    /**
+     * Waits before the next attempt of an operation as the {@link RetryPolicy} requires, the retry of a deferred
+     * policy is not waited for, the operation ends with {@link RetryDeferredException} instead.
+     * The retry is counted in the metrics of the {@code service} and recorded as a {@link RetryEvent}.
+     *
+     * @param service   service whose request failed
+     * @param operation {@link Operation} of the failed request
+     * @param fileName  name of the file of the operation, {@code null} for the list of files
+     * @param attempt   number of the failed attempt starting from 1
+     * @param e         exception of the failed attempt
+     * @param message   message of the exception if the operation must fail
+     * @param policy    {@link RetryPolicy} of the operation
+     * @throws MigrationException if the policy does not allow another attempt or the thread was interrupted
+     * @see AbstractStorageService#getMetrics()
+     * @see RetryPolicy#isDeferred()
+     */
+    static void backOff(final AbstractStorageService service,
+                        final Operation operation,
+                        final String fileName,
+                        final int attempt,
+                        final Exception e,
+                        final String message,
+                        final RetryPolicy policy) throws MigrationException {
+        final RetryEvent event = new RetryEvent();
+        event.begin();
+        final long delay = policy.getDelay(attempt, e);
+        final int responseCode = e instanceof ServiceException ? ((ServiceException) e).getResponseCode() : 0;
+        if (delay < 0) {
+            event.commit(service.getClass().getSimpleName(), operation.name(), fileName, attempt, responseCode,
+                    e.getMessage(), true);
+            throw new MigrationException(message, e);
+        }
+        service.getMetrics().retried(operation.name());
+        if (policy.isDeferred()) {
+            event.commit(service.getClass().getSimpleName(), operation.name(), fileName, attempt, responseCode,
+                    e.getMessage(), false);
+            throw new RetryDeferredException(message, e, delay);
+        }
+        try {
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+        } catch (InterruptedException eSleep) {
+            Thread.currentThread().interrupt();
+            throw new MigrationException("Interrupted while waiting for the next attempt", e);
+        } finally {
+            event.commit(service.getClass().getSimpleName(), operation.name(), fileName, attempt, responseCode,
+                    e.getMessage(), false);
+        }
+    }
 
     /**
      * Method attempts to get a list of files in the storage.
      *
-     * @param service service for interacting with storage
+     * @param service     service for interacting with storage
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
      * @return {@link List} of of file names from the storage
      * @throws MigrationException if it was not possible to get a
-     *                            successful response in {@link #UnsuccessfulRequestCount} attempts
+     *                            successful response in the attempts allowed by the {@link RetryPolicy}
      */
-    public static List<String> getFilesList(final AbstractStorageService service) throws MigrationException {
-        int remainingAttempts = UnsuccessfulRequestCount;
-        while (remainingAttempts > 0) {
+    public static List<String> getFilesList(final AbstractStorageService service,
+                                            final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        for (int attempt = 1; ; attempt++) {
             try {
                 return service.getFilesList();
             } catch (ServiceException e) {
-                remainingAttempts--;
+                backOff(service, Operation.LIST, null, attempt, e,
+                        "Waiting too long for the correct response to the file list request", retryPolicy);
+            }
+        }
+    }
+
+    /**
+     * Method attempts to request the list of files in the storage. A response broken while the names
+     * are read is requested again by the returned iterator, which skips the names it already yielded.
+     *
+     * @param service     service for interacting with storage
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link RetryingFileListIterator} of file names from the storage
+     * @throws MigrationException if it was not possible to get a
+     *                            successful response in the attempts allowed by the {@link RetryPolicy}
+     */
+    public static RetryingFileListIterator listFiles(final AbstractStorageService service,
+                                                     final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return new RetryingFileListIterator(service, retryPolicy, service.listFiles());
+            } catch (ServiceException e) {
+                backOff(service, Operation.LIST, null, attempt, e,
+                        "Waiting too long for the correct response to the file list request", retryPolicy);
             }
         }
-        throw new MigrationException("Waiting too long for the correct response to the file list request");
     }
 
     /**
      * Method attempts to download file from the storage and save it in {@code tempDir}.
      *
-     * @param service  service for interacting with storage
-     * @param tempDir  directory for storing temporary data
-     * @param fileName file name to download
+     * @param service     service for interacting with storage
+     * @param tempDir     directory for storing temporary data
+     * @param fileName    file name to download
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
      * @throws MigrationException if it was not possible to get a
-     *                            successful response in {@link #UnsuccessfulRequestCount} attempts
+     *                            successful response in the attempts allowed by the {@link RetryPolicy}
      */
     public static void downloadFile(final AbstractStorageService service,
                                     final Path tempDir,
-                                    final String fileName) throws MigrationException {
-        int remainingAttempts = UnsuccessfulRequestCount;
-        while (remainingAttempts > 0) {
+                                    final String fileName,
+                                    final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        for (int attempt = 1; ; attempt++) {
             try {
                 service.download(tempDir, fileName);
                 return;
             } catch (ServiceException e) {
-                remainingAttempts--;
+                backOff(service, Operation.DOWNLOAD, fileName, attempt, e,
+                        "Waiting too long for the correct response to the file download request", retryPolicy);
+            }
+        }
+    }
+
+    /**
+     * Method attempts to download file from the storage and spool it within the quota of {@code spoolManager}.
+     * The spool is allocated as soon as the file length is known from the response,
+     * waiting for the quota if necessary.
+     *
+     * @param service      service for interacting with storage
+     * @param tempDir      directory for storing temporary data
+     * @param fileName     file name to download
+     * @param spoolManager {@link SpoolManager} allocating local storage
+     * @param retryPolicy  {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link Spool} with the file content, must be closed after the file is uploaded
+     * @throws MigrationException   if it was not possible to get a
+     *                              successful response in the attempts allowed by the {@link RetryPolicy}
+     * @throws InterruptedException if the thread was interrupted while waiting for the quota
+     */
+    public static Spool downloadFile(final AbstractStorageService service,
+                                     final Path tempDir,
+                                     final String fileName,
+                                     final SpoolManager spoolManager,
+                                     final RetryPolicy retryPolicy)
+            throws MigrationException, InterruptedException {
+        return downloadFile(service, tempDir, fileName, spoolManager, ChecksumAlgorithm.NONE, retryPolicy);
+    }
+
+    /**
+     * Method attempts to download file from the storage and spool it within the quota of {@code spoolManager}
+     * computing the checksum of the content while it is spooled.
+     *
+     * @param service      service for interacting with storage
+     * @param tempDir      directory for storing temporary data
+     * @param fileName     file name to download
+     * @param spoolManager {@link SpoolManager} allocating local storage
+     * @param algorithm    {@link ChecksumAlgorithm} of the checksum kept by the spool
+     * @param retryPolicy  {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link Spool} with the file content, must be closed after the file is uploaded
+     * @throws MigrationException   if it was not possible to get a
+     *                              successful response in the attempts allowed by the {@link RetryPolicy}
+     * @throws InterruptedException if the thread was interrupted while waiting for the quota
+     * @see Spool#getChecksum()
+     */
+    public static Spool downloadFile(final AbstractStorageService service,
+                                     final Path tempDir,
+                                     final String fileName,
+                                     final SpoolManager spoolManager,
+                                     final ChecksumAlgorithm algorithm,
+                                     final RetryPolicy retryPolicy)
+            throws MigrationException, InterruptedException {
+        retryPolicy.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            Spool spool = null;
+            try (FileContent content = service.open(fileName)) {
+                spool = spoolManager.allocate(tempDir, fileName, content.getLength());
+                service.download(content, spool, algorithm);
+                return spool;
+            } catch (ServiceException | IOException e) {
+                if (spool != null) {
+                    spool.close();
+                }
+                backOff(service, Operation.DOWNLOAD, fileName, attempt, e,
+                        "Waiting too long for the correct response to the file download request", retryPolicy);
+            }
+        }
+    }
+
+    /**
+     * Method attempts to stream file from the {@code source} storage directly into the {@code target} storage
+     * without saving it locally. Only opening of the file is repeated on failure, because the content of
+     * a failed upload is already consumed and can not be sent again.
+     *
+     * @param source      service for interacting with storage to download from
+     * @param target      service for interacting with storage to upload to
+     * @param fileName    file name to transfer
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link Boolean#TRUE} if the file was transferred, {@link Boolean#FALSE} if the upload failed
+     * and the file has to be transferred with replayable content
+     * @throws MigrationException if it was not possible to get a
+     *                            successful response in the attempts allowed by the {@link RetryPolicy}
+     */
+    public static boolean streamFile(final AbstractStorageService source,
+                                     final AbstractStorageService target,
+                                     final String fileName,
+                                     final RetryPolicy retryPolicy) throws MigrationException {
+        return streamFile(source, target, fileName, ChecksumAlgorithm.NONE, retryPolicy) != null;
+    }
+
+    /**
+     * Method attempts to stream file from the {@code source} storage directly into the {@code target} storage
+     * computing the checksum of the content as it is sent.
+     *
+     * @param source      service for interacting with storage to download from
+     * @param target      service for interacting with storage to upload to
+     * @param fileName    file name to transfer
+     * @param algorithm   {@link ChecksumAlgorithm} of the checksum
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link FileChecksum} of the sent content, {@code null} if the upload failed
+     * and the file has to be transferred with replayable content
+     * @throws MigrationException if it was not possible to get a
+     *                            successful response in the attempts allowed by the {@link RetryPolicy}
+     * @see #streamFile(AbstractStorageService, AbstractStorageService, String, RetryPolicy)
+     */
+    public static FileChecksum streamFile(final AbstractStorageService source,
+                                          final AbstractStorageService target,
+                                          final String fileName,
+                                          final ChecksumAlgorithm algorithm,
+                                          final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            try (FileContent content = source.open(fileName)) {
+                final ChecksumInputStream input = new ChecksumInputStream(content.getInputStream(), algorithm);
+                try {
+                    target.upload(fileName, input, content.getLength());
+                    return input.getChecksum();
+                } catch (ServiceException e) {
+                    return null;
+                }
+            } catch (ServiceException | IOException e) {
+                backOff(source, Operation.DOWNLOAD, fileName, attempt, e,
+                        "Waiting too long for the correct response to the file download request", retryPolicy);
+            }
+        }
+    }
+
+    /**
+     * Method attempts to read the file back from the storage and compare the checksum of the stored content
+     * with {@code expected}. The content is hashed as it is received and is not kept.
+     *
+     * @param service     service for interacting with storage
+     * @param fileName    file name to verify
+     * @param expected    {@link FileChecksum} of the content sent to the storage
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @throws MigrationException if the checksums do not match or it was not possible to get
+     *                            a successful response in the attempts allowed by the {@link RetryPolicy}
+     */
+    public static void verifyFile(final AbstractStorageService service,
+                                  final String fileName,
+                                  final FileChecksum expected,
+                                  final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            final FileChecksum actual;
+            try (FileContent content = service.open(fileName);
+                 ChecksumInputStream input = new ChecksumInputStream(content.getInputStream(),
+                         expected.getAlgorithm())) {
+                input.transferTo(OutputStream.nullOutputStream());
+                actual = input.getChecksum();
+            } catch (ServiceException | IOException e) {
+                backOff(service, Operation.DOWNLOAD, fileName, attempt, e,
+                        "Waiting too long for the correct response to the file verify request", retryPolicy);
+                continue;
+            }
+            if (!expected.equals(actual)) {
+                throw new MigrationException("Stored file " + fileName + " does not match the sent one: expected "
+                        + expected + ", stored " + actual);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Method attempts to get the length of the file from the response of the storage. The content of a short file
+     * is read, so the connection is released to the pool, the connection of a longer one is aborted.
+     *
+     * @param service     service for interacting with storage
+     * @param fileName    file name
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return file length in bytes or negative number if it is unknown
+     * @throws MigrationException if it was not possible to get a
+     *                            successful response in the attempts allowed by the {@link RetryPolicy}
+     */
+    public static long getFileLength(final AbstractStorageService service,
+                                     final String fileName,
+                                     final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            try (FileContent content = service.open(fileName)) {
+                drain(content);
+                return content.getLength();
+            } catch (ServiceException | IOException e) {
+                backOff(service, Operation.DOWNLOAD, fileName, attempt, e,
+                        "Waiting too long for the correct response to the file download request", retryPolicy);
+            }
+        }
+    }
+
+    /**
+     * Method attempts to compare the copies of a file in two storages.
+     *
+     * @param source         service for interacting with storage to download from
+     * @param target         service for interacting with storage to upload to
+     * @param fileName       file name to compare
+     * @param compareContent whether to compare the contents of the copies of the same length
+     * @param retryPolicy    {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link Boolean#TRUE} if the copies are the same or the copy in the {@code source} storage is missing
+     * @throws MigrationException if it was not possible to get a successful response in the attempts allowed
+     *                            by the {@link RetryPolicy}
+     * @see #isSameFile(AbstractStorageService, AbstractStorageService, String, boolean, LongConsumer, RetryPolicy)
+     */
+    public static boolean isSameFile(final AbstractStorageService source,
+                                     final AbstractStorageService target,
+                                     final String fileName,
+                                     final boolean compareContent,
+                                     final RetryPolicy retryPolicy) throws MigrationException {
+        return isSameFile(source, target, fileName, compareContent, length -> {
+        }, retryPolicy);
+    }
+
+    /**
+     * Method attempts to compare the copies of a file in two storages. The lengths of the copies are taken from
+     * the responses, and if they are equal and {@code compareContent} is set, the contents are read and compared.
+     * The length of the {@code source} copy is passed to {@code sourceLength}, so it need not be requested again.
+     *
+     * @param source         service for interacting with storage to download from
+     * @param target         service for interacting with storage to upload to
+     * @param fileName       file name to compare
+     * @param compareContent whether to compare the contents of the copies of the same length
+     * @param sourceLength   called with the length of the {@code source} copy, negative if it is unknown
+     * @param retryPolicy    {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @return {@link Boolean#TRUE} if the copies are the same or the copy in the {@code source} storage is missing,
+     * so the file was migrated already, {@link Boolean#FALSE} if they differ, the copy in the {@code target}
+     * storage is missing, or the length is unknown and the content is not compared
+     * @throws MigrationException if it was not possible to get a successful response in the attempts allowed
+     *                            by the {@link RetryPolicy}
+     */
+    public static boolean isSameFile(final AbstractStorageService source,
+                                     final AbstractStorageService target,
+                                     final String fileName,
+                                     final boolean compareContent,
+                                     final LongConsumer sourceLength,
+                                     final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        for (int attempt = 1; ; attempt++) {
+            try (FileContent sourceContent = source.open(fileName)) {
+                sourceLength.accept(sourceContent.getLength());
+                try (FileContent targetContent = target.open(fileName)) {
+                    final long length = sourceContent.getLength();
+                    if (compareContent && length == targetContent.getLength()) {
+                        return contentEquals(sourceContent.getInputStream(), targetContent.getInputStream());
+                    }
+                    drain(sourceContent);
+                    drain(targetContent);
+                    return length >= 0 && length == targetContent.getLength();
+                } catch (ServiceException e) {
+                    if (e.getResponseCode() == HttpStatus.SC_NOT_FOUND) {
+                        return false;
+                    }
+                    throw e;
+                }
+            } catch (ServiceException e) {
+                // a missing target copy was handled above, the source copy was deleted after the upload
+                if (e.getResponseCode() == HttpStatus.SC_NOT_FOUND) {
+                    return true;
+                }
+                backOff(source, Operation.DOWNLOAD, fileName, attempt, e,
+                        "Waiting too long for the correct response to the file download request", retryPolicy);
+            } catch (IOException e) {
+                backOff(source, Operation.DOWNLOAD, fileName, attempt, e,
+                        "Waiting too long for the correct response to the file download request", retryPolicy);
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of a short content, so closing it releases the connection to the pool.
+     * A longer content is left unread, aborting its connection costs less than receiving it.
+     *
+     * @param content {@link FileContent} nothing was read from
+     * @throws IOException if the content can not be read
+     */
+    private static void drain(final FileContent content) throws IOException {
+        final long length = content.getLength();
+        if (length >= 0 && length <= DRAIN_LIMIT) {
+            content.getInputStream().transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * @param first  {@link InputStream} to compare
+     * @param second {@link InputStream} to compare
+     * @return {@link Boolean#TRUE} if both streams have the same content
+     * @throws IOException if a stream can not be read
+     */
+    private static boolean contentEquals(final InputStream first, final InputStream second) throws IOException {
+        final byte[] firstBuffer = new byte[COMPARE_BUFFER_SIZE];
+        final byte[] secondBuffer = new byte[COMPARE_BUFFER_SIZE];
+        while (true) {
+            final int firstRead = first.readNBytes(firstBuffer, 0, firstBuffer.length);
+            final int secondRead = second.readNBytes(secondBuffer, 0, secondBuffer.length);
+            if (firstRead != secondRead
+                    || !Arrays.equals(firstBuffer, 0, firstRead, secondBuffer, 0, secondRead)) {
+                return false;
+            }
+            if (firstRead < firstBuffer.length) {
+                return true;
             }
         }
-        throw new MigrationException("Waiting too long for the correct response to the file download request");
     }
 
     /**
@@ -64,60 +458,106 @@ public class MigrationUtils {
      * then the method considers it as an existing file and tries to overwrite it. In case of an erroneous assumption,
      * it throws an exception with a full description.
      *
-     * @param service  service for interacting with storage
-     * @param file     file to upload
-     * @param fileName file to upload
+     * @param service     service for interacting with storage
+     * @param file        file to upload
+     * @param fileName    file to upload
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
      * @throws MigrationException if it was not possible to get a
-     *                            successful response in {@link #UnsuccessfulRequestCount} attempts
+     *                            successful response in the attempts allowed by the {@link RetryPolicy}
      */
     public static void uploadFile(final AbstractStorageService service,
                                   final File file,
-                                  final String fileName) throws MigrationException {
-        int remainingAttempts = UnsuccessfulRequestCount;
-        while (remainingAttempts > 0) {
+                                  final String fileName,
+                                  final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        int attempt = 1;
+        while (true) {
             try {
                 service.upload(file);
                 return;
             } catch (ServiceException e) {
                 if (e.getResponseCode() == HttpStatus.SC_CONFLICT) {
                     try {
-                        deleteFile(service, fileName);
+                        deleteFile(service, fileName, retryPolicy);
+                    } catch (RetryDeferredException eDelete) {
+                        throw eDelete;
+                    } catch (MigrationException eDelete) {
+                        e.addSuppressed(eDelete);
+                        throw new MigrationException("Unable to upload file ", e);
+                    }
+                } else {
+                    backOff(service, Operation.UPLOAD, fileName, attempt++, e,
+                            "Waiting too long for the correct response to the file upload request", retryPolicy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method attempts to upload spooled file to the storage. Conflicts are resolved
+     * the same way as in {@link #uploadFile(AbstractStorageService, File, String, RetryPolicy)}.
+     *
+     * @param service     service for interacting with storage
+     * @param spool       {@link Spool} with the file content
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
+     * @throws MigrationException if it was not possible to get a
+     *                            successful response in the attempts allowed by the {@link RetryPolicy}
+     */
+    public static void uploadFile(final AbstractStorageService service,
+                                  final Spool spool,
+                                  final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        int attempt = 1;
+        while (true) {
+            try (InputStream inputStream = spool.openStream()) {
+                service.upload(spool.getFileName(), inputStream, spool.getLength());
+                return;
+            } catch (ServiceException e) {
+                if (e.getResponseCode() == HttpStatus.SC_CONFLICT) {
+                    try {
+                        deleteFile(service, spool.getFileName(), retryPolicy);
+                    } catch (RetryDeferredException eDelete) {
+                        throw eDelete;
                     } catch (MigrationException eDelete) {
                         e.addSuppressed(eDelete);
                         throw new MigrationException("Unable to upload file ", e);
                     }
                 } else {
-                    remainingAttempts--;
+                    backOff(service, Operation.UPLOAD, spool.getFileName(), attempt++, e,
+                            "Waiting too long for the correct response to the file upload request", retryPolicy);
                 }
+            } catch (IOException e) {
+                backOff(service, Operation.UPLOAD, spool.getFileName(), attempt++, e,
+                        "Waiting too long for the correct response to the file upload request", retryPolicy);
             }
         }
-        throw new MigrationException("Waiting too long for the correct response to the file upload request");
     }
 
     /**
      * Method attempts to delete file from the storage. {@link HttpStatus#SC_NOT_FOUND} is not considered
      * a mistake and is regarded as the successful execution of the method.
      *
-     * @param service  service for interacting with storage
-     * @param fileName file name to delete
+     * @param service     service for interacting with storage
+     * @param fileName    file name to delete
+     * @param retryPolicy {@link RetryPolicy} deciding whether and when a failed attempt is repeated
      * @throws MigrationException if it was not possible to get a
-     *                            successful response in {@link #UnsuccessfulRequestCount} attempts
+     *                            successful response in the attempts allowed by the {@link RetryPolicy}
      */
     public static void deleteFile(final AbstractStorageService service,
-                                  final String fileName) throws MigrationException {
-        int remainingAttempts = UnsuccessfulRequestCount;
-        while (remainingAttempts > 0) {
+                                  final String fileName,
+                                  final RetryPolicy retryPolicy) throws MigrationException {
+        retryPolicy.onRequest();
+        for (int attempt = 1; ; attempt++) {
             try {
                 service.delete(fileName);
                 return;
             } catch (ServiceException e) {
                 if (e.getResponseCode() == HttpStatus.SC_NOT_FOUND) {
                     return;
-                } else {
-                    remainingAttempts--;
                 }
+                backOff(service, Operation.DELETE, fileName, attempt, e,
+                        "Waiting too long for the correct response to the file delete request", retryPolicy);
             }
         }
-        throw new MigrationException("Waiting too long for the correct response to the file upload request");
     }
 }
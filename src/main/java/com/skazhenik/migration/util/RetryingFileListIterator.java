@@ -0,0 +1,117 @@
+package com.skazhenik.migration.util;
+
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.retry.RetryPolicy;
+import com.skazhenik.migration.service.AbstractStorageService;
+import com.skazhenik.migration.service.FileListIterator;
+import com.skazhenik.migration.service.FileNameStore;
+import com.skazhenik.migration.service.Operation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the file list of a storage as {@link FileListIterator} does, but when the response breaks
+ * part-way the list is requested again as the {@link RetryPolicy} allows. The migration deletes the files
+ * it was given, so the new list is shorter and can not be skipped by position: the names already yielded
+ * are kept in a {@link FileNameStore.Builder} and skipped by lookup in a copy of it.
+ * <p>
+ * When the policy gives up, {@link #hasNext()} and {@link #next()} throw {@link UncheckedIOException}.
+ */
+public class RetryingFileListIterator implements Iterator<String>, Closeable {
+    private static final String MESSAGE = "Waiting too long for the correct response to the file list request";
+
+    private final AbstractStorageService service;
+    private final RetryPolicy retryPolicy;
+    private final FileNameStore.Builder yielded = new FileNameStore.Builder();
+    private FileListIterator names;
+    private FileNameStore skipped;
+    private String next;
+
+    RetryingFileListIterator(final AbstractStorageService service,
+                             final RetryPolicy retryPolicy,
+                             final FileListIterator names) {
+        this.service = service;
+        this.retryPolicy = retryPolicy;
+        this.names = names;
+    }
+
+    @Override
+    public boolean hasNext() {
+        int attempt = 0;
+        while (next == null) {
+            try {
+                if (!names.hasNext()) {
+                    return false;
+                }
+                final String name = names.next();
+                attempt = 0;
+                if (skipped == null || !skipped.contains(name)) {
+                    yielded.add(name);
+                    next = name;
+                }
+            } catch (UncheckedIOException e) {
+                attempt = relist(attempt, e.getCause());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final String result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Requests the list again after the back-off, until a response is received.
+     *
+     * @param attempt number of attempts failed since a name was last read
+     * @param e       exception of the failed attempt
+     * @return number of attempts failed since a name was last read
+     * @throws UncheckedIOException if the {@link RetryPolicy} gives up or the thread was interrupted
+     */
+    private int relist(int attempt, final Exception e) {
+        closeQuietly();
+        Exception failure = e;
+        while (true) {
+            try {
+                MigrationUtils.backOff(service, Operation.LIST, null, ++attempt, failure, MESSAGE, retryPolicy);
+            } catch (MigrationException eRetry) {
+                throw new UncheckedIOException(new IOException(eRetry.getMessage(), eRetry));
+            }
+            try {
+                names = service.listFiles();
+                skipped = yielded.build();
+                return attempt;
+            } catch (ServiceException eList) {
+                failure = eList;
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            names.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Releases the connection, aborting it if the list has not been read to the end.
+     *
+     * @throws IOException if an error occurs while closing the response
+     */
+    @Override
+    public void close() throws IOException {
+        names.close();
+    }
+}
@@ -0,0 +1,22 @@
+package com.skazhenik.migration.loader;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executors of virtual threads, available only in the {@code java21} build profile.
+ *
+ * @see VirtualThreads
+ */
+public final class VirtualThreadExecutorFactory {
+    private VirtualThreadExecutorFactory() {
+    }
+
+    /**
+     * @return {@link ExecutorService} starting a new virtual thread for each task
+     * @see Executors#newVirtualThreadPerTaskExecutor()
+     */
+    public static ExecutorService newExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+}
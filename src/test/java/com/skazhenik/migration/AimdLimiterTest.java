@@ -0,0 +1,117 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.limit.AimdLimiter;
+import com.skazhenik.migration.limit.ConcurrencyLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+public class AimdLimiterTest {
+    private static final long RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static Deque<ConcurrencyLimiter.Permit> acquire(final AimdLimiter limiter, final int count) {
+        final Deque<ConcurrencyLimiter.Permit> permits = new ArrayDeque<>();
+        for (int i = 0; i < count; i++) {
+            final ConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+            Assert.assertNotNull(permit);
+            permits.add(permit);
+        }
+        return permits;
+    }
+
+    @Test
+    public void increaseTest() {
+        final AimdLimiter limiter = new AimdLimiter("test", 4, 1, 5, 0.5, 2);
+        final Deque<ConcurrencyLimiter.Permit> permits = acquire(limiter, 4);
+        Assert.assertNull(limiter.tryAcquire());
+        // the limit is fully used, so it grows by one per limit of successful requests
+        for (int i = 0; i < 4; i++) {
+            permits.remove().onSuccess(RTT_NANOS);
+            permits.add(limiter.tryAcquire());
+        }
+        Assert.assertEquals(4, limiter.getLimit());
+        permits.remove().onSuccess(RTT_NANOS);
+        Assert.assertEquals(5, limiter.getLimit());
+        permits.add(limiter.tryAcquire());
+        permits.add(limiter.tryAcquire());
+        Assert.assertNull(limiter.tryAcquire());
+        for (int i = 0; i < 100; i++) {
+            permits.remove().onSuccess(RTT_NANOS);
+            permits.add(limiter.tryAcquire());
+        }
+        Assert.assertEquals(5, limiter.getLimit());
+        permits.forEach(permit -> permit.onSuccess(RTT_NANOS));
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void unusedLimitTest() {
+        final AimdLimiter limiter = new AimdLimiter("test", 10, 1, 100, 0.5, 2);
+        for (int i = 0; i < 100; i++) {
+            acquire(limiter, 1).remove().onSuccess(RTT_NANOS);
+        }
+        Assert.assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void decreaseTest() {
+        final AimdLimiter limiter = new AimdLimiter("test", 10, 2, 100, 0.5, 2);
+        final Deque<ConcurrencyLimiter.Permit> permits = acquire(limiter, 10);
+        permits.remove().onDropped();
+        Assert.assertEquals(5, limiter.getLimit());
+        Assert.assertEquals(1, limiter.getDecreases());
+        // the rest of the burst started at the old limit is counted once
+        for (int i = 0; i < 3; i++) {
+            permits.remove().onDropped();
+        }
+        Assert.assertEquals(5, limiter.getLimit());
+        Assert.assertEquals(1, limiter.getDecreases());
+        permits.remove().onIgnore();
+        permits.remove().onDropped();
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertEquals(2, limiter.getDecreases());
+        for (int i = 0; i < 2; i++) {
+            permits.remove().onDropped();
+        }
+        Assert.assertEquals(3, limiter.getDecreases());
+        Assert.assertEquals(2, limiter.getLimit());
+        Assert.assertEquals(2, limiter.getInFlight());
+        Assert.assertNull(limiter.tryAcquire());
+        permits.forEach(ConcurrencyLimiter.Permit::onIgnore);
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void latencyTest() {
+        final AimdLimiter limiter = new AimdLimiter("test", 10, 1, 100, 0.5, 2);
+        for (int i = 0; i < 100; i++) {
+            acquire(limiter, 1).remove().onSuccess(RTT_NANOS);
+        }
+        Assert.assertEquals(0, limiter.getDecreases());
+        // requests queuing up at the endpoint raise the short-term latency above the long-term one
+        acquire(limiter, 1).remove().onSuccess(100 * RTT_NANOS);
+        Assert.assertEquals(5, limiter.getLimit());
+        Assert.assertEquals(1, limiter.getDecreases());
+    }
+
+    @Test
+    public void waitTest() throws InterruptedException {
+        final AimdLimiter limiter = new AimdLimiter("test", 1, 1, 1, 0.5, 2);
+        final ConcurrencyLimiter.Permit permit = limiter.acquire();
+        final Thread waiting = new Thread(() -> {
+            try {
+                limiter.acquire().onSuccess(RTT_NANOS);
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiting.start();
+        waiting.join(50);
+        Assert.assertTrue(waiting.isAlive());
+        permit.onSuccess(RTT_NANOS);
+        waiting.join();
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -1,7 +1,16 @@
 package com.skazhenik.migration;
 
+import com.skazhenik.migration.retry.BackoffRetryPolicy;
+import com.skazhenik.migration.retry.RetryPolicy;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.BindException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -10,11 +19,26 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Random;
 
 public class BaseTest {
+    // the services connect to the default port, which the simulator takes unless a faulty server runs there
+    protected static final StorageSimulator storage = startStorage();
     private final Random random = new Random();
     private final int ALPHABET_SIZE = 255;
     protected final Path tempLocation = Path.of("..");
     protected final int SMALL_TEST_SIZE = 100;
+    protected final RetryPolicy retryPolicy = new BackoffRetryPolicy();
+
 
+    private static StorageSimulator startStorage() {
+        try {
+            return new StorageSimulator(StorageSimulator.DEFAULT_PORT,
+                    new Dataset(1000, 0, 20_000, SizeDistribution.LOG_UNIFORM, 1),
+                    new FaultProfile(0.1, 0, 0, 0, 0, 0));
+        } catch (BindException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
     protected void generateRandomFile(final Path file, final int size) {
         try (BufferedWriter writer = Files.newBufferedWriter(file)) {
@@ -0,0 +1,79 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.checksum.ChecksumInputStream;
+import com.skazhenik.migration.checksum.FileChecksum;
+import com.skazhenik.migration.spool.BufferPool;
+import com.skazhenik.migration.spool.Spool;
+import com.skazhenik.migration.spool.SpoolManager;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Random;
+
+public class ChecksumTest extends BaseTest {
+    private static FileChecksum checksum(byte[] content, ChecksumAlgorithm algorithm) throws IOException {
+        try (ChecksumInputStream input = new ChecksumInputStream(new ByteArrayInputStream(content), algorithm)) {
+            input.transferTo(OutputStream.nullOutputStream());
+            return input.getChecksum();
+        }
+    }
+
+    @Test
+    public void checksumTest() throws IOException {
+        byte[] content = new byte[100_000];
+        new Random(42).nextBytes(content);
+        for (ChecksumAlgorithm algorithm : ChecksumAlgorithm.values()) {
+            FileChecksum checksum = checksum(content, algorithm);
+            Assert.assertEquals(checksum, checksum(content, algorithm));
+            Assert.assertEquals(content.length, checksum.getLength());
+            byte[] damaged = content.clone();
+            damaged[damaged.length / 2] ^= 1;
+            Assert.assertEquals(algorithm == ChecksumAlgorithm.NONE, checksum.equals(checksum(damaged, algorithm)));
+            Assert.assertNotEquals(checksum, checksum(new byte[content.length - 1], algorithm));
+        }
+        Assert.assertNotEquals(checksum(content, ChecksumAlgorithm.CRC32C), checksum(content, ChecksumAlgorithm.NONE));
+    }
+
+    @Test
+    public void skipTest() throws IOException {
+        byte[] content = "Alea jacta est".getBytes();
+        try (ChecksumInputStream input = new ChecksumInputStream(new ByteArrayInputStream(content),
+                ChecksumAlgorithm.SHA_256)) {
+            Assert.assertEquals(5, input.skip(5));
+            input.transferTo(OutputStream.nullOutputStream());
+            Assert.assertEquals(checksum(content, ChecksumAlgorithm.SHA_256), input.getChecksum());
+        }
+    }
+
+    @Test
+    public void spoolTest() throws IOException, InterruptedException {
+        Path dir = createDir();
+        Objects.requireNonNull(dir);
+        byte[] content = new byte[10_000];
+        new Random(7).nextBytes(content);
+        FileChecksum expected = checksum(content, ChecksumAlgorithm.CRC32C);
+        SpoolManager memory = new SpoolManager(2, 1024 * 1024, SpoolManager.DEFAULT_ESTIMATE,
+                new BufferPool(64 * 1024, 1024 * 1024));
+        SpoolManager files = new SpoolManager(2, 1024 * 1024);
+        for (SpoolManager manager : new SpoolManager[]{memory, files}) {
+            try (Spool spool = manager.allocate(dir, "file.bin", content.length)) {
+                Assert.assertNull(spool.getChecksum());
+                spool.write(new ByteArrayInputStream(content), content.length, new BufferedTransferEngine(),
+                        ChecksumAlgorithm.CRC32C);
+                Assert.assertEquals(expected, spool.getChecksum());
+                try (InputStream input = spool.openStream()) {
+                    Assert.assertArrayEquals(content, input.readAllBytes());
+                }
+            }
+        }
+        deleteDir(dir);
+    }
+}
@@ -0,0 +1,118 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.breaker.CircuitBreaker;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long OPEN_MILLIS = 20;
+
+    private static CircuitBreaker createBreaker(final int probes) {
+        return new CircuitBreaker("test", FAILURE_THRESHOLD, OPEN_MILLIS, probes);
+    }
+
+    private static void open(final CircuitBreaker breaker) {
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            breaker.tryAcquire().onFailure();
+        }
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void openTest() {
+        final CircuitBreaker breaker = createBreaker(1);
+        // only consecutive failures open the breaker
+        for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+            breaker.tryAcquire().onFailure();
+        }
+        breaker.tryAcquire().onSuccess();
+        for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+            breaker.tryAcquire().onFailure();
+        }
+        breaker.tryAcquire().onIgnore();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.tryAcquire().onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertEquals(1, breaker.getOpens());
+        Assert.assertNull(breaker.tryAcquire());
+    }
+
+    @Test
+    public void closeTest() throws InterruptedException {
+        final CircuitBreaker breaker = createBreaker(1);
+        open(breaker);
+        Thread.sleep(OPEN_MILLIS + 10);
+        final CircuitBreaker.Permit probe = breaker.tryAcquire();
+        Assert.assertNotNull(probe);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        Assert.assertNull(breaker.tryAcquire());
+        probe.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals(3, breaker.getTransitions());
+        Assert.assertNotNull(breaker.tryAcquire());
+    }
+
+    @Test
+    public void reopenTest() throws InterruptedException {
+        final CircuitBreaker breaker = createBreaker(2);
+        open(breaker);
+        Thread.sleep(OPEN_MILLIS + 10);
+        final CircuitBreaker.Permit first = breaker.tryAcquire();
+        final CircuitBreaker.Permit second = breaker.tryAcquire();
+        Assert.assertNotNull(first);
+        Assert.assertNotNull(second);
+        Assert.assertNull(breaker.tryAcquire());
+        first.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertEquals(2, breaker.getOpens());
+        // the outcome of a probe finished after the breaker opened again does not count
+        second.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertNull(breaker.tryAcquire());
+    }
+
+    @Test
+    public void probeAccountingTest() throws InterruptedException {
+        final CircuitBreaker breaker = createBreaker(1);
+        final CircuitBreaker.Permit stale = breaker.tryAcquire();
+        open(breaker);
+        // the outcome of a request started while the breaker was closed does not count
+        stale.onFailure();
+        Thread.sleep(OPEN_MILLIS + 10);
+        final CircuitBreaker.Permit ignored = breaker.tryAcquire();
+        Assert.assertNotNull(ignored);
+        Assert.assertNull(breaker.tryAcquire());
+        // an ignored probe only returns its slot
+        ignored.onIgnore();
+        ignored.onFailure();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        final CircuitBreaker.Permit probe = breaker.tryAcquire();
+        Assert.assertNotNull(probe);
+        probe.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals(1, breaker.getOpens());
+    }
+
+    @Test
+    public void waitTest() throws InterruptedException {
+        final CircuitBreaker breaker = createBreaker(1);
+        open(breaker);
+        final long start = System.nanoTime();
+        final CircuitBreaker.Permit probe = breaker.acquire();
+        Assert.assertTrue(System.nanoTime() - start >= OPEN_MILLIS * 1_000_000 / 2);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        final Thread waiting = new Thread(() -> {
+            try {
+                breaker.acquire().onSuccess();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiting.start();
+        waiting.join(50);
+        Assert.assertTrue(waiting.isAlive());
+        probe.onSuccess();
+        waiting.join();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,69 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.event.RequestEvent;
+import com.skazhenik.migration.event.RetryEvent;
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.service.NewStorageService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.http.HttpStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+import static com.skazhenik.migration.util.MigrationUtils.deleteFile;
+import static com.skazhenik.migration.util.MigrationUtils.uploadFile;
+
+public class EventsTest extends BaseTest {
+    @Test
+    public void requestEventsTest() throws MigrationException, IOException {
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        final NewStorageService service = new NewStorageService();
+        final String fileName = "events" + System.nanoTime() + ".txt";
+        final File file = tempDir.resolve(fileName).toFile();
+        generateRandomFile(file.toPath(), SMALL_TEST_SIZE);
+        final long length = file.length();
+        final Path dump = tempDir.resolve("events.jfr");
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(RequestEvent.NAME);
+            recording.enable(RetryEvent.NAME);
+            recording.start();
+            uploadFile(service, file, fileName, retryPolicy);
+            deleteFile(service, fileName, retryPolicy);
+            recording.stop();
+            recording.dump(dump);
+            events = RecordingFile.readAllEvents(dump);
+        } finally {
+            Files.deleteIfExists(dump);
+            deleteDir(tempDir);
+        }
+        final long uploaded = events.stream()
+                .filter(event -> event.getEventType().getName().equals(RequestEvent.NAME))
+                .filter(event -> event.getString("operation").equals("UPLOAD"))
+                .filter(event -> event.getInt("statusCode") == HttpStatus.SC_OK)
+                .peek(event -> {
+                    Assert.assertEquals(fileName, event.getString("fileName"));
+                    // the multipart body adds its headers to the content
+                    Assert.assertTrue(event.getLong("bytes") > length);
+                    Assert.assertTrue(event.getDuration().toNanos() > 0);
+                })
+                .count();
+        Assert.assertEquals(1, uploaded);
+        // every failed attempt of a completed operation is followed by a back-off
+        for (final RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(RetryEvent.NAME)) {
+                Assert.assertEquals(fileName, event.getString("fileName"));
+                Assert.assertFalse(event.getBoolean("exhausted"));
+            }
+        }
+    }
+}
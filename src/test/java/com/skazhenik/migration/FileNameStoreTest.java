@@ -0,0 +1,60 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.service.FileNameStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileNameStoreTest {
+    @Test
+    public void namesTest() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            names.add("file" + i + ".txt");
+        }
+        names.add("");
+        names.add("Alea jacta est + ünïcødé ☃ 😀.txt");
+        FileNameStore store = FileNameStore.of(names);
+        Assert.assertEquals(names, store);
+        Assert.assertEquals(names.size(), store.size());
+        int bytes = 0;
+        for (int i = 0; i < names.size(); i++) {
+            int length = names.get(i).getBytes(StandardCharsets.UTF_8).length;
+            Assert.assertEquals(length, store.getLength(i));
+            bytes += length;
+        }
+        Assert.assertEquals(bytes, store.getByteSize());
+    }
+
+    @Test
+    public void emptyTest() {
+        FileNameStore store = FileNameStore.of(List.of());
+        Assert.assertTrue(store.isEmpty());
+        Assert.assertFalse(store.iterator().hasNext());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void indexTest() {
+        FileNameStore.of(List.of("file.txt")).get(1);
+    }
+
+    @Test
+    public void lookupTest() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            names.add("file" + i + ".txt");
+        }
+        names.add("file0.txt");
+        FileNameStore store = FileNameStore.of(names);
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertEquals(i, store.indexOf("file" + i + ".txt"));
+        }
+        Assert.assertTrue(store.contains("file4999.txt"));
+        Assert.assertFalse(store.contains("file5000.txt"));
+        Assert.assertFalse(store.contains(null));
+        Assert.assertFalse(FileNameStore.of(List.of()).contains("file0.txt"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.journal.MappedJournal;
+import com.skazhenik.migration.journal.MigrationJournal;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+public class MappedJournalTest extends BaseTest {
+    @Test
+    public void replayTest() throws IOException {
+        Path dir = createDir();
+        Objects.requireNonNull(dir);
+        Path path = dir.resolve("migration.journal");
+        try (MappedJournal journal = new MappedJournal(path)) {
+            journal.record("a.txt", MigrationJournal.State.DOWNLOADED);
+            journal.record("a.txt", MigrationJournal.State.UPLOADED);
+            journal.record("b.txt", MigrationJournal.State.UPLOADED);
+            journal.record("b.txt", MigrationJournal.State.DELETED);
+            journal.record("c.txt", MigrationJournal.State.DOWNLOADED);
+            Assert.assertTrue(journal.isUploaded("a.txt"));
+            Assert.assertFalse(journal.isUploaded("b.txt"));
+        }
+        try (MappedJournal journal = new MappedJournal(path)) {
+            Assert.assertEquals(1, journal.getReplayedCount());
+            Assert.assertTrue(journal.isUploaded("a.txt"));
+            Assert.assertFalse(journal.isUploaded("b.txt"));
+            Assert.assertFalse(journal.isUploaded("c.txt"));
+        }
+        deleteDir(dir);
+    }
+
+    @Test
+    public void tornRecordTest() throws IOException {
+        Path dir = createDir();
+        Objects.requireNonNull(dir);
+        Path path = dir.resolve("migration.journal");
+        try (MappedJournal journal = new MappedJournal(path)) {
+            journal.record("a", MigrationJournal.State.UPLOADED);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            // a record of the upload of "b" with a wrong checksum right after the record of "a"
+            channel.write(ByteBuffer.wrap(new byte[]{2, 0, 1, 0, 0, 0, 0, 'b'}), 8);
+        }
+        try (MappedJournal journal = new MappedJournal(path)) {
+            Assert.assertTrue(journal.isUploaded("a"));
+            Assert.assertFalse(journal.isUploaded("b"));
+        }
+        deleteDir(dir);
+    }
+
+    @Test
+    public void regionsTest() throws IOException {
+        Path dir = createDir();
+        Objects.requireNonNull(dir);
+        Path path = dir.resolve("migration.journal");
+        String suffix = "x".repeat(1000);
+        int count = 2 * MappedJournal.REGION_SIZE / suffix.length();
+        try (MappedJournal journal = new MappedJournal(path)) {
+            for (int i = 0; i < count; i++) {
+                journal.record(i + suffix, MigrationJournal.State.UPLOADED);
+            }
+        }
+        try (MappedJournal journal = new MappedJournal(path)) {
+            Assert.assertEquals(count, journal.getReplayedCount());
+            Assert.assertTrue(journal.isUploaded(0 + suffix));
+            Assert.assertTrue(journal.isUploaded((count - 1) + suffix));
+        }
+        deleteDir(dir);
+    }
+}
@@ -0,0 +1,71 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.loader.MigrationScheduler;
+import com.skazhenik.migration.loader.Scheduling;
+import com.skazhenik.migration.loader.SizeSchedule;
+import com.skazhenik.migration.service.OldStorageService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static com.skazhenik.migration.util.MigrationUtils.getFileLength;
+import static com.skazhenik.migration.util.MigrationUtils.getFilesList;
+
+public class MigrationSchedulerTest extends BaseTest {
+    private final OldStorageService oldStorageService = new OldStorageService();
+
+    private List<String> schedule(final Scheduling scheduling, final List<String> files)
+            throws ExecutionException {
+        final List<String> scheduled = new ArrayList<>();
+        try (MigrationScheduler scheduler = new MigrationScheduler(4, scheduling, 8, 20, 10_000,
+                oldStorageService, retryPolicy)) {
+            final SizeSchedule schedule = scheduler.schedule(files, MigrationJournal.NONE);
+            schedule.forEach(scheduled::add);
+            schedule.complete();
+            Assert.assertTrue(schedule.getPredictedMillis() > 0);
+            Assert.assertTrue(schedule.getActualMillis() >= 0);
+        }
+        return scheduled;
+    }
+
+    @Test
+    public void longestFirstTest() throws MigrationException, ExecutionException {
+        final List<String> all = getFilesList(oldStorageService, retryPolicy);
+        final List<String> files = all.subList(0, Math.min(50, all.size()));
+        final List<String> scheduled = schedule(Scheduling.LONGEST_FIRST, files);
+        Assert.assertEquals(files.size(), scheduled.size());
+        Assert.assertEquals(new HashSet<>(files), new HashSet<>(scheduled));
+        long previous = Long.MAX_VALUE;
+        for (final String name : scheduled) {
+            final long length = getFileLength(oldStorageService, name, retryPolicy);
+            Assert.assertTrue(length <= previous);
+            previous = length;
+        }
+    }
+
+    @Test
+    public void listingTest() throws ExecutionException {
+        final List<String> files = List.of("c.txt", "a.txt", "b.txt");
+        Assert.assertEquals(files, schedule(Scheduling.LISTING, files));
+    }
+
+    @Test
+    public void knownLengthsTest() throws ExecutionException {
+        // the files are not in the storage, so a request for their lengths would fail
+        final List<String> files = List.of("knownLength1.txt", "knownLength2.txt", "knownLength3.txt");
+        try (MigrationScheduler scheduler = new MigrationScheduler(4, Scheduling.INTERLEAVED, 8, 20, 10_000,
+                oldStorageService, retryPolicy)) {
+            final SizeSchedule schedule = scheduler.schedule(files, new long[]{1, 3, 2}, MigrationJournal.NONE);
+            final List<String> scheduled = new ArrayList<>();
+            schedule.forEach(scheduled::add);
+            Assert.assertEquals(List.of("knownLength2.txt", "knownLength1.txt", "knownLength3.txt"), scheduled);
+            Assert.assertEquals(6, schedule.getBytes());
+        }
+    }
+}
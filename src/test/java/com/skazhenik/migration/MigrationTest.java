@@ -1,6 +1,7 @@
 package com.skazhenik.migration;
 
 import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.loader.MigrationProgress;
 import com.skazhenik.migration.loader.ParallelMigrationManager;
 import com.skazhenik.migration.service.NewStorageService;
 import com.skazhenik.migration.service.OldStorageService;
@@ -25,14 +26,21 @@ public class MigrationTest extends BaseTest {
         OldStorageService oldStorageService = new OldStorageService();
         NewStorageService newStorageService = new NewStorageService();
         try {
-            List<String> oldNames = MigrationUtils.getFilesList(oldStorageService);
+            List<String> oldNames = MigrationUtils.getFilesList(oldStorageService, retryPolicy);
             final int size = Math.min(oldNames.size(), SMALL_TEST_SIZE);
             try (ParallelMigrationManager manager = new ParallelMigrationManager(
                     10, tempLocation, oldStorageService, newStorageService
             )) {
                 manager.load(oldNames.subList(0, size), 50);
+                final MigrationProgress progress = manager.getProgress();
+                Assert.assertEquals(size, progress.getSubmitted());
+                Assert.assertEquals(size, progress.getCompleted());
+                Assert.assertEquals(0, progress.getFailed());
+                Assert.assertEquals(0, progress.getInFlight());
+                Assert.assertEquals(0, progress.getQueued());
+                Assert.assertEquals(0, progress.getRemaining());
             }
-            List<String> newNames = MigrationUtils.getFilesList(newStorageService);
+            List<String> newNames = MigrationUtils.getFilesList(newStorageService, retryPolicy);
             for (final String name : oldNames.subList(0, size)) {
                 Assert.assertTrue(newNames.contains(name));
             }
@@ -42,8 +50,8 @@ public class MigrationTest extends BaseTest {
             Objects.requireNonNull(dirOld);
 
             for (final String name : oldNames.subList(0, size)) {
-                MigrationUtils.downloadFile(newStorageService, dirNew, name);
-                MigrationUtils.downloadFile(oldStorageService, dirOld, name);
+                MigrationUtils.downloadFile(newStorageService, dirNew, name, retryPolicy);
+                MigrationUtils.downloadFile(oldStorageService, dirOld, name, retryPolicy);
                 try {
                     Assert.assertEquals(
                             FileUtils.readFileToString(
@@ -60,10 +68,10 @@ public class MigrationTest extends BaseTest {
                 }
             }
             for (final String name : oldNames.subList(0, size)) {
-                MigrationUtils.deleteFile(oldStorageService, name);
+                MigrationUtils.deleteFile(oldStorageService, name, retryPolicy);
             }
 
-            Set<String> refreshedOldNames = new HashSet<>(MigrationUtils.getFilesList(oldStorageService));
+            Set<String> refreshedOldNames = new HashSet<>(MigrationUtils.getFilesList(oldStorageService, retryPolicy));
             for (final String name : oldNames.subList(0, size)) {
                 Assert.assertFalse(refreshedOldNames.contains(name));
             }
@@ -1,9 +1,18 @@
 package com.skazhenik.migration;
 
 import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.service.ConnectionPool;
 import com.skazhenik.migration.service.NewStorageService;
 import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.service.Operation;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
 import com.skazhenik.migration.util.MigrationUtils;
+import com.skazhenik.migration.util.RetryingFileListIterator;
+import com.sun.net.httpserver.HttpServer;
 import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
@@ -11,6 +20,8 @@ import org.junit.Test;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -30,12 +41,12 @@ public class MigrationUtilsTest extends BaseTest {
             final Path file = tempDir1.resolve(name);
             generateRandomFile(file, i);
             try {
-                MigrationUtils.uploadFile(newStorageService, new File(file.toString()), name);
+                MigrationUtils.uploadFile(newStorageService, new File(file.toString()), name, retryPolicy);
             } catch (MigrationException e) {
                 Assert.fail("Uploading failed " + e.getMessage());
             }
             try {
-                MigrationUtils.downloadFile(newStorageService, tempDir2, name);
+                MigrationUtils.downloadFile(newStorageService, tempDir2, name, retryPolicy);
             } catch (MigrationException e) {
                 Assert.fail("Downloading failed " + e.getMessage());
             }
@@ -66,13 +77,14 @@ public class MigrationUtilsTest extends BaseTest {
             generateRandomFile(file, i);
             names.add(name);
             try {
-                MigrationUtils.uploadFile(newStorageService, new File(file.toString()), name);
+                MigrationUtils.uploadFile(newStorageService, new File(file.toString()), name, retryPolicy);
             } catch (MigrationException ignored) {
             }
         }
 
         try {
-            Assert.assertTrue((new HashSet<>(MigrationUtils.getFilesList(newStorageService))).containsAll(names));
+            Assert.assertTrue((new HashSet<>(MigrationUtils.getFilesList(newStorageService, retryPolicy)))
+                    .containsAll(names));
         } catch (MigrationException e) {
             Assert.fail("getFilesList failed " + e.getMessage());
         }
@@ -85,14 +97,14 @@ public class MigrationUtilsTest extends BaseTest {
         OldStorageService oldStorageService = new OldStorageService();
         Set<String> oldStorageNames = new HashSet<>();
         try {
-            oldStorageNames.addAll(MigrationUtils.getFilesList(oldStorageService));
+            oldStorageNames.addAll(MigrationUtils.getFilesList(oldStorageService, retryPolicy));
         } catch (MigrationException e) {
             Assert.fail("getFilesList from old storage failed " + e.getMessage());
         }
         int i = 0;
         for (Iterator<String> it = oldStorageNames.iterator(); it.hasNext(); ) {
             try {
-                MigrationUtils.deleteFile(oldStorageService, it.next());
+                MigrationUtils.deleteFile(oldStorageService, it.next(), retryPolicy);
                 it.remove();
             } catch (MigrationException ignored) {
             }
@@ -102,9 +114,73 @@ public class MigrationUtilsTest extends BaseTest {
         }
 
         try {
-            Assert.assertEquals(oldStorageNames, new HashSet<>(MigrationUtils.getFilesList(oldStorageService)));
+            Assert.assertEquals(oldStorageNames,
+                    new HashSet<>(MigrationUtils.getFilesList(oldStorageService, retryPolicy)));
         } catch (MigrationException e) {
             Assert.fail("getFilesList failed " + e.getMessage());
         }
     }
+
+    @Test
+    public void resumeListTest() throws IOException, MigrationException {
+        // the first response breaks after three names, the second request fails,
+        // the third response comes after the first file was migrated
+        final List<String> responses = List.of("[\"a\",\"b\",\"c\",", "", "[\"b\",\"c\",\"d\",\"e\"]");
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        final Iterator<String> bodies = responses.iterator();
+        server.createContext("/oldStorage/files", exchange -> {
+            final byte[] body = bodies.next().getBytes(StandardCharsets.UTF_8);
+            if (body.length == 0) {
+                exchange.sendResponseHeaders(500, -1);
+            } else {
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        try (ConnectionPool connectionPool = new ConnectionPool(2)) {
+            final OldStorageService service = new OldStorageService(
+                    "http://localhost:" + server.getAddress().getPort(), connectionPool,
+                    new BufferedTransferEngine(), null, null);
+            final List<String> names = new ArrayList<>();
+            try (RetryingFileListIterator iterator = MigrationUtils.listFiles(service, retryPolicy)) {
+                iterator.forEachRemaining(names::add);
+            }
+            Assert.assertEquals(List.of("a", "b", "c", "d", "e"), names);
+            Assert.assertFalse(bodies.hasNext());
+            Assert.assertEquals(2, service.getMetrics().getRetryCount(Operation.LIST.name()));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void sameFileTest() throws IOException, MigrationException {
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        try (StorageSimulator simulator = new StorageSimulator(0,
+                new Dataset(1, 1000, 1000, SizeDistribution.LOG_UNIFORM, 1), FaultProfile.NONE);
+             ConnectionPool connectionPool = new ConnectionPool(4)) {
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final String name = MigrationUtils.getFilesList(oldStorageService, retryPolicy).get(0);
+            Assert.assertFalse(MigrationUtils.isSameFile(oldStorageService, newStorageService, name, false,
+                    retryPolicy));
+            MigrationUtils.downloadFile(oldStorageService, tempDir, name, retryPolicy);
+            MigrationUtils.uploadFile(newStorageService, tempDir.resolve(name).toFile(), name, retryPolicy);
+            Assert.assertTrue(MigrationUtils.isSameFile(oldStorageService, newStorageService, name, true,
+                    retryPolicy));
+            // the old copy was deleted after the upload, so the file is migrated
+            MigrationUtils.deleteFile(oldStorageService, name, retryPolicy);
+            Assert.assertTrue(MigrationUtils.isSameFile(oldStorageService, newStorageService, name, false,
+                    retryPolicy));
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
 }
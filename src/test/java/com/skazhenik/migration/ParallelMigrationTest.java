@@ -0,0 +1,239 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.checksum.IntegrityCheck;
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.loader.ExecutionMode;
+import com.skazhenik.migration.loader.ParallelMigrationManager;
+import com.skazhenik.migration.loader.TransferMode;
+import com.skazhenik.migration.retry.BackoffRetryPolicy;
+import com.skazhenik.migration.retry.ErrorClassifier;
+import com.skazhenik.migration.retry.RetryBudget;
+import com.skazhenik.migration.retry.RetryPolicy;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.FileContent;
+import com.skazhenik.migration.service.NewStorageService;
+import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.spool.SpoolManager;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import org.apache.http.HttpStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+
+import static com.skazhenik.migration.util.MigrationUtils.getFilesList;
+import static com.skazhenik.migration.util.MigrationUtils.streamFile;
+
+public class ParallelMigrationTest extends BaseTest {
+    private static final Dataset DATASET = new Dataset(20, 0, 64 * 1024, SizeDistribution.LOG_UNIFORM, 11);
+
+    @Test(timeout = 60_000)
+    public void spoolQuotaTest() throws IOException, MigrationException, ExecutionException {
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        // every upload fails once while two workers share the quota of one spooled file
+        final SpoolManager spoolManager = new SpoolManager(1, Long.MAX_VALUE);
+        try (StorageSimulator simulator = new StorageSimulator(0, DATASET, FaultProfile.NONE);
+             ConnectionPool connectionPool = new ConnectionPool(4)) {
+            simulator.setUploadFailures(1);
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            try (ParallelMigrationManager manager = new ParallelMigrationManager(2, tempDir, oldStorageService,
+                    newStorageService, TransferMode.SPOOL)) {
+                manager.migrate(getFilesList(oldStorageService, retryPolicy).iterator(), spoolManager,
+                        MigrationJournal.NONE);
+            }
+            Assert.assertTrue(simulator.toString(), simulator.isMigrated());
+            Assert.assertEquals(0, spoolManager.getReservedFiles());
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void errorBurstTest() throws IOException, MigrationException, ExecutionException {
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        // half of the requests fail, far more than the budget of fast retries
+        final FaultProfile faults = new FaultProfile(0.5, 0, 0, 0, 0, 0);
+        final RetryPolicy policy = new BackoffRetryPolicy(BackoffRetryPolicy.DEFAULT_MAX_ATTEMPTS, 1, 20,
+                new ErrorClassifier(), new RetryBudget(0.1, 5));
+        try (StorageSimulator simulator = new StorageSimulator(0, DATASET, faults);
+             ConnectionPool connectionPool = new ConnectionPool(8)) {
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            try (ParallelMigrationManager manager = new ParallelMigrationManager(4, tempDir, oldStorageService,
+                    newStorageService, TransferMode.STREAM, ExecutionMode.PLATFORM, IntegrityCheck.NONE, policy)) {
+                manager.migrate(getFilesList(oldStorageService, policy).iterator(),
+                        new SpoolManager(4, Long.MAX_VALUE), MigrationJournal.NONE);
+                Assert.assertEquals(0, manager.getProgress().getFailed());
+            }
+            Assert.assertTrue(simulator.toString(), simulator.isMigrated());
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void streamFallbackTest() throws IOException, MigrationException, ExecutionException {
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        final int count = DATASET.getFileCount();
+        try (StorageSimulator simulator = new StorageSimulator(0, DATASET, FaultProfile.NONE);
+             ConnectionPool connectionPool = new ConnectionPool(8)) {
+            simulator.setUploadFailures(1);
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final List<String> files = getFilesList(oldStorageService, retryPolicy);
+            // a refused streamed upload is not retried, the content is gone
+            Assert.assertNull(streamFile(oldStorageService, newStorageService, files.get(0),
+                    ChecksumAlgorithm.CRC32C, retryPolicy));
+            Assert.assertEquals(count, simulator.getOldFileCount());
+            Assert.assertEquals(0, simulator.getNewFileCount());
+            simulator.reset();
+
+            final long downloads = oldStorageService.getMetrics().getResponseCount("DOWNLOAD", HttpStatus.SC_OK);
+            final long refusals = newStorageService.getMetrics()
+                    .getResponseCount("UPLOAD", HttpStatus.SC_INTERNAL_SERVER_ERROR);
+            try (ParallelMigrationManager manager = new ParallelMigrationManager(4, tempDir, oldStorageService,
+                    newStorageService, TransferMode.STREAM, ExecutionMode.PLATFORM,
+                    new IntegrityCheck(ChecksumAlgorithm.CRC32C, 1.0), retryPolicy)) {
+                manager.migrate(files.iterator(), new SpoolManager(4, Long.MAX_VALUE), MigrationJournal.NONE);
+                Assert.assertEquals(count, manager.getProgress().getCompleted());
+            }
+            // every file is streamed once, refused, then downloaded again to a spool and uploaded from it
+            Assert.assertEquals(2L * count,
+                    oldStorageService.getMetrics().getResponseCount("DOWNLOAD", HttpStatus.SC_OK) - downloads);
+            Assert.assertEquals(count, newStorageService.getMetrics()
+                    .getResponseCount("UPLOAD", HttpStatus.SC_INTERNAL_SERVER_ERROR) - refusals);
+            Assert.assertEquals(count, newStorageService.getMetrics().getResponseCount("UPLOAD", HttpStatus.SC_OK));
+            Assert.assertTrue(simulator.toString(), simulator.isMigrated());
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void deleteAfterUploadTest() throws IOException, MigrationException, ExecutionException {
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        final RecordingJournal journal = new RecordingJournal();
+        final Queue<String> violations = new ConcurrentLinkedQueue<>();
+        try (StorageSimulator simulator = new StorageSimulator(0, DATASET, FaultProfile.NONE);
+             ConnectionPool connectionPool = new ConnectionPool(8)) {
+            simulator.setUploadFailures(1);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            // the old copy may only be deleted once the new storage holds the original content of this file
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null) {
+                @Override
+                public void delete(final String fileName) throws ServiceException {
+                    if (journal.states.get(fileName) != MigrationJournal.State.UPLOADED
+                            || !isMigrated(newStorageService, fileName)) {
+                        violations.add(fileName);
+                    }
+                    super.delete(fileName);
+                }
+            };
+            try (ParallelMigrationManager manager = new ParallelMigrationManager(4, tempDir, oldStorageService,
+                    newStorageService, TransferMode.STREAM, ExecutionMode.PLATFORM,
+                    new IntegrityCheck(ChecksumAlgorithm.CRC32C, 1.0), retryPolicy)) {
+                manager.migrate(getFilesList(oldStorageService, retryPolicy).iterator(),
+                        new SpoolManager(4, Long.MAX_VALUE), journal);
+            }
+            Assert.assertTrue(violations.toString(), violations.isEmpty());
+            Assert.assertTrue(simulator.toString(), simulator.isMigrated());
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void failedUploadTest() throws IOException, MigrationException {
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        final int count = DATASET.getFileCount();
+        final RecordingJournal journal = new RecordingJournal();
+        final RetryPolicy policy = new BackoffRetryPolicy(3, 1, 5, new ErrorClassifier(), new RetryBudget(0.1, 5));
+        try (StorageSimulator simulator = new StorageSimulator(0, DATASET, FaultProfile.NONE);
+             ConnectionPool connectionPool = new ConnectionPool(8)) {
+            // the new storage refuses every upload
+            simulator.setUploadFailures(Integer.MAX_VALUE);
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            try (ParallelMigrationManager manager = new ParallelMigrationManager(4, tempDir, oldStorageService,
+                    newStorageService, TransferMode.STREAM, ExecutionMode.PLATFORM,
+                    new IntegrityCheck(ChecksumAlgorithm.CRC32C, 1.0), policy)) {
+                try {
+                    manager.migrate(getFilesList(oldStorageService, policy).iterator(),
+                            new SpoolManager(4, Long.MAX_VALUE), journal);
+                    Assert.fail("Migration with refused uploads succeeded");
+                } catch (ExecutionException e) {
+                    Assert.assertEquals(count, manager.getProgress().getFailed());
+                }
+            }
+            Assert.assertEquals(count, simulator.getOldFileCount());
+            Assert.assertEquals(0, simulator.getNewFileCount());
+            Assert.assertEquals(0, oldStorageService.getMetrics().getResponseCount("DELETE", HttpStatus.SC_OK));
+            Assert.assertFalse(journal.states.containsValue(MigrationJournal.State.UPLOADED));
+            Assert.assertFalse(journal.states.containsValue(MigrationJournal.State.DELETED));
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+
+    /**
+     * @return {@link Boolean#TRUE} if the file in the new storage has the original content of the dataset
+     */
+    private static boolean isMigrated(final NewStorageService service, final String fileName) {
+        try (FileContent content = service.open(fileName);
+             InputStream original = DATASET.open(DATASET.indexOf(fileName))) {
+            return Arrays.equals(original.readAllBytes(), content.getInputStream().readAllBytes());
+        } catch (ServiceException | IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * {@link MigrationJournal} keeping the last state of every file in memory.
+     */
+    private static final class RecordingJournal implements MigrationJournal {
+        private final Map<String, State> states = new ConcurrentHashMap<>();
+
+        @Override
+        public void record(final String fileName, final State state) {
+            states.put(fileName, state);
+        }
+
+        @Override
+        public boolean isUploaded(final String fileName) {
+            return states.get(fileName) == State.UPLOADED;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.loader.ExecutionMode;
+import com.skazhenik.migration.loader.PriorityExecutor;
+import com.skazhenik.migration.loader.StageStats;
+import com.skazhenik.migration.loader.TaskPriority;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class PriorityExecutorTest {
+    private static List<TaskPriority> run(final List<TaskPriority> priorities, final long millis)
+            throws InterruptedException, ExecutionException {
+        final List<TaskPriority> order = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch blocked = new CountDownLatch(1);
+        try (PriorityExecutor executor = new PriorityExecutor(ExecutionMode.PLATFORM, 1, priorities.size())) {
+            // the only worker is busy until all tasks are queued, its time is charged to the deletions
+            executor.submit(TaskPriority.DELETE, () -> {
+                blocked.await();
+                return null;
+            });
+            final List<Future<Object>> futures = new ArrayList<>();
+            for (final TaskPriority priority : priorities) {
+                futures.add(executor.submit(priority, () -> {
+                    order.add(priority);
+                    Thread.sleep(millis);
+                    return null;
+                }));
+            }
+            blocked.countDown();
+            for (final Future<Object> future : futures) {
+                future.get();
+            }
+        }
+        return order;
+    }
+
+    @Test
+    public void priorityTest() throws InterruptedException, ExecutionException {
+        final List<TaskPriority> order = run(List.of(TaskPriority.DELETE, TaskPriority.VERIFY,
+                TaskPriority.RETRY, TaskPriority.TRANSFER), 0);
+        Assert.assertEquals(TaskPriority.TRANSFER, order.get(0));
+        Assert.assertEquals(4, order.size());
+    }
+
+    @Test
+    public void fairShareTest() throws InterruptedException, ExecutionException {
+        final List<TaskPriority> priorities = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            priorities.add(TaskPriority.DELETE);
+            priorities.add(TaskPriority.TRANSFER);
+        }
+        final List<TaskPriority> order = run(priorities, 10);
+        // tasks of equal duration share the worker about 8 to 1
+        final int deletes = Collections.frequency(order.subList(0, 27), TaskPriority.DELETE);
+        Assert.assertTrue("deletes " + deletes, deletes >= 1 && deletes <= 7);
+        Assert.assertEquals(60, order.size());
+    }
+
+    @Test
+    public void putTest() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch put = new CountDownLatch(1);
+        try (PriorityExecutor executor = new PriorityExecutor(ExecutionMode.PLATFORM, 1, 1)) {
+            executor.put(TaskPriority.TRANSFER, () -> {
+                blocked.await();
+                return null;
+            });
+            executor.put(TaskPriority.TRANSFER, () -> null);
+            // the queue of deletions is empty, the queue of transfers is full
+            executor.put(TaskPriority.DELETE, () -> null);
+            final Thread producer = new Thread(() -> {
+                executor.put(TaskPriority.TRANSFER, () -> null);
+                put.countDown();
+            });
+            producer.start();
+            Thread.sleep(100);
+            Assert.assertEquals(1, put.getCount());
+            blocked.countDown();
+            Assert.assertTrue(put.await(10, TimeUnit.SECONDS));
+            final StageStats transfers = executor.getStats().get(0);
+            Assert.assertEquals("transfer", transfers.getName());
+        }
+    }
+
+    @Test
+    public void backlogTest() throws InterruptedException {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch put = new CountDownLatch(1);
+        try (PriorityExecutor executor = new PriorityExecutor(ExecutionMode.PLATFORM, 1, 2, 3)) {
+            executor.put(TaskPriority.TRANSFER, () -> {
+                blocked.await();
+                return null;
+            });
+            // the follow-ups fill the backlog while the queue of transfers has room
+            for (int i = 0; i < 3; i++) {
+                executor.submit(TaskPriority.DELETE, () -> null);
+            }
+            final Thread producer = new Thread(() -> {
+                executor.put(TaskPriority.TRANSFER, () -> null);
+                put.countDown();
+            });
+            producer.start();
+            Thread.sleep(100);
+            Assert.assertEquals(1, put.getCount());
+            blocked.countDown();
+            Assert.assertTrue(put.await(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void scheduleTest() throws InterruptedException {
+        final CountDownLatch retried = new CountDownLatch(2);
+        final CountDownLatch put = new CountDownLatch(1);
+        final PriorityExecutor executor = new PriorityExecutor(ExecutionMode.PLATFORM, 1, 1, 1);
+        final long start = System.nanoTime();
+        executor.schedule(TaskPriority.RETRY, () -> {
+            retried.countDown();
+            return null;
+        }, 50);
+        // the scheduled task takes the only place of the backlog while it waits
+        final Thread producer = new Thread(() -> {
+            executor.put(TaskPriority.TRANSFER, () -> null);
+            put.countDown();
+        });
+        producer.start();
+        Thread.sleep(20);
+        Assert.assertEquals(1, put.getCount());
+        Assert.assertTrue(put.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        // a task scheduled before the executor is closed is still run
+        executor.schedule(TaskPriority.RETRY, () -> {
+            retried.countDown();
+            return null;
+        }, 20);
+        executor.close();
+        Assert.assertTrue(retried.await(10, TimeUnit.SECONDS));
+        try {
+            executor.schedule(TaskPriority.RETRY, () -> null, 0);
+            Assert.fail("Closed executor scheduled a task");
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.loader.MigrationProgress;
+import com.skazhenik.migration.loader.ProgressReporter;
+import org.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ProgressReporterTest {
+    /**
+     * Counts the printed lines down, so the test waits for the reports instead of sleeping.
+     */
+    private static class LatchedStream extends PrintStream {
+        private final ByteArrayOutputStream out;
+        private final CountDownLatch lines;
+
+        private LatchedStream(final ByteArrayOutputStream out, final int lines) {
+            super(out, true);
+            this.out = out;
+            this.lines = new CountDownLatch(lines);
+        }
+
+        @Override
+        public void println(final String line) {
+            super.println(line);
+            lines.countDown();
+        }
+
+        @Override
+        public void println(final Object line) {
+            super.println(line);
+            lines.countDown();
+        }
+
+        private String[] await() throws InterruptedException {
+            Assert.assertTrue("No report in time", lines.await(10, TimeUnit.SECONDS));
+            return out.toString().split("\\R");
+        }
+    }
+
+    @Test
+    public void reportTest() throws InterruptedException {
+        final MigrationProgress progress = new MigrationProgress();
+        progress.expect(10, 1000);
+        final LatchedStream console = new LatchedStream(new ByteArrayOutputStream(), 2);
+        final LatchedStream json = new LatchedStream(new ByteArrayOutputStream(), 2);
+        final String[] consoleLines;
+        final String[] jsonLines;
+        try (ProgressReporter ignored = new ProgressReporter(progress, 10, console, json)) {
+            // the JSON line of a report is printed after its console line
+            jsonLines = json.await();
+            consoleLines = console.await();
+        }
+        Assert.assertTrue(consoleLines[0].startsWith("progress: files=0/10 bytes=0/1000"));
+        for (int i = 0; i < 2; i++) {
+            final JSONObject line = new JSONObject(jsonLines[i]);
+            Assert.assertEquals(10, line.getLong("remaining"));
+            Assert.assertEquals(1000, line.getLong("expectedBytes"));
+            // nothing is transferred, so the time of arrival is unknown
+            Assert.assertEquals(-1, line.getLong("etaMillis"));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.retry.BackoffRetryPolicy;
+import com.skazhenik.migration.retry.DeferredRetryPolicy;
+import com.skazhenik.migration.retry.ErrorClassifier;
+import com.skazhenik.migration.retry.RetryBudget;
+import org.apache.http.client.ClientProtocolException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+public class RetryPolicyTest {
+    private static final Exception TRANSIENT = new ServiceException("Unavailable", 503);
+
+    @Test
+    public void classifierTest() {
+        final ErrorClassifier classifier = new ErrorClassifier();
+        Assert.assertTrue(classifier.isRetryable(new ServiceException("Server error", 500)));
+        Assert.assertTrue(classifier.isRetryable(new ServiceException("Timeout", 408)));
+        Assert.assertTrue(classifier.isRetryable(new ServiceException("Throttled", 429)));
+        Assert.assertFalse(classifier.isRetryable(new ServiceException("Not implemented", 501)));
+        Assert.assertFalse(classifier.isRetryable(new ServiceException("Not found", 404)));
+        Assert.assertFalse(classifier.isRetryable(new ServiceException("Conflict", 409)));
+
+        Assert.assertTrue(classifier.isRetryable(new IOException("Connection reset")));
+        Assert.assertTrue(classifier.isRetryable(new ServiceException(new SocketTimeoutException())));
+        Assert.assertTrue(classifier.isRetryable(new MigrationException("Unable to list", new IOException())));
+        Assert.assertFalse(classifier.isRetryable(new ServiceException(new UnknownHostException())));
+        Assert.assertFalse(classifier.isRetryable(new ServiceException(new SSLException("Handshake"))));
+        Assert.assertFalse(classifier.isRetryable(new ServiceException(new ClientProtocolException())));
+        Assert.assertFalse(classifier.isRetryable(new MigrationException("Interrupted", new InterruptedException())));
+    }
+
+    @Test
+    public void budgetTest() {
+        final RetryBudget budget = new RetryBudget(0.5, 2);
+        Assert.assertTrue(budget.tryRetry());
+        Assert.assertTrue(budget.tryRetry());
+        Assert.assertFalse(budget.tryRetry());
+        budget.onRequest();
+        Assert.assertFalse(budget.tryRetry());
+        budget.onRequest();
+        Assert.assertTrue(budget.tryRetry());
+        // a long healthy period saves up no more than the maximum balance
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+        Assert.assertTrue(budget.tryRetry());
+        Assert.assertTrue(budget.tryRetry());
+        Assert.assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    public void backoffTest() {
+        final BackoffRetryPolicy policy = new BackoffRetryPolicy(3, 10, 15, new ErrorClassifier(),
+                new RetryBudget(0, 10));
+        for (int i = 0; i < 5; i++) {
+            final long first = policy.getDelay(1, TRANSIENT);
+            Assert.assertTrue(first >= 0 && first <= 10);
+            final long second = policy.getDelay(2, TRANSIENT);
+            Assert.assertTrue(second >= 0 && second <= 15);
+        }
+        Assert.assertEquals(-1, policy.getDelay(3, TRANSIENT));
+        Assert.assertEquals(-1, policy.getDelay(1, new ServiceException("Not found", 404)));
+    }
+
+    @Test
+    public void exhaustedBudgetTest() {
+        final BackoffRetryPolicy policy = new BackoffRetryPolicy(100, 10, 2_000, new ErrorClassifier(),
+                new RetryBudget(0.5, 1));
+        Assert.assertTrue(policy.getDelay(1, TRANSIENT) <= 10);
+        // the budget is exhausted, so the operation waits for the maximum delay instead of a short one
+        Assert.assertEquals(2_000, policy.getDelay(1, TRANSIENT));
+        policy.onRequest();
+        policy.onRequest();
+        Assert.assertTrue(policy.getDelay(1, TRANSIENT) <= 10);
+    }
+
+    @Test
+    public void deferredTest() {
+        final BackoffRetryPolicy shared = new BackoffRetryPolicy(3, 10, 15, new ErrorClassifier(),
+                new RetryBudget(0.5, 2));
+        final DeferredRetryPolicy policy = new DeferredRetryPolicy(shared);
+        Assert.assertTrue(policy.isDeferred());
+        Assert.assertFalse(shared.isDeferred());
+        // every submission starts from the first attempt, the policy counts them across the submissions
+        policy.onRequest();
+        Assert.assertTrue(policy.getDelay(1, TRANSIENT) >= 0);
+        policy.onRequest();
+        Assert.assertTrue(policy.getDelay(1, TRANSIENT) >= 0);
+        Assert.assertEquals(-1, policy.getDelay(1, TRANSIENT));
+        // the operation was counted in the budget once, so one more request does not pay for a fast retry
+        shared.onRequest();
+        Assert.assertEquals(15, new DeferredRetryPolicy(shared).getDelay(1, TRANSIENT));
+    }
+}
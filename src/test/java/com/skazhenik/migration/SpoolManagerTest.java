@@ -0,0 +1,112 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.spool.BufferPool;
+import com.skazhenik.migration.spool.FileSpool;
+import com.skazhenik.migration.spool.MemorySpool;
+import com.skazhenik.migration.spool.Spool;
+import com.skazhenik.migration.spool.SpoolManager;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import com.skazhenik.migration.transfer.TransferEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class SpoolManagerTest extends BaseTest {
+    private boolean reservesInTime(final SpoolManager manager, final long length, final Runnable release)
+            throws InterruptedException {
+        final CountDownLatch reserved = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> {
+            try (SpoolManager.Reservation ignored = manager.reserve(length)) {
+                reserved.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        thread.start();
+        final boolean blocked = !reserved.await(200, TimeUnit.MILLISECONDS);
+        release.run();
+        final boolean reservedAfterRelease = reserved.await(5, TimeUnit.SECONDS);
+        thread.interrupt();
+        thread.join();
+        return blocked && reservedAfterRelease;
+    }
+
+    @Test
+    public void bytesQuotaTest() throws InterruptedException {
+        SpoolManager manager = new SpoolManager(10, 100);
+        SpoolManager.Reservation first = manager.reserve(60);
+        Assert.assertEquals(60, manager.getReservedBytes());
+        Assert.assertTrue(reservesInTime(manager, 60, first::close));
+        Assert.assertEquals(0, manager.getReservedBytes());
+        Assert.assertEquals(0, manager.getReservedFiles());
+    }
+
+    @Test
+    public void filesQuotaTest() throws InterruptedException {
+        SpoolManager manager = new SpoolManager(2, 100);
+        SpoolManager.Reservation first = manager.reserve(1);
+        SpoolManager.Reservation second = manager.reserve(1);
+        Assert.assertTrue(reservesInTime(manager, 1, first::close));
+        second.close();
+        Assert.assertEquals(0, manager.getReservedFiles());
+    }
+
+    @Test
+    public void oversizedFileTest() throws InterruptedException {
+        SpoolManager manager = new SpoolManager(10, 100, 30);
+        try (SpoolManager.Reservation reservation = manager.reserve(1000)) {
+            Assert.assertEquals(1000, manager.getReservedBytes());
+            reservation.adjust(10);
+            Assert.assertEquals(10, manager.getReservedBytes());
+        }
+        try (SpoolManager.Reservation reservation = manager.reserve(-1)) {
+            Assert.assertEquals(30, reservation.getBytes());
+        }
+        Assert.assertEquals(0, manager.getReservedBytes());
+    }
+
+    private byte[] readAll(final Spool spool) throws IOException {
+        try (InputStream inputStream = spool.openStream()) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    @Test
+    public void memoryTierTest() throws InterruptedException, IOException {
+        Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        SpoolManager manager = new SpoolManager(10, 1000, 100, new BufferPool(16, 16));
+        TransferEngine engine = new BufferedTransferEngine();
+        byte[] small = "small content".getBytes(StandardCharsets.UTF_8);
+        byte[] large = "content larger than the buffer".getBytes(StandardCharsets.UTF_8);
+
+        try (Spool memory = manager.allocate(tempDir, "small", small.length);
+             Spool spilled = manager.allocate(tempDir, "spilled", small.length);
+             Spool file = manager.allocate(tempDir, "large", large.length)) {
+            Assert.assertTrue(memory instanceof MemorySpool);
+            Assert.assertTrue(spilled instanceof FileSpool);
+            Assert.assertTrue(file instanceof FileSpool);
+
+            memory.write(new ByteArrayInputStream(small), small.length, engine);
+            spilled.write(new ByteArrayInputStream(small), small.length, engine);
+            file.write(new ByteArrayInputStream(large), large.length, engine);
+            Assert.assertArrayEquals(small, readAll(memory));
+            Assert.assertArrayEquals(small, readAll(memory));
+            Assert.assertArrayEquals(small, readAll(spilled));
+            Assert.assertArrayEquals(large, readAll(file));
+            Assert.assertEquals(2, manager.getReservedFiles());
+            Assert.assertEquals(small.length + large.length, manager.getReservedBytes());
+        }
+        Assert.assertEquals(0, manager.getReservedFiles());
+        Assert.assertFalse(Files.exists(tempDir.resolve("large")));
+        deleteDir(tempDir);
+    }
+}
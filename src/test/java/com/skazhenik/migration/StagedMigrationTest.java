@@ -0,0 +1,102 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.loader.StagedMigrationManager;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.NewStorageService;
+import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.spool.BufferPool;
+import com.skazhenik.migration.spool.SpoolManager;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.skazhenik.migration.util.MigrationUtils.getFilesList;
+
+public class StagedMigrationTest extends BaseTest {
+    private static final Dataset DATASET = new Dataset(200, 0, 64 * 1024, SizeDistribution.LOG_UNIFORM, 5);
+
+    private static void assertReleased(final SpoolManager spoolManager, final BufferPool bufferPool,
+                                       final Path tempDir) {
+        Assert.assertEquals(0, spoolManager.getReservedFiles());
+        Assert.assertEquals(0, spoolManager.getReservedBytes());
+        Assert.assertEquals(0, bufferPool.getUsedMemory());
+        Assert.assertArrayEquals(new String[0], Objects.requireNonNull(tempDir.toFile().list()));
+    }
+
+    @Test
+    public void pipelineTest() throws IOException, MigrationException, ExecutionException {
+        final FaultProfile faults = new FaultProfile(0.1, 1, 2, 0, 0, 0);
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        final BufferPool bufferPool = new BufferPool(64 * 1024, 512 * 1024);
+        final SpoolManager spoolManager = new SpoolManager(16, Long.MAX_VALUE, SpoolManager.DEFAULT_ESTIMATE,
+                bufferPool);
+        try (StorageSimulator simulator = new StorageSimulator(0, DATASET, faults);
+             ConnectionPool connectionPool = new ConnectionPool(16)) {
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            new StagedMigrationManager(4, 4, 2, 8, tempDir, oldStorageService, newStorageService)
+                    .migrate(getFilesList(oldStorageService, retryPolicy).iterator(), spoolManager,
+                            MigrationJournal.NONE);
+            Assert.assertTrue(simulator.toString(), simulator.isMigrated());
+            Assert.assertEquals(DATASET.getFileCount(), simulator.getNewFileCount());
+            assertReleased(spoolManager, bufferPool, tempDir);
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+
+    @Test
+    public void interruptTest() throws IOException, MigrationException, InterruptedException {
+        // uploads are slower than downloads, so spools pile up in the upload queue
+        final FaultProfile faults = new FaultProfile(0, 20, 0, 0, 0, 0);
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        final BufferPool bufferPool = new BufferPool(64 * 1024, 512 * 1024);
+        final SpoolManager spoolManager = new SpoolManager(16, Long.MAX_VALUE, SpoolManager.DEFAULT_ESTIMATE,
+                bufferPool);
+        try (StorageSimulator simulator = new StorageSimulator(0, DATASET, faults);
+             ConnectionPool connectionPool = new ConnectionPool(16)) {
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final StagedMigrationManager manager = new StagedMigrationManager(8, 1, 1, 8, tempDir,
+                    oldStorageService, newStorageService);
+            final AtomicReference<Exception> failure = new AtomicReference<>();
+            final Thread migration = new Thread(() -> {
+                try {
+                    manager.migrate(getFilesList(oldStorageService, retryPolicy).iterator(), spoolManager,
+                            MigrationJournal.NONE);
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            });
+            migration.start();
+            while (spoolManager.getReservedFiles() < 8 && migration.isAlive()) {
+                Thread.sleep(1);
+            }
+            migration.interrupt();
+            migration.join();
+            Assert.assertTrue(String.valueOf(failure.get()), failure.get() instanceof ExecutionException);
+            Assert.assertFalse(simulator.isMigrated());
+            assertReleased(spoolManager, bufferPool, tempDir);
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+}
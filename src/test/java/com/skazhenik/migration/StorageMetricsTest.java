@@ -0,0 +1,75 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.metrics.LatencyHistogram;
+import com.skazhenik.migration.metrics.StorageMetrics;
+import com.skazhenik.migration.service.NewStorageService;
+import org.apache.http.HttpStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Objects;
+
+import static com.skazhenik.migration.util.MigrationUtils.deleteFile;
+import static com.skazhenik.migration.util.MigrationUtils.uploadFile;
+
+public class StorageMetricsTest extends BaseTest {
+    @Test
+    public void histogramTest() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getPercentile(0.5));
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        Assert.assertEquals(100_000, histogram.getCount());
+        Assert.assertEquals(100_000_000, histogram.getMaxNanos());
+        Assert.assertEquals(50_000_500, histogram.getMeanNanos(), 1);
+        // buckets are at most 1/32 of their values wide
+        Assert.assertEquals(50_000_000, histogram.getPercentile(0.5), 50_000_000 / 32.0);
+        Assert.assertEquals(99_000_000, histogram.getPercentile(0.99), 99_000_000 / 32.0);
+        Assert.assertEquals(100_000_000, histogram.getPercentile(1));
+        final LatencyHistogram small = new LatencyHistogram();
+        small.record(-1);
+        small.record(7);
+        Assert.assertEquals(0, small.getPercentile(0.5));
+        Assert.assertEquals(7, small.getPercentile(1));
+    }
+
+    @Test
+    public void serviceTest() throws MigrationException {
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        final NewStorageService service = new NewStorageService();
+        final StorageMetrics metrics = service.getMetrics();
+        final String fileName = "metrics" + System.nanoTime() + ".txt";
+        final File file = tempDir.resolve(fileName).toFile();
+        generateRandomFile(file.toPath(), SMALL_TEST_SIZE);
+        final long length = file.length();
+        try {
+            uploadFile(service, file, fileName, retryPolicy);
+            // the second upload conflicts, so the file is deleted and uploaded again
+            uploadFile(service, file, fileName, retryPolicy);
+            deleteFile(service, fileName, retryPolicy);
+            deleteFile(service, fileName, retryPolicy);
+        } finally {
+            deleteDir(tempDir);
+        }
+        Assert.assertTrue(metrics.getResponseCount("UPLOAD", HttpStatus.SC_OK) >= 2);
+        Assert.assertTrue(metrics.getResponseCount("UPLOAD", HttpStatus.SC_CONFLICT) >= 1);
+        Assert.assertTrue(metrics.getResponseCount("DELETE", HttpStatus.SC_OK) >= 2);
+        Assert.assertTrue(metrics.getResponseCount("DELETE", HttpStatus.SC_NOT_FOUND) >= 1);
+        Assert.assertTrue(metrics.getBytesSent() >= 3 * length);
+        // only failed requests are attempted again
+        Assert.assertTrue(metrics.getRetryCount() <= metrics.getErrorCount());
+        Assert.assertEquals(metrics.getRetryCount("UPLOAD") + metrics.getRetryCount("DELETE"),
+                metrics.getRetryCount());
+        long requests = 0;
+        for (final LatencyHistogram latency : metrics.getLatencies().values()) {
+            requests += latency.getCount();
+            Assert.assertTrue(latency.getMaxNanos() > 0);
+        }
+        Assert.assertEquals(requests, metrics.getRequestCount());
+    }
+}
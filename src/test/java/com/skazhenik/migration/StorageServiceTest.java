@@ -1,18 +1,41 @@
 package com.skazhenik.migration;
 
+import com.skazhenik.migration.breaker.CircuitBreakers;
 import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.limit.AimdLimiter;
 import com.skazhenik.migration.service.AbstractStorageService;
+import com.skazhenik.migration.service.AsyncStorageService;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.FileListIterator;
 import com.skazhenik.migration.service.NewStorageService;
 import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.service.Operation;
+import com.skazhenik.migration.service.RequestTimeouts;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import com.sun.net.httpserver.HttpServer;
 import org.apache.http.HttpStatus;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class StorageServiceTest extends BaseTest {
 
@@ -111,4 +134,105 @@ public class StorageServiceTest extends BaseTest {
         uploadTest(service);
         deleteTest(service);
     }
+
+    @Test
+    public void listFilesTest() {
+        OldStorageService service = new OldStorageService();
+        List<String> names = getFiles(service);
+        Assert.assertNotNull(names);
+        int attempts = 100;
+        while (attempts > 0) {
+            try (FileListIterator iterator = service.listFiles()) {
+                List<String> streamedNames = new ArrayList<>();
+                iterator.forEachRemaining(streamedNames::add);
+                Assert.assertEquals(names, streamedNames);
+                break;
+            } catch (ServiceException e) {
+                if (e.getResponseCode() != HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+                    Assert.fail("Unexpected error" + e);
+                }
+            } catch (IOException e) {
+                Assert.fail("Unexpected error" + e);
+            }
+            attempts--;
+        }
+        Assert.assertTrue(attempts != 0);
+    }
+
+    @Test
+    public void asyncTest() throws IOException, InterruptedException, ExecutionException {
+        final Dataset dataset = new Dataset(10, 0, 1000, SizeDistribution.LOG_UNIFORM, 1);
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        try (StorageSimulator simulator = new StorageSimulator(0, dataset, FaultProfile.NONE);
+             ConnectionPool connectionPool = new ConnectionPool(4)) {
+            // the requests are admitted one at a time, the others try again without blocking a thread
+            final AimdLimiter limiter = new AimdLimiter("old", 1, 1, 1);
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), limiter, new CircuitBreakers());
+            final AsyncStorageService service = new AsyncStorageService(oldStorageService,
+                    HttpClient.newHttpClient());
+            final List<String> names = service.getFilesList().get();
+            Assert.assertEquals(dataset.getFileCount(), names.size());
+            final List<CompletableFuture<Path>> downloads = new ArrayList<>();
+            for (final String name : names) {
+                downloads.add(service.download(tempDir, name));
+            }
+            long bytes = 0;
+            for (final CompletableFuture<Path> download : downloads) {
+                bytes += Files.size(download.get());
+            }
+            Assert.assertEquals(0, limiter.getInFlight());
+            Assert.assertEquals(1, oldStorageService.getMetrics().getResponseCount("LIST", HttpStatus.SC_OK));
+            Assert.assertEquals(names.size(),
+                    oldStorageService.getMetrics().getResponseCount("DOWNLOAD", HttpStatus.SC_OK));
+            // the list of files is counted as well
+            Assert.assertTrue(oldStorageService.getMetrics().getBytesReceived() > bytes);
+            try {
+                service.upload("injected\r\nX-Header: 1", tempDir.resolve(names.get(0))).get();
+                Assert.fail("Error expected");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof ServiceException);
+            }
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+
+    @Test(timeout = 30_000)
+    public void uploadDeadlineTest() throws IOException {
+        // the server reads the body far slower than it is sent, so the upload stalls once the socket buffers fill
+        final HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/newStorage/files", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                final byte[] buffer = new byte[1024];
+                while (body.read(buffer) >= 0) {
+                    Thread.sleep(10);
+                }
+                exchange.sendResponseHeaders(200, -1);
+            } catch (IOException | InterruptedException ignored) {
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        final RequestTimeouts timeouts = new RequestTimeouts(100, 300, 300, 300, 300);
+        try (ConnectionPool connectionPool = new ConnectionPool(1, 1, timeouts)) {
+            final NewStorageService service = new NewStorageService(
+                    "http://localhost:" + server.getAddress().getPort(), connectionPool,
+                    new BufferedTransferEngine(), null, null);
+            final int length = 64 * 1024 * 1024;
+            final long start = System.nanoTime();
+            try {
+                service.upload("stalled.bin", new ByteArrayInputStream(new byte[length]), length);
+                Assert.fail("Error expected");
+            } catch (ServiceException e) {
+                Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+            }
+            // the expired request counts as failed without a response
+            Assert.assertEquals(1, service.getMetrics().getResponseCount(Operation.UPLOAD.name(), 0));
+        } finally {
+            server.stop(0);
+        }
+    }
 }
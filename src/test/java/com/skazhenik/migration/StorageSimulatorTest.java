@@ -0,0 +1,86 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.checksum.IntegrityCheck;
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.loader.ExecutionMode;
+import com.skazhenik.migration.loader.ParallelMigrationManager;
+import com.skazhenik.migration.loader.TransferMode;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.NewStorageService;
+import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.spool.SpoolManager;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+import static com.skazhenik.migration.util.MigrationUtils.getFilesList;
+
+public class StorageSimulatorTest extends BaseTest {
+    @Test
+    public void datasetTest() throws IOException {
+        final Dataset dataset = new Dataset(1000, 10, 100_000, SizeDistribution.LOG_UNIFORM, 7);
+        final Dataset same = new Dataset(1000, 10, 100_000, SizeDistribution.LOG_UNIFORM, 7);
+        for (int i = 0; i < dataset.getFileCount(); i++) {
+            Assert.assertEquals(i, dataset.indexOf(dataset.getName(i)));
+            Assert.assertEquals(dataset.getLength(i), same.getLength(i));
+            Assert.assertTrue(dataset.getLength(i) >= 10 && dataset.getLength(i) <= 100_000);
+        }
+        Assert.assertEquals(-1, dataset.indexOf("file01.bin"));
+        Assert.assertEquals(-1, dataset.indexOf(dataset.getName(dataset.getFileCount())));
+        try (InputStream first = dataset.open(0); InputStream second = dataset.open(1)) {
+            final byte[] content = first.readAllBytes();
+            Assert.assertEquals(dataset.getLength(0), content.length);
+            Assert.assertFalse(Arrays.equals(content, second.readAllBytes()));
+            try (InputStream again = same.open(0)) {
+                Assert.assertArrayEquals(content, again.readAllBytes());
+            }
+            try (InputStream bytes = same.open(0)) {
+                for (final byte b : content) {
+                    Assert.assertEquals(b & 0xff, bytes.read());
+                }
+                Assert.assertEquals(-1, bytes.read());
+            }
+        }
+    }
+
+    @Test
+    public void migrationTest() throws IOException, MigrationException, ExecutionException {
+        final Dataset dataset = new Dataset(300, 0, 64 * 1024, SizeDistribution.LOG_UNIFORM, 3);
+        final FaultProfile faults = new FaultProfile(0.2, 1, 2, 0.01, 200, 10_000);
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        try (StorageSimulator simulator = new StorageSimulator(0, dataset, faults);
+             ConnectionPool connectionPool = new ConnectionPool(16)) {
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(), null, null);
+            try (ParallelMigrationManager manager = new ParallelMigrationManager(8, tempDir, oldStorageService,
+                    newStorageService, TransferMode.STREAM, ExecutionMode.PLATFORM,
+                    new IntegrityCheck(ChecksumAlgorithm.CRC32C, 1.0))) {
+                manager.migrate(getFilesList(oldStorageService, retryPolicy).iterator(),
+                        new SpoolManager(8, Long.MAX_VALUE), MigrationJournal.NONE);
+            }
+            Assert.assertTrue(simulator.toString(), simulator.isMigrated());
+            Assert.assertEquals(dataset.getFileCount(), simulator.getNewFileCount());
+            simulator.reset();
+            Assert.assertEquals(dataset.getFileCount(), simulator.getOldFileCount());
+            Assert.assertEquals(0, simulator.getNewFileCount());
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.skazhenik.migration.service;
+
+import com.skazhenik.migration.exception.ServiceException;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+// in the package of ConnectionPool, whose permits and hedge executor are internal to the services
+public class ConnectionPoolTest {
+    private static final int MAX_PER_ROUTE = 2;
+    private static final int MAX_TOTAL = 5;
+    private static final HttpHost FIRST_HOST = new HttpHost("first", 80);
+    private static final HttpHost SECOND_HOST = new HttpHost("second", 80);
+
+    /**
+     * Waits until {@code count} requests of the {@code pool} wait for a connection.
+     */
+    private static void waitForPending(final ConnectionPool pool, final int count) throws InterruptedException {
+        while (pool.getStats().getPending() != count) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void routeLimitTest() throws ServiceException, InterruptedException {
+        try (ConnectionPool pool = new ConnectionPool(MAX_PER_ROUTE, MAX_TOTAL)) {
+            for (int i = 0; i < MAX_PER_ROUTE; i++) {
+                pool.acquire(FIRST_HOST);
+            }
+            Assert.assertFalse(pool.tryAcquire(FIRST_HOST));
+            // every host has its own limit
+            Assert.assertTrue(pool.tryAcquire(SECOND_HOST));
+            pool.release(SECOND_HOST);
+
+            final Thread waiting = new Thread(() -> {
+                try {
+                    pool.acquire(FIRST_HOST);
+                } catch (ServiceException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            waiting.start();
+            waitForPending(pool, 1);
+            Assert.assertTrue(waiting.isAlive());
+            pool.release(FIRST_HOST);
+            waiting.join();
+            Assert.assertEquals(0, pool.getStats().getPending());
+            // the released permit went to the waiting thread
+            Assert.assertFalse(pool.tryAcquire(FIRST_HOST));
+            for (int i = 0; i < MAX_PER_ROUTE; i++) {
+                pool.release(FIRST_HOST);
+            }
+            Assert.assertTrue(pool.tryAcquire(FIRST_HOST));
+            pool.release(FIRST_HOST);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void interruptTest() throws ServiceException, InterruptedException {
+        try (ConnectionPool pool = new ConnectionPool(1, MAX_TOTAL)) {
+            pool.acquire(FIRST_HOST);
+            final ServiceException[] error = new ServiceException[1];
+            final Thread waiting = new Thread(() -> {
+                try {
+                    pool.acquire(FIRST_HOST);
+                } catch (ServiceException e) {
+                    error[0] = e;
+                }
+            });
+            waiting.start();
+            waitForPending(pool, 1);
+            waiting.interrupt();
+            waiting.join();
+            Assert.assertNotNull(error[0]);
+            // the interrupted thread took no permit
+            pool.release(FIRST_HOST);
+            Assert.assertTrue(pool.tryAcquire(FIRST_HOST));
+            pool.release(FIRST_HOST);
+        }
+    }
+
+    @Test(timeout = 10_000)
+    public void hedgeExecutorTest() throws InterruptedException {
+        final ExecutorService hedges;
+        final CountDownLatch started = new CountDownLatch(MAX_PER_ROUTE);
+        final CountDownLatch finish = new CountDownLatch(1);
+        try (ConnectionPool pool = new ConnectionPool(MAX_PER_ROUTE, MAX_TOTAL)) {
+            hedges = pool.getHedgeExecutor();
+            for (int i = 0; i < MAX_PER_ROUTE; i++) {
+                hedges.execute(() -> {
+                    started.countDown();
+                    try {
+                        finish.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            started.await();
+            // hedges run on at most as many threads as there are connections to one host and are not queued
+            try {
+                hedges.execute(() -> {
+                });
+                Assert.fail("Hedge accepted while all threads are busy");
+            } catch (RejectedExecutionException ignored) {
+            }
+            finish.countDown();
+            // a thread which finished its hedge takes the next one
+            final CountDownLatch next = new CountDownLatch(1);
+            boolean accepted = false;
+            while (!accepted) {
+                try {
+                    hedges.execute(next::countDown);
+                    accepted = true;
+                } catch (RejectedExecutionException e) {
+                    Thread.sleep(1);
+                }
+            }
+            next.await();
+        }
+        Assert.assertTrue(hedges.isShutdown());
+        try {
+            hedges.execute(() -> {
+            });
+            Assert.fail("Hedge accepted by a closed pool");
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    @Test
+    public void statsTest() throws IOException {
+        final Dataset dataset = new Dataset(4, 0, 1024, SizeDistribution.LOG_UNIFORM, 17);
+        try (StorageSimulator simulator = new StorageSimulator(0, dataset, FaultProfile.NONE);
+             ConnectionPool pool = new ConnectionPool(MAX_PER_ROUTE, MAX_TOTAL)) {
+            ConnectionPoolStats stats = pool.getStats();
+            Assert.assertEquals(0, stats.getLeased());
+            Assert.assertEquals(0, stats.getAvailable());
+            Assert.assertEquals(0, stats.getPending());
+            Assert.assertEquals(MAX_PER_ROUTE, stats.getMaxPerRoute());
+            Assert.assertEquals(MAX_TOTAL, stats.getMaxTotal());
+
+            final HttpGet request = new HttpGet(simulator.getBaseURL() + "/oldStorage/files");
+            request.setConfig(pool.getRequestConfig(Operation.LIST));
+            try (CloseableHttpResponse response = pool.getClient().execute(request)) {
+                Assert.assertEquals(HttpStatus.SC_OK, response.getStatusLine().getStatusCode());
+                Assert.assertEquals(1, pool.getStats().getLeased());
+                EntityUtils.consume(response.getEntity());
+            }
+            // the consumed connection is kept alive for the next request
+            stats = pool.getStats();
+            Assert.assertEquals(0, stats.getLeased());
+            Assert.assertEquals(1, stats.getAvailable());
+            Assert.assertEquals(0, stats.getPending());
+        }
+    }
+
+    @Test
+    public void requestConfigTest() {
+        final RequestTimeouts timeouts = new RequestTimeouts(100, 200, 300, 400, 500);
+        try (ConnectionPool pool = new ConnectionPool(MAX_PER_ROUTE, MAX_TOTAL, timeouts)) {
+            Assert.assertSame(timeouts, pool.getTimeouts());
+            for (final Operation operation : Operation.values()) {
+                final RequestConfig config = pool.getRequestConfig(operation);
+                Assert.assertEquals(timeouts.getConnectTimeout(), config.getConnectTimeout());
+                Assert.assertEquals(timeouts.getTimeout(operation), config.getSocketTimeout());
+                Assert.assertEquals(timeouts.getTimeout(operation), config.getConnectionRequestTimeout());
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.skazhenik.migration.service;
+
+import com.skazhenik.migration.exception.ServiceException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// in the package of Hedging, which is internal to the services
+public class HedgingTest {
+    private static final long HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final ExecutorService hedges = Executors.newCachedThreadPool();
+    private final List<HttpRequestBase> requests = new CopyOnWriteArrayList<>();
+
+    private static LatencyTracker createTracker() {
+        final LatencyTracker tracker = new LatencyTracker(0.95);
+        for (int i = 0; i < 1024; i++) {
+            tracker.record(HEDGE_DELAY_NANOS);
+        }
+        return tracker;
+    }
+
+    private HttpRequestBase createRequest() {
+        final HttpRequestBase request = new HttpGet("http://localhost/file");
+        requests.add(request);
+        return request;
+    }
+
+    /**
+     * Waits until {@code request} is aborted, as a request blocked on a slow server does.
+     */
+    private static String waitForAbort(final HttpRequestBase request) throws ServiceException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!request.isAborted() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        throw new ServiceException("Request aborted");
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void hedgeWinsTest() throws ServiceException {
+        final CompletableFuture<String> discarded = new CompletableFuture<>();
+        final String result = Hedging.execute(createTracker(), hedges, this::createRequest,
+                (request, hedge) -> hedge ? "hedge" : waitForAbort(request), discarded::complete);
+        Assert.assertEquals("hedge", result);
+        Assert.assertEquals(2, requests.size());
+        Assert.assertTrue(requests.get(0).isAborted());
+        Assert.assertFalse(requests.get(1).isAborted());
+        Assert.assertFalse(discarded.isDone());
+    }
+
+    @Test
+    public void primaryWinsTest() throws Exception {
+        final CompletableFuture<String> discarded = new CompletableFuture<>();
+        final String result = Hedging.execute(createTracker(), hedges, this::createRequest, (request, hedge) -> {
+            // the hedge does not notice the abort and returns a result which is no longer needed
+            sleep(hedge ? 200 : 50);
+            return hedge ? "hedge" : "primary";
+        }, discarded::complete);
+        Assert.assertEquals("primary", result);
+        Assert.assertEquals(2, requests.size());
+        Assert.assertFalse(requests.get(0).isAborted());
+        Assert.assertTrue(requests.get(1).isAborted());
+        Assert.assertEquals("hedge", discarded.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void primaryFailsTest() throws ServiceException {
+        final String result = Hedging.execute(createTracker(), hedges, this::createRequest, (request, hedge) -> {
+            if (hedge) {
+                return "hedge";
+            }
+            sleep(50);
+            throw new ServiceException("Bad response with code: 500", 500);
+        }, ignored -> Assert.fail("Nothing to discard"));
+        Assert.assertEquals("hedge", result);
+    }
+
+    @Test
+    public void noThreadTest() throws Exception {
+        final Executor busy = task -> {
+            throw new RejectedExecutionException();
+        };
+        final CompletableFuture<String> discarded = new CompletableFuture<>();
+        final String result = Hedging.execute(createTracker(), busy, this::createRequest, (request, hedge) -> {
+            Assert.assertFalse(hedge);
+            sleep(50);
+            return "primary";
+        }, discarded::complete);
+        Assert.assertEquals("primary", result);
+        try {
+            discarded.get(100, TimeUnit.MILLISECONDS);
+            Assert.fail("Nothing to discard");
+        } catch (TimeoutException expected) {
+            // the primary went on alone
+        }
+    }
+}
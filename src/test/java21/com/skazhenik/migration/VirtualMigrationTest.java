@@ -0,0 +1,61 @@
+package com.skazhenik.migration;
+
+import com.skazhenik.migration.checksum.ChecksumAlgorithm;
+import com.skazhenik.migration.checksum.IntegrityCheck;
+import com.skazhenik.migration.exception.MigrationException;
+import com.skazhenik.migration.journal.MigrationJournal;
+import com.skazhenik.migration.limit.AimdLimiter;
+import com.skazhenik.migration.loader.ExecutionMode;
+import com.skazhenik.migration.loader.ParallelMigrationManager;
+import com.skazhenik.migration.loader.TransferMode;
+import com.skazhenik.migration.service.ConnectionPool;
+import com.skazhenik.migration.service.NewStorageService;
+import com.skazhenik.migration.service.OldStorageService;
+import com.skazhenik.migration.simulator.Dataset;
+import com.skazhenik.migration.simulator.FaultProfile;
+import com.skazhenik.migration.simulator.SizeDistribution;
+import com.skazhenik.migration.simulator.StorageSimulator;
+import com.skazhenik.migration.spool.SpoolManager;
+import com.skazhenik.migration.transfer.BufferedTransferEngine;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+import static com.skazhenik.migration.util.MigrationUtils.getFilesList;
+
+public class VirtualMigrationTest extends BaseTest {
+    private static final Dataset DATASET = new Dataset(1000, 0, 16 * 1024, SizeDistribution.LOG_UNIFORM, 13);
+    private static final int CONNECTIONS = 16;
+
+    @Test(timeout = 120_000)
+    public void migrationTest() throws IOException, MigrationException, ExecutionException {
+        final FaultProfile faults = new FaultProfile(0.05, 5, 5, 0, 0, 0);
+        final Path tempDir = createDir();
+        Objects.requireNonNull(tempDir);
+        // far more tasks than connections, the limiters of both storages together take at most all of them
+        try (StorageSimulator simulator = new StorageSimulator(0, DATASET, faults);
+             ConnectionPool connectionPool = new ConnectionPool(CONNECTIONS)) {
+            simulator.setUploadFailures(1);
+            final OldStorageService oldStorageService = new OldStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(),
+                    new AimdLimiter("oldStorage", 4, 1, CONNECTIONS / 2), null);
+            final NewStorageService newStorageService = new NewStorageService(simulator.getBaseURL(),
+                    connectionPool, new BufferedTransferEngine(),
+                    new AimdLimiter("newStorage", 4, 1, CONNECTIONS / 2), null);
+            try (ParallelMigrationManager manager = new ParallelMigrationManager(DATASET.getFileCount(), tempDir,
+                    oldStorageService, newStorageService, TransferMode.STREAM, ExecutionMode.VIRTUAL,
+                    new IntegrityCheck(ChecksumAlgorithm.CRC32C, 1.0))) {
+                manager.migrate(getFilesList(oldStorageService, retryPolicy).iterator(),
+                        new SpoolManager(CONNECTIONS, Long.MAX_VALUE), MigrationJournal.NONE);
+                Assert.assertEquals(DATASET.getFileCount(), manager.getProgress().getCompleted());
+            }
+            Assert.assertTrue(simulator.toString(), simulator.isMigrated());
+        } finally {
+            deleteDir(tempDir);
+        }
+    }
+}